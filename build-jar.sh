@@ -8,6 +8,6 @@ Manifest-Version: 1.0
 Main-Class: edu.jhu.Barbara.cs335.hw5.ReinforcementLearningMain
 _EOF
 mkdir $tmpdir/classes
-javac -target 1.5 -sourcepath src -d $tmpdir/classes $(find src -name '*.java')
+javac -source 1.8 -target 1.8 -sourcepath src -d $tmpdir/classes $(find src -name '*.java')
 jar cfm ReinforcementLearning.jar $tmpdir/manifest.mf -C $tmpdir/classes .
 rm -rf $tmpdir
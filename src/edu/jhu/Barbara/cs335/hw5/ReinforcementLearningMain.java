@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 
 import edu.jhu.Barbara.cs335.hw5.shell.Shell;
+import edu.jhu.Barbara.cs335.hw5.shell.command.BenchCommand;
 import edu.jhu.Barbara.cs335.hw5.shell.command.EnvCommand;
 import edu.jhu.Barbara.cs335.hw5.shell.command.HelpCommand;
 import edu.jhu.Barbara.cs335.hw5.shell.command.IterateCommand;
@@ -29,6 +30,7 @@ public class ReinforcementLearningMain
 		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 		Shell shell = new Shell(br, System.out, 79);
 		
+		shell.register(new BenchCommand(), "bench");
 		shell.register(new EnvCommand(), "e", "env");
 		shell.register(new HelpCommand(), "h", "help", "?");
 		shell.register(new IterateCommand(), "i", "iterate");
@@ -0,0 +1,405 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.util.Hashing;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * A transition function which remembers the outcomes of another.  Each state and action is packed into one long key,
+ * and the outcomes of the most recently used keys are kept as arrays.  The cache is bounded: it is split into
+ * segments, each guarded by its own lock and holding a fixed share of the entries, and a full segment makes room by
+ * the CLOCK policy, sweeping a hand over its entries and evicting the first which has not been used since the hand
+ * last passed it.  Any number of threads may share one cache; the outcomes of a missing key are found outside of the
+ * lock, so threads only wait on each other for the lookup itself.
+ *
+ * Only stationary transition functions may be cached, since the outcomes of a key must never change.  States which do
+ * not fit in a key (such as those far outside of any map) and illegal actions are passed straight to the cached
+ * function.  The sets returned are views of the cached arrays and may not be modified.
+ */
+public class CachingTransitionFunction implements StationaryTransitionFunction
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The key which marks an empty slot of an index. */
+	private static final long EMPTY = Hashing.EMPTY;
+	/** The largest number of segments into which a cache is split. */
+	private static final int MAX_SEGMENTS = 16;
+	/** The smallest number of entries given to each segment when a cache is split. */
+	private static final int MIN_SEGMENT_CAPACITY = 64;
+
+	/** The transition function whose outcomes are cached. */
+	private StationaryTransitionFunction delegate;
+	/** The largest number of entries kept. */
+	private int capacity;
+	/** The segments of the cache, which are not saved with it. */
+	private transient Segment[] segments;
+
+	/**
+	 * General constructor.
+	 * @param delegate The transition function whose outcomes are cached.
+	 * @param capacity The largest number of state-action pairs whose outcomes are kept.
+	 * @throws IllegalArgumentException If the capacity is not positive.
+	 */
+	public CachingTransitionFunction(StationaryTransitionFunction delegate, int capacity)
+	{
+		super();
+		if (capacity<1)
+		{
+			throw new IllegalArgumentException("Invalid cache capacity: " + capacity);
+		}
+		this.delegate = delegate;
+		this.capacity = capacity;
+		this.segments = createSegments(capacity);
+	}
+
+	/**
+	 * Creates empty segments which share a capacity between them as evenly as possible.
+	 * @param capacity The total capacity.
+	 * @return The segments, whose number is a power of two.
+	 */
+	private static Segment[] createSegments(int capacity)
+	{
+		int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_CAPACITY)));
+		Segment[] segments = new Segment[count];
+		for (int i=0;i<count;i++)
+		{
+			segments[i] = new Segment(capacity / count + ((i < capacity % count) ? 1 : 0));
+		}
+		return segments;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		this.segments = createSegments(this.capacity);
+	}
+
+	@Override
+	public Set<Pair<State, Double>> transition(State state, Action action)
+	{
+		long key = pack(state, action);
+		if (key==EMPTY)
+		{
+			return this.delegate.transition(state, action);
+		}
+		// The top bits of the hash choose the segment and the bottom bits the slot
+		long hash = Hashing.mix(key);
+		Segment segment = this.segments[(int)(hash >>> 56) & (this.segments.length - 1)];
+		int home = (int)hash;
+
+		Pair<State,Double>[] outcomes;
+		synchronized (segment)
+		{
+			outcomes = segment.get(key, home);
+		}
+		if (outcomes==null)
+		{
+			outcomes = toArray(this.delegate.transition(state, action));
+			synchronized (segment)
+			{
+				outcomes = segment.put(key, home, outcomes);
+			}
+		}
+		return new OutcomeSet(outcomes);
+	}
+
+	/**
+	 * Packs a state and an action into a key: 15 bits of x, 16 of y, 8 of each velocity component and the index of the
+	 * action.
+	 * @param state The state.
+	 * @param action The action.
+	 * @return The key, which is never negative, or {@link #EMPTY} if the state or action does not fit in a key.
+	 */
+	private static long pack(State state, Action action)
+	{
+		int a = action.ordinal();
+		int x = state.getX();
+		int y = state.getY();
+		int vx = state.getVelocityX();
+		int vy = state.getVelocityY();
+		if (a<0 || x<0 || x>0x7FFF || y<0 || y>0xFFFF || vx<Byte.MIN_VALUE || vx>Byte.MAX_VALUE ||
+				vy<Byte.MIN_VALUE || vy>Byte.MAX_VALUE)
+		{
+			return EMPTY;
+		}
+		return ((long)x << 48) | ((long)y << 32) | ((long)(vx & 0xFF) << 24) | ((vy & 0xFF) << 16) | a;
+	}
+
+	/**
+	 * Copies a set of outcomes into an array.
+	 * @param outcomes The outcomes.
+	 * @return The array.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Pair<State,Double>[] toArray(Set<Pair<State,Double>> outcomes)
+	{
+		return outcomes.toArray((Pair<State,Double>[])new Pair[outcomes.size()]);
+	}
+
+	public StationaryTransitionFunction getDelegate()
+	{
+		return delegate;
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Retrieves the number of state-action pairs whose outcomes are currently kept.
+	 * @return The number of entries.
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (Segment segment : this.segments)
+		{
+			synchronized (segment)
+			{
+				size += segment.size;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Retrieves the number of transitions answered from the cache.
+	 * @return The number of hits.
+	 */
+	public long getHits()
+	{
+		long hits = 0;
+		for (Segment segment : this.segments)
+		{
+			synchronized (segment)
+			{
+				hits += segment.hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Retrieves the number of transitions which had to be passed to the cached function.  Transitions which do not fit
+	 * in a key are not counted.
+	 * @return The number of misses.
+	 */
+	public long getMisses()
+	{
+		long misses = 0;
+		for (Segment segment : this.segments)
+		{
+			synchronized (segment)
+			{
+				misses += segment.misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Retrieves the number of entries evicted to make room for others.
+	 * @return The number of evictions.
+	 */
+	public long getEvictions()
+	{
+		long evictions = 0;
+		for (Segment segment : this.segments)
+		{
+			synchronized (segment)
+			{
+				evictions += segment.evictions;
+			}
+		}
+		return evictions;
+	}
+
+	/**
+	 * One segment of the cache.  Its entries are kept densely in the first {@link #size} positions of three arrays,
+	 * and an open-addressing hash index maps each key to its position.  All access must hold the segment's lock.
+	 */
+	private static class Segment
+	{
+		/** The key of each entry. */
+		private long[] keys;
+		/** The outcomes of each entry. */
+		private Pair<State,Double>[][] values;
+		/** Whether or not each entry has been used since the hand last passed it. */
+		private boolean[] referenced;
+		/** The number of entries. */
+		private int size;
+		/** The position of the next entry the hand will consider for eviction. */
+		private int hand;
+		/** The key stored in each slot of the index, or {@link CachingTransitionFunction#EMPTY}. */
+		private long[] slotKeys;
+		/** The position of the entry of the key stored in each slot of the index. */
+		private int[] slotPositions;
+		/** The number of lookups answered by this segment. */
+		private long hits;
+		/** The number of lookups this segment could not answer. */
+		private long misses;
+		/** The number of entries this segment has evicted. */
+		private long evictions;
+
+		/**
+		 * General constructor.
+		 * @param capacity The largest number of entries in the segment.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public Segment(int capacity)
+		{
+			super();
+			this.keys = new long[capacity];
+			this.values = (Pair<State,Double>[][])new Pair[capacity][];
+			this.referenced = new boolean[capacity];
+			this.size = 0;
+			this.hand = 0;
+			int slots = Integer.highestOneBit(capacity) * 4;
+			this.slotKeys = new long[slots];
+			this.slotPositions = new int[slots];
+			Arrays.fill(this.slotKeys, EMPTY);
+		}
+
+		/**
+		 * Looks up the outcomes of a key, counting a hit or a miss.
+		 * @param key The key.
+		 * @param home The hash of the key.
+		 * @return The outcomes, or <code>null</code> if they are not kept.
+		 */
+		public Pair<State,Double>[] get(long key, int home)
+		{
+			int slot = find(key, home);
+			if (this.slotKeys[slot]==EMPTY)
+			{
+				this.misses++;
+				return null;
+			}
+			int position = this.slotPositions[slot];
+			this.referenced[position] = true;
+			this.hits++;
+			return this.values[position];
+		}
+
+		/**
+		 * Stores the outcomes of a key, evicting an entry if the segment is full.  If another thread stored the key
+		 * first, its outcomes are kept instead.
+		 * @param key The key.
+		 * @param home The hash of the key.
+		 * @param outcomes The outcomes of the key.
+		 * @return The outcomes kept for the key.
+		 */
+		public Pair<State,Double>[] put(long key, int home, Pair<State,Double>[] outcomes)
+		{
+			int slot = find(key, home);
+			if (this.slotKeys[slot]==key)
+			{
+				return this.values[this.slotPositions[slot]];
+			}
+
+			int position;
+			if (this.size<this.keys.length)
+			{
+				position = this.size++;
+			} else
+			{
+				while (this.referenced[this.hand])
+				{
+					this.referenced[this.hand] = false;
+					this.hand = (this.hand + 1) % this.keys.length;
+				}
+				position = this.hand;
+				this.hand = (this.hand + 1) % this.keys.length;
+				unlink(this.keys[position]);
+				this.evictions++;
+				slot = find(key, home);
+			}
+			this.keys[position] = key;
+			this.values[position] = outcomes;
+			this.referenced[position] = false;
+			this.slotKeys[slot] = key;
+			this.slotPositions[slot] = position;
+			return outcomes;
+		}
+
+		/**
+		 * Finds the slot of the index which holds a key, or the empty slot at which its search ends.
+		 * @param key The key.
+		 * @param home The hash of the key.
+		 * @return The slot.
+		 */
+		private int find(long key, int home)
+		{
+			return Hashing.find(this.slotKeys, key, home);
+		}
+
+		/**
+		 * Removes a key from the index.
+		 * @param key The key, which must be in the index.
+		 */
+		private void unlink(long key)
+		{
+			Hashing.remove(this.slotKeys, this.slotPositions, find(key, (int)Hashing.mix(key)));
+		}
+	}
+
+	/**
+	 * An unmodifiable set view of an array of outcomes.  The outcomes of a transition are distinct, so the array needs
+	 * no checking.
+	 */
+	private static class OutcomeSet extends AbstractSet<Pair<State,Double>>
+	{
+		/** The outcomes. */
+		private Pair<State,Double>[] outcomes;
+
+		/**
+		 * General constructor.
+		 * @param outcomes The outcomes.
+		 */
+		public OutcomeSet(Pair<State,Double>[] outcomes)
+		{
+			super();
+			this.outcomes = outcomes;
+		}
+
+		@Override
+		public Iterator<Pair<State,Double>> iterator()
+		{
+			return new Iterator<Pair<State,Double>>()
+			{
+				private int next = 0;
+
+				@Override
+				public boolean hasNext()
+				{
+					return this.next<OutcomeSet.this.outcomes.length;
+				}
+
+				@Override
+				public Pair<State,Double> next()
+				{
+					if (this.next>=OutcomeSet.this.outcomes.length)
+					{
+						throw new NoSuchElementException();
+					}
+					return OutcomeSet.this.outcomes[this.next++];
+				}
+			};
+		}
+
+		@Override
+		public int size()
+		{
+			return this.outcomes.length;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+
+/**
+ * A dense Q-table which may be shared by several learning threads.  Each Q-value is stored as the bits of a double in
+ * an {@link AtomicLongArray}, and visit counts are incremented atomically, so reads never block.  An update moves a
+ * Q-value toward a target either by compare-and-set, retrying if another thread changed the value in the meantime, or
+ * while holding one of a fixed set of striped locks.
+ */
+public class ConcurrentQTable implements QTable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The number of locks guarding the pairs in {@link Synchronization#LOCK} mode.  Must be a power of two. */
+	private static final int STRIPES = 1024;
+
+	/**
+	 * The ways in which an update may be made atomic.
+	 */
+	public static enum Synchronization
+	{
+		/** Updates by a compare-and-set loop over the bits of the Q-value. */
+		CAS("cas"),
+		/** Updates while holding the lock of the pair's stripe. */
+		LOCK("lock");
+
+		/** The name by which this mode is selected. */
+		private String name;
+
+		private Synchronization(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Finds a synchronization mode by name.
+		 * @param name The name of the mode.
+		 * @return The mode with that name, or <code>null</code> if no such mode exists.
+		 */
+		public static Synchronization forName(String name)
+		{
+			for (Synchronization synchronization : values())
+			{
+				if (synchronization.name.equals(name)) return synchronization;
+			}
+			return null;
+		}
+
+		public String toString()
+		{
+			return this.name;
+		}
+	}
+
+	/** The bits of the Q-value of each pair. */
+	private AtomicLongArray values;
+	/** The visit count of each pair. */
+	private AtomicIntegerArray visits;
+	/** The number of pairs which have been visited. */
+	private AtomicInteger size;
+	/** The way in which updates are made atomic. */
+	private Synchronization synchronization;
+	/** The striped locks, or <code>null</code> if updates use compare-and-set.  They are made anew when read. */
+	private transient Object[] locks;
+
+	/**
+	 * General constructor.
+	 * @param states The number of states in the world.
+	 * @param synchronization The way in which updates are made atomic.
+	 */
+	public ConcurrentQTable(int states, Synchronization synchronization)
+	{
+		super();
+		this.values = new AtomicLongArray(states * Action.COUNT);
+		this.visits = new AtomicIntegerArray(states * Action.COUNT);
+		this.size = new AtomicInteger();
+		this.synchronization = synchronization;
+		createLocks();
+	}
+
+	/**
+	 * Creates the striped locks if updates are made while holding them.
+	 */
+	private void createLocks()
+	{
+		if (this.synchronization==Synchronization.LOCK)
+		{
+			this.locks = new Object[STRIPES];
+			for (int i=0;i<STRIPES;i++) this.locks[i] = new Object();
+		}
+	}
+
+	public double getValue(int state, int action)
+	{
+		return Double.longBitsToDouble(this.values.get(state * Action.COUNT + action));
+	}
+
+	public void setValue(int state, int action, double value)
+	{
+		this.values.set(state * Action.COUNT + action, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Atomically moves the Q-value of a state-action pair part of the way toward a target:
+	 * <code>Q &lt;- Q + weight * (target - Q)</code>.  Updates made to the pair by other threads at the same time are
+	 * not lost.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @param target The value toward which to move.
+	 * @param weight The fraction of the distance to move.
+	 * @return The magnitude of the change made.
+	 */
+	public double update(int state, int action, double target, double weight)
+	{
+		int slot = state * Action.COUNT + action;
+		if (this.synchronization==Synchronization.LOCK)
+		{
+			synchronized (this.locks[slot & (STRIPES - 1)])
+			{
+				double current = Double.longBitsToDouble(this.values.get(slot));
+				double updated = current + weight * (target - current);
+				this.values.set(slot, Double.doubleToRawLongBits(updated));
+				return Math.abs(updated - current);
+			}
+		}
+		while (true)
+		{
+			long bits = this.values.get(slot);
+			double current = Double.longBitsToDouble(bits);
+			double updated = current + weight * (target - current);
+			if (this.values.compareAndSet(slot, bits, Double.doubleToRawLongBits(updated)))
+			{
+				return Math.abs(updated - current);
+			}
+		}
+	}
+
+	public int getVisits(int state, int action)
+	{
+		return this.visits.get(state * Action.COUNT + action);
+	}
+
+	public int visit(int state, int action)
+	{
+		int n = this.visits.incrementAndGet(state * Action.COUNT + action);
+		if (n==1) this.size.incrementAndGet();
+		return n;
+	}
+
+	public int size()
+	{
+		return this.size.get();
+	}
+
+	public long getMemoryFootprint()
+	{
+		return 8L * this.values.length() + 4L * this.visits.length();
+	}
+
+	public Synchronization getSynchronization()
+	{
+		return synchronization;
+	}
+
+	public ConcurrentQTable copy()
+	{
+		ConcurrentQTable ret = new ConcurrentQTable(0, this.synchronization);
+		ret.values = new AtomicLongArray(this.values.length());
+		ret.visits = new AtomicIntegerArray(this.visits.length());
+		for (int i=0;i<this.values.length();i++)
+		{
+			ret.values.set(i, this.values.get(i));
+			ret.visits.set(i, this.visits.get(i));
+		}
+		ret.size.set(this.size.get());
+		return ret;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		createLocks();
+	}
+}
@@ -0,0 +1,104 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+
+/**
+ * The outcome of every ray a car can travel in one step of a world.  A car at a position with a velocity travels
+ * along the cells <code>round(position + (i/k) * velocity)</code> for <code>i</code> from 0 to <code>k</code>, where
+ * <code>k</code> is the larger magnitude of the velocity's components; it crashes into the first wall (or edge of the
+ * world) on that ray, stopping in the cell before it.  Since the ray depends only upon the position and the
+ * velocity, the outcome of each is found once when the index is built: either the position index of the last cell
+ * before the wall or {@link #NO_CRASH}.  The outcomes are kept in one int array, addressed like state indices by
+ * <code>positionIndex * VELOCITY_COUNT + velocitySlot</code>.
+ */
+public class CrashRayIndex
+{
+	/** The outcome of a ray which meets no wall. */
+	public static final int NO_CRASH = -1;
+
+	/** The indices built so far for each world. */
+	private static final Map<WorldMap,CrashRayIndex> CACHE = new WeakHashMap<WorldMap,CrashRayIndex>();
+
+	/** The indexer which addresses the states of the world. */
+	private StateIndexer indexer;
+	/** The outcome of each ray, addressed by the index of the state from which it starts. */
+	private int[] outcomes;
+
+	/**
+	 * General constructor.  Traces every ray of a world.
+	 * @param world The world.
+	 */
+	public CrashRayIndex(WorldMap world)
+	{
+		super();
+		this.indexer = world.getStateIndexer();
+		this.outcomes = new int[this.indexer.size()];
+		for (int s=0;s<this.outcomes.length;s++)
+		{
+			this.outcomes[s] = trace(this.indexer.getX(s), this.indexer.getY(s),
+					this.indexer.getVelocityX(s), this.indexer.getVelocityY(s));
+		}
+	}
+
+	/**
+	 * Retrieves the index of a world, building it if this has not yet been done.
+	 * @param world The world.
+	 * @return The index.
+	 */
+	public static CrashRayIndex forWorld(WorldMap world)
+	{
+		synchronized (CACHE)
+		{
+			CrashRayIndex index = CACHE.get(world);
+			if (index==null)
+			{
+				index = new CrashRayIndex(world);
+				CACHE.put(world, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Traces a ray from a non-wall position.
+	 * @param x The x coordinate of the position.
+	 * @param y The y coordinate of the position.
+	 * @param vx The x component of the velocity.
+	 * @param vy The y component of the velocity.
+	 * @return The position index of the last cell before the first wall on the ray, or {@link #NO_CRASH}.
+	 */
+	private int trace(int x, int y, int vx, int vy)
+	{
+		int increments = Math.max(Math.abs(vx), Math.abs(vy));
+		int last = this.indexer.positionIndexOf(x, y);
+		for (int i=1;i<=increments;i++)
+		{
+			double factor = (double)i/increments;
+			int p = this.indexer.positionIndexOf(
+					(int)(Math.round(x + factor * vx)),
+					(int)(Math.round(y + factor * vy)));
+			if (p<0) return last;
+			last = p;
+		}
+		return NO_CRASH;
+	}
+
+	/**
+	 * Retrieves the outcome of a ray.
+	 * @param state The index of the state from which the ray starts: its position and velocity.
+	 * @return The position index of the last cell before the first wall on the ray, or {@link #NO_CRASH}.
+	 */
+	public int getOutcome(int state)
+	{
+		return this.outcomes[state];
+	}
+
+	public StateIndexer getIndexer()
+	{
+		return indexer;
+	}
+}
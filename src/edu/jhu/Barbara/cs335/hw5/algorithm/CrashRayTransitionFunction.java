@@ -0,0 +1,211 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * A {@link TerrainBasedTransitionFunction} which looks up whether and where each move crashes in a
+ * {@link CrashRayIndex} instead of walking the cells of the move.  Its outcomes are identical to those of its
+ * superclass.  States outside of the index (such as those with velocities beyond the speed limit) are left to the
+ * superclass.
+ *
+ * The same outcomes are also offered by index, through {@link IndexedTransitionFunction}, without building any
+ * states.  They are listed in the same order as by the superclass's arithmetic: the move without slipping, then the
+ * move with it.
+ */
+public class CrashRayTransitionFunction extends TerrainBasedTransitionFunction implements IndexedTransitionFunction
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The crash rays of the world, found when first needed. */
+	private transient volatile CrashRayIndex index;
+	/** The probability of slipping from each position, addressed by position index. */
+	private transient double[] slipProbabilities;
+	/** The index of each starting state. */
+	private transient int[] starts;
+
+	/**
+	 * General constructor.
+	 * @param world The world in which to perform transition.
+	 * @param hardCrash <code>true</code> if hard crashing is implemented; <code>false</code> if it is not.
+	 */
+	public CrashRayTransitionFunction(WorldMap world, boolean hardCrash)
+	{
+		super(world, hardCrash);
+		this.index = null;
+	}
+
+	@Override
+	public Set<Pair<State, Double>> transition(State state, Action action)
+	{
+		if (this.index==null) prepare();
+		StateIndexer indexer = this.index.getIndexer();
+
+		int x = state.getX();
+		int y = state.getY();
+		int vx = state.getVelocityX();
+		int vy = state.getVelocityY();
+		int newVx = Math.min(Math.max(vx + action.getDdx(), -5), 5);
+		int newVy = Math.min(Math.max(vy + action.getDdy(), -5), 5);
+		int slip = indexer.indexOf(x, y, vx, vy);
+		int noSlip = indexer.indexOf(x, y, newVx, newVy);
+		if (slip<0 || noSlip<0)
+		{
+			return super.transition(state, action);
+		}
+
+		double slipProb = this.slipProbabilities[indexer.getPositionIndex(slip)];
+
+		Set<Pair<State,Double>> ret = new HashSet<Pair<State,Double>>();
+		addOutcomes(ret, noSlip, 1-slipProb);
+		addOutcomes(ret, slip, slipProb);
+		return ret;
+	}
+
+	/**
+	 * Finds the crash rays, slip probabilities and starting states of the world.  The index is published last, so a
+	 * thread which sees it also sees the rest.
+	 */
+	private synchronized void prepare()
+	{
+		if (this.index!=null) return;
+		CrashRayIndex index = CrashRayIndex.forWorld(getWorld());
+		StateIndexer indexer = index.getIndexer();
+		this.slipProbabilities = new double[indexer.getPositionCount()];
+		for (int p=0;p<this.slipProbabilities.length;p++)
+		{
+			int s = p * StateIndexer.VELOCITY_COUNT;
+			switch (getWorld().getTerrain(new Pair<Integer,Integer>(indexer.getX(s), indexer.getY(s))))
+			{
+				case GROUND:
+					this.slipProbabilities[p] = 0.1;
+					break;
+				case ROUGH:
+					this.slipProbabilities[p] = 0.6;
+					break;
+				default:
+					break;
+			}
+		}
+		this.starts = new int[getWorld().getStartPositions().size()];
+		int i = 0;
+		for (Pair<Integer,Integer> position : getWorld().getStartPositions())
+		{
+			this.starts[i++] = indexer.indexOf(position.getFirst(), position.getSecond(), 0, 0);
+		}
+		this.index = index;
+	}
+
+	@Override
+	public StateIndexer getIndexer()
+	{
+		return getWorld().getStateIndexer();
+	}
+
+	@Override
+	public int transition(int state, int action, int[] successors, double[] probabilities)
+	{
+		if (this.index==null) prepare();
+		StateIndexer indexer = this.index.getIndexer();
+
+		int vx = indexer.getVelocityX(state);
+		int vy = indexer.getVelocityY(state);
+		int newVx = Math.min(Math.max(vx + Action.ddx(action), -5), 5);
+		int newVy = Math.min(Math.max(vy + Action.ddy(action), -5), 5);
+		int noSlip = state - (vx - newVx) * StateIndexer.VELOCITY_RANGE - (vy - newVy);
+		double slipProb = this.slipProbabilities[indexer.getPositionIndex(state)];
+
+		int count = addOutcomes(successors, probabilities, 0, noSlip, 1-slipProb);
+		return addOutcomes(successors, probabilities, count, state, slipProb);
+	}
+
+	/**
+	 * Writes the outcomes of a move into buffers, as far as they fit.
+	 * @param successors The buffer of successor state indices.
+	 * @param probabilities The buffer of probabilities.
+	 * @param count The number of outcomes already counted.
+	 * @param ray The index of the state from which the move starts: its position and the velocity of the move.
+	 * @param probability The probability of the move.
+	 * @return The number of outcomes counted, including those of this move.
+	 */
+	private int addOutcomes(int[] successors, double[] probabilities, int count, int ray, double probability)
+	{
+		StateIndexer indexer = this.index.getIndexer();
+		int crash = this.index.getOutcome(ray);
+		if (crash==CrashRayIndex.NO_CRASH)
+		{
+			int vx = indexer.getVelocityX(ray);
+			int vy = indexer.getVelocityY(ray);
+			count = put(successors, probabilities, count,
+					indexer.indexOf(indexer.getX(ray) + vx, indexer.getY(ray) + vy, vx, vy), probability);
+		} else if (getHardCrash())
+		{
+			for (int start : this.starts)
+			{
+				count = put(successors, probabilities, count, start, 1.0/this.starts.length * probability);
+			}
+		} else
+		{
+			int cell = crash * StateIndexer.VELOCITY_COUNT;
+			count = put(successors, probabilities, count,
+					indexer.indexOf(indexer.getX(cell), indexer.getY(cell), 0, 0), probability);
+		}
+		return count;
+	}
+
+	/**
+	 * Writes one outcome into buffers if it fits.
+	 * @param successors The buffer of successor state indices.
+	 * @param probabilities The buffer of probabilities.
+	 * @param count The number of outcomes already counted.
+	 * @param successor The index of the state reached.
+	 * @param probability The probability of the outcome.
+	 * @return The number of outcomes counted, including this one.
+	 */
+	private static int put(int[] successors, double[] probabilities, int count, int successor, double probability)
+	{
+		if (count<successors.length)
+		{
+			successors[count] = successor;
+			probabilities[count] = probability;
+		}
+		return count + 1;
+	}
+
+	/**
+	 * Adds the outcomes of a move.
+	 * @param outcomes The set to which to add the outcomes.
+	 * @param ray The index of the state from which the move starts: its position and the velocity of the move.
+	 * @param probability The probability of the move.
+	 */
+	private void addOutcomes(Set<Pair<State,Double>> outcomes, int ray, double probability)
+	{
+		StateIndexer indexer = this.index.getIndexer();
+		int crash = this.index.getOutcome(ray);
+		if (crash==CrashRayIndex.NO_CRASH)
+		{
+			int vx = indexer.getVelocityX(ray);
+			int vy = indexer.getVelocityY(ray);
+			outcomes.add(new Pair<State,Double>(
+					indexer.decode(indexer.indexOf(indexer.getX(ray) + vx, indexer.getY(ray) + vy, vx, vy)),
+					probability));
+		} else if (getHardCrash())
+		{
+			for (Pair<State,Double> outcome : hardCrashOutcomes())
+			{
+				outcomes.add(new Pair<State,Double>(outcome.getFirst(), outcome.getSecond() * probability));
+			}
+		} else
+		{
+			int cell = crash * StateIndexer.VELOCITY_COUNT;
+			outcomes.add(new Pair<State,Double>(
+					indexer.decode(indexer.indexOf(indexer.getX(cell), indexer.getY(cell), 0, 0)), probability));
+		}
+	}
+}
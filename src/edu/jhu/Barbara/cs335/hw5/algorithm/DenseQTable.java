@@ -0,0 +1,85 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Arrays;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+
+/**
+ * A Q-table with a slot for every state-action pair of a world, stored at <code>state * Action.COUNT + action</code>.
+ * This is the fastest table, but its size is proportional to the number of indexed states whether they are visited
+ * or not.
+ */
+public class DenseQTable implements QTable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The Q-value of each pair. */
+	private double[] values;
+	/** The visit count of each pair. */
+	private int[] visits;
+	/** The number of pairs which have been stored. */
+	private int size;
+
+	/**
+	 * General constructor.
+	 * @param states The number of states in the world.
+	 */
+	public DenseQTable(int states)
+	{
+		super();
+		this.values = new double[states * Action.COUNT];
+		this.visits = new int[states * Action.COUNT];
+		this.size = 0;
+	}
+
+	/**
+	 * Calculates the memory a dense table would use.
+	 * @param states The number of states in the world.
+	 * @return The approximate number of bytes the table would use.
+	 */
+	public static long footprint(int states)
+	{
+		return 12L * states * Action.COUNT;
+	}
+
+	public double getValue(int state, int action)
+	{
+		return this.values[state * Action.COUNT + action];
+	}
+
+	public void setValue(int state, int action, double value)
+	{
+		this.values[state * Action.COUNT + action] = value;
+	}
+
+	public int getVisits(int state, int action)
+	{
+		return this.visits[state * Action.COUNT + action];
+	}
+
+	public int visit(int state, int action)
+	{
+		int slot = state * Action.COUNT + action;
+		if (this.visits[slot]==0) this.size++;
+		return ++this.visits[slot];
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public long getMemoryFootprint()
+	{
+		return 8L * this.values.length + 4L * this.visits.length;
+	}
+
+	public DenseQTable copy()
+	{
+		DenseQTable ret = new DenseQTable(0);
+		ret.values = Arrays.copyOf(this.values, this.values.length);
+		ret.visits = Arrays.copyOf(this.visits, this.visits.length);
+		ret.size = this.size;
+		return ret;
+	}
+}
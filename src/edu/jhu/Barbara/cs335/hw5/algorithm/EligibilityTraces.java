@@ -0,0 +1,181 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Arrays;
+
+import edu.jhu.Barbara.cs335.hw5.util.Hashing;
+
+/**
+ * A sparse, bounded set of eligibility traces over state-action pairs.  Only the pairs with an active trace are
+ * stored: their keys (<code>state * Action.COUNT + action</code>) and traces are kept densely in the first
+ * {@link #size()} positions of two arrays, and an open-addressing hash index maps each key to its position.  Visiting,
+ * decaying and clearing the traces therefore cost time in proportion to the number of active traces rather than to
+ * the size of the Q-table.
+ *
+ * A trace which decays below the cutoff is dropped.  If the set is full when a new pair is traced, the weakest trace
+ * is dropped to make room.
+ */
+public class EligibilityTraces
+{
+	/** The key of each active trace. */
+	private int[] keys;
+	/** The value of each active trace. */
+	private double[] values;
+	/** The number of active traces. */
+	private int size;
+	/** The smallest value a trace may have before it is dropped. */
+	private double cutoff;
+	/** The key stored in each slot of the index, or {@link Hashing#EMPTY}. */
+	private long[] slotKeys;
+	/** The position of the trace of the key stored in each slot of the index. */
+	private int[] slotPositions;
+
+	/**
+	 * General constructor.
+	 * @param capacity The largest number of traces which may be active at once.
+	 * @param cutoff The smallest value a trace may have before it is dropped.
+	 */
+	public EligibilityTraces(int capacity, double cutoff)
+	{
+		super();
+		this.keys = new int[capacity];
+		this.values = new double[capacity];
+		this.size = 0;
+		this.cutoff = cutoff;
+		int slots = Integer.highestOneBit(capacity) * 4;
+		this.slotKeys = new long[slots];
+		this.slotPositions = new int[slots];
+		Arrays.fill(this.slotKeys, Hashing.EMPTY);
+	}
+
+	/**
+	 * Sets the trace of a pair, activating it if it is not active.
+	 * @param key The key of the pair.
+	 * @param value The new value of the trace.
+	 */
+	public void set(int key, double value)
+	{
+		int slot = find(key);
+		if (this.slotKeys[slot]==key)
+		{
+			this.values[this.slotPositions[slot]] = value;
+			return;
+		}
+
+		if (this.size==this.keys.length)
+		{
+			int weakest = 0;
+			for (int i=1;i<this.size;i++)
+			{
+				if (this.values[i]<this.values[weakest]) weakest = i;
+			}
+			remove(weakest);
+			slot = find(key);
+		}
+		this.keys[this.size] = key;
+		this.values[this.size] = value;
+		this.slotKeys[slot] = key;
+		this.slotPositions[slot] = this.size;
+		this.size++;
+	}
+
+	/**
+	 * Drops the trace of a pair, if it is active.
+	 * @param key The key of the pair.
+	 */
+	public void drop(int key)
+	{
+		int slot = find(key);
+		if (this.slotKeys[slot]==key)
+		{
+			remove(this.slotPositions[slot]);
+		}
+	}
+
+	/**
+	 * Multiplies every trace by a factor, dropping those which fall below the cutoff.
+	 * @param factor The factor.
+	 */
+	public void decay(double factor)
+	{
+		int i = 0;
+		while (i<this.size)
+		{
+			this.values[i] *= factor;
+			if (this.values[i]<this.cutoff)
+			{
+				remove(i);
+			} else
+			{
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Drops every trace.
+	 */
+	public void clear()
+	{
+		while (this.size>0)
+		{
+			remove(this.size - 1);
+		}
+	}
+
+	/**
+	 * Finds the slot of the index which holds a key, or the empty slot at which its search ends.
+	 * @param key The key.
+	 * @return The slot.
+	 */
+	private int find(int key)
+	{
+		return Hashing.find(this.slotKeys, key, Hashing.mix(key));
+	}
+
+	/**
+	 * Drops the trace at a position.  The last trace is moved into its place, and the index is repaired by shifting
+	 * back any key whose search passed through the freed slot.
+	 * @param position The position of the trace.
+	 */
+	private void remove(int position)
+	{
+		Hashing.remove(this.slotKeys, this.slotPositions, find(this.keys[position]));
+
+		int last = --this.size;
+		if (position!=last)
+		{
+			this.keys[position] = this.keys[last];
+			this.values[position] = this.values[last];
+			this.slotPositions[find(this.keys[position])] = position;
+		}
+	}
+
+	/**
+	 * Retrieves the number of active traces.
+	 * @return The number of active traces.
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Retrieves the key of an active trace.
+	 * @param i The position of the trace, from <code>0</code> to <code>size()-1</code>.
+	 * @return The key of the pair.
+	 */
+	public int getKey(int i)
+	{
+		return this.keys[i];
+	}
+
+	/**
+	 * Retrieves the value of an active trace.
+	 * @param i The position of the trace, from <code>0</code> to <code>size()-1</code>.
+	 * @return The value of the trace.
+	 */
+	public double getValue(int i)
+	{
+		return this.values[i];
+	}
+}
@@ -0,0 +1,208 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+
+/**
+ * A Q-table which stores only the state-action pairs that have been visited or assigned, in an open-addressing hash
+ * table with linear probing.  Its size is proportional to the number of pairs stored rather than to the size of the
+ * world, so it suits worlds too large to give every pair a slot.  A table may be given a memory budget, which it may
+ * share with other structures, in which case it refuses to grow beyond that budget.
+ *
+ * The table is sparse in storage only.  Like every {@link QTable}, it addresses states by the dense index a
+ * {@link edu.jhu.Barbara.cs335.hw5.data.StateIndexer} assigns them, so it cannot hold a state which that indexer does
+ * not cover, and a key (<code>state * Action.COUNT + action</code>) must fit in an int.
+ */
+public class HashQTable implements QTable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The key which marks an empty slot. */
+	private static final int EMPTY = -1;
+	/** The number of slots a new table has. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** The key (<code>state * Action.COUNT + action</code>) stored in each slot, or {@link #EMPTY}. */
+	private int[] keys;
+	/** The Q-value stored in each slot. */
+	private double[] values;
+	/** The visit count stored in each slot. */
+	private int[] visits;
+	/** The number of occupied slots. */
+	private int size;
+	/** The largest number of bytes the structures sharing the budget of this table may use, or 0 for no limit. */
+	private long budget;
+	/** The budget against which the slots of this table are reserved. */
+	private MemoryBudget account;
+
+	/**
+	 * General constructor.  Creates a table without a memory budget.
+	 */
+	public HashQTable()
+	{
+		this(0);
+	}
+
+	/**
+	 * General constructor.
+	 * @param budget The largest number of bytes the slots of this table may use, or 0 for no limit.
+	 * @throws MemoryBudgetExceededException If even an empty table would exceed the budget.
+	 */
+	public HashQTable(long budget)
+	{
+		this(new MemoryBudget(budget));
+	}
+
+	/**
+	 * General constructor.
+	 * @param budget The budget against which to reserve the slots of this table.
+	 * @throws MemoryBudgetExceededException If even an empty table would exceed the budget.
+	 */
+	public HashQTable(MemoryBudget budget)
+	{
+		super();
+		budget.reserve(16L * INITIAL_CAPACITY);
+		this.budget = budget.getLimit();
+		this.account = budget;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Replaces the slots of this table with empty slots.
+	 * @param capacity The number of slots, which must be a power of two.
+	 */
+	private void allocate(int capacity)
+	{
+		this.keys = new int[capacity];
+		this.values = new double[capacity];
+		this.visits = new int[capacity];
+		this.size = 0;
+		Arrays.fill(this.keys, EMPTY);
+	}
+
+	/**
+	 * Finds the slot of a key.
+	 * @param key The key to find.
+	 * @return The slot holding the key, or the empty slot where it would be inserted.
+	 */
+	private int find(int key)
+	{
+		int mask = this.keys.length - 1;
+		int hash = key * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (this.keys[slot]!=EMPTY && this.keys[slot]!=key)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Finds the slot of a key, inserting the key if it is not yet present.
+	 * @param key The key to find.
+	 * @return The slot holding the key.
+	 */
+	private int insert(int key)
+	{
+		int slot = find(key);
+		if (this.keys[slot]==EMPTY)
+		{
+			if ((this.size + 1) * 2 > this.keys.length)
+			{
+				this.account.reserve(16L * this.keys.length);
+				int[] oldKeys = this.keys;
+				double[] oldValues = this.values;
+				int[] oldVisits = this.visits;
+				allocate(oldKeys.length * 2);
+				for (int i=0;i<oldKeys.length;i++)
+				{
+					if (oldKeys[i]!=EMPTY)
+					{
+						int moved = find(oldKeys[i]);
+						this.keys[moved] = oldKeys[i];
+						this.values[moved] = oldValues[i];
+						this.visits[moved] = oldVisits[i];
+						this.size++;
+					}
+				}
+				slot = find(key);
+			}
+			this.keys[slot] = key;
+			this.size++;
+		}
+		return slot;
+	}
+
+	public double getValue(int state, int action)
+	{
+		int slot = find(state * Action.COUNT + action);
+		return (this.keys[slot]==EMPTY) ? 0.0 : this.values[slot];
+	}
+
+	public void setValue(int state, int action, double value)
+	{
+		int slot = insert(state * Action.COUNT + action);
+		this.values[slot] = value;
+	}
+
+	public int getVisits(int state, int action)
+	{
+		int slot = find(state * Action.COUNT + action);
+		return (this.keys[slot]==EMPTY) ? 0 : this.visits[slot];
+	}
+
+	public int visit(int state, int action)
+	{
+		int slot = insert(state * Action.COUNT + action);
+		return ++this.visits[slot];
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public long getMemoryFootprint()
+	{
+		return 16L * this.keys.length;
+	}
+
+	/**
+	 * Retrieves the budget against which the slots of this table are reserved.
+	 * @return The budget.
+	 */
+	public MemoryBudget getBudget()
+	{
+		return this.account;
+	}
+
+	/**
+	 * Copies this table.  The copy has a budget of its own with the same limit, against which only its own slots are
+	 * reserved.
+	 * @return The copy.
+	 */
+	public HashQTable copy()
+	{
+		HashQTable ret = new HashQTable(this.budget);
+		ret.account.reserve(16L * (this.keys.length - INITIAL_CAPACITY));
+		ret.keys = Arrays.copyOf(this.keys, this.keys.length);
+		ret.values = Arrays.copyOf(this.values, this.values.length);
+		ret.visits = Arrays.copyOf(this.visits, this.visits.length);
+		ret.size = this.size;
+		return ret;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		// Tables saved before their budget could be shared kept only its limit
+		if (this.account==null)
+		{
+			this.account = new MemoryBudget(this.budget);
+			this.account.reserve(16L * this.keys.length);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.Serializable;
+
+import edu.jhu.Barbara.cs335.hw5.data.State;
+
+/**
+ * Implementers of this interface provide an optimistic estimate of the utility of a state.  An estimate is admissible
+ * if it is never below the state's true utility; search agents such as {@link LRTDPAgent} rely upon this to stop
+ * exploring states which cannot improve the policy.
+ */
+public interface Heuristic extends Serializable
+{
+	/**
+	 * Estimates the utility of a state.
+	 * @param state The state to estimate.
+	 * @return An upper bound on the utility of the state.
+	 */
+	public double estimate(State state);
+}
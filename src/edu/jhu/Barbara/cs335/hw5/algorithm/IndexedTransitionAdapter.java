@@ -0,0 +1,91 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Set;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * Presents a {@link TransitionFunction} as an {@link IndexedTransitionFunction}.  Each transition decodes the state,
+ * consults the transition function and indexes its outcomes, so it is no faster than the function it adapts; it
+ * exists so that code written against the indexed interface works with every transition function.
+ */
+public class IndexedTransitionAdapter implements IndexedTransitionFunction
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The transition function to adapt. */
+	private TransitionFunction transitionFunction;
+	/** The indexer which addresses the states of the world. */
+	private StateIndexer indexer;
+
+	/**
+	 * General constructor.
+	 * @param transitionFunction The transition function to adapt.
+	 * @param indexer The indexer which addresses the states of the world.
+	 */
+	public IndexedTransitionAdapter(TransitionFunction transitionFunction, StateIndexer indexer)
+	{
+		super();
+		this.transitionFunction = transitionFunction;
+		this.indexer = indexer;
+	}
+
+	/**
+	 * Presents a transition function through the indexed interface, adapting it only if it does not already implement
+	 * that interface over the same indexer.
+	 * @param transitionFunction The transition function.
+	 * @param indexer The indexer which addresses the states of the world.
+	 * @return The indexed transition function.
+	 */
+	public static IndexedTransitionFunction forFunction(TransitionFunction transitionFunction, StateIndexer indexer)
+	{
+		if (transitionFunction instanceof IndexedTransitionFunction &&
+				((IndexedTransitionFunction)transitionFunction).getIndexer()==indexer)
+		{
+			return (IndexedTransitionFunction)transitionFunction;
+		}
+		return new IndexedTransitionAdapter(transitionFunction, indexer);
+	}
+
+	@Override
+	public StateIndexer getIndexer()
+	{
+		return this.indexer;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IllegalStateException If an outcome leads to a state which is not indexed.
+	 */
+	@Override
+	public int transition(int state, int action, int[] successors, double[] probabilities)
+	{
+		State decoded = this.indexer.decode(state);
+		Set<Pair<State,Double>> outcomes = this.transitionFunction.transition(decoded, Action.valueOf(action));
+		int count = 0;
+		for (Pair<State,Double> outcome : outcomes)
+		{
+			if (count<successors.length)
+			{
+				int successor = this.indexer.indexOf(outcome.getFirst());
+				if (successor<0)
+				{
+					throw new IllegalStateException("Transition from " + decoded + " leads to unindexed state " +
+							outcome.getFirst());
+				}
+				successors[count] = successor;
+				probabilities[count] = outcome.getSecond();
+			}
+			count++;
+		}
+		return count;
+	}
+
+	public TransitionFunction getTransitionFunction()
+	{
+		return transitionFunction;
+	}
+}
@@ -0,0 +1,35 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.Serializable;
+
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+
+/**
+ * Implementers of this interface provide a function for state transition which works on state and action indices
+ * rather than on {@link edu.jhu.Barbara.cs335.hw5.data.State}s and {@link edu.jhu.Barbara.cs335.hw5.data.Action}s.
+ * The outcomes of a transition are written into buffers which the caller provides and reuses, so a transition need
+ * not allocate anything.  {@link OutcomeBuffer} manages such buffers.
+ *
+ * {@link IndexedTransitionAdapter} presents any {@link TransitionFunction} through this interface, and
+ * {@link SetTransitionAdapter} presents any implementation of this interface as a {@link TransitionFunction}.
+ */
+public interface IndexedTransitionFunction extends Serializable
+{
+	/**
+	 * Retrieves the indexer which addresses the states of the world.
+	 * @return The state indexer.
+	 */
+	public StateIndexer getIndexer();
+
+	/**
+	 * Provides legal transitions.  If there are more outcomes than the buffers can hold, only as many as fit are
+	 * written; the caller may then call again with larger buffers.  A successor may appear more than once, and
+	 * outcomes may have a probability of zero.
+	 * @param state The index of the state in question.
+	 * @param action The ordinal of the action taken from that state.
+	 * @param successors The buffer into which to write the index of the state reached by each outcome.
+	 * @param probabilities The buffer into which to write the probability of each outcome.
+	 * @return The number of outcomes.
+	 */
+	public int transition(int state, int action, int[] successors, double[] probabilities);
+}
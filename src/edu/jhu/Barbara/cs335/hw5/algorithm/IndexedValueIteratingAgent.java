@@ -0,0 +1,612 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * A value iterating agent which keeps its utilities in a flat array addressed by the world's {@link StateIndexer}.
+ * The transition model is compiled into a {@link TransitionTable} the first time the agent iterates, and every sweep
+ * runs over that table alone, so a sweep performs no allocation and no hashing.  Only the {@link ReachableStates}
+ * of the world are compiled and swept; the remaining states can never be visited.  Utilities start at the estimates
+ * of a {@link Heuristic}.
+ * 
+ * Sweeps are either performed in place (Gauss-Seidel style, each backup seeing the updates made earlier in the same
+ * sweep) or synchronously (Jacobi style, every backup reading the utilities of the previous sweep).  Synchronous sweeps
+ * are partitioned across a fork/join pool; since no backup depends on another from the same sweep, the result is
+ * identical regardless of the number of threads.  In-place sweeps visit the states in a configurable
+ * {@link SweepOrder}, which can greatly affect the number of sweeps needed to converge.
+ */
+public class IndexedValueIteratingAgent implements MetricReportingReinforcementLearningAgent
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The actions available to the agent, by ordinal. */
+	private static final Action[] ACTIONS = Action.values();
+	/** The number of states below which a synchronous sweep task is not split any further. */
+	private static final int STATES_PER_TASK = 4096;
+
+	/**
+	 * The pools which execute the synchronous sweeps of every agent, by number of threads.  A pool is never shut down,
+	 * since another agent may be about to use it; its workers are daemon threads which exit while it is idle.
+	 */
+	private static final Map<Integer,ForkJoinPool> POOLS = new HashMap<Integer,ForkJoinPool>();
+
+	/**
+	 * The ways in which this agent can sweep over its states.
+	 */
+	public static enum SweepMode
+	{
+		/** Updates each utility in place as the sweep progresses. */
+		GAUSS_SEIDEL("gauss-seidel"),
+		/** Computes every utility from those of the previous sweep in parallel. */
+		JACOBI("jacobi");
+
+		/** The name by which this mode is selected. */
+		private String name;
+
+		private SweepMode(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Finds a sweep mode by name.
+		 * @param name The name of the mode.
+		 * @return The mode with that name, or <code>null</code> if no such mode exists.
+		 */
+		public static SweepMode forName(String name)
+		{
+			for (SweepMode mode : values())
+			{
+				if (mode.name.equals(name)) return mode;
+			}
+			return null;
+		}
+
+		public String toString()
+		{
+			return this.name;
+		}
+	}
+
+	/**
+	 * The orders in which an in-place sweep can visit the states.
+	 */
+	public static enum SweepOrder
+	{
+		/** Visits the states in index (row-major) order. */
+		ROW_MAJOR("row"),
+		/** Visits the states in reverse index order. */
+		REVERSE("reverse"),
+		/** Visits the states in order of increasing distance from the finish line. */
+		FINISH_DISTANCE("finish"),
+		/** Alternates between index order and reverse index order on successive sweeps. */
+		ALTERNATING("alternating");
+
+		/** The name by which this order is selected. */
+		private String name;
+
+		private SweepOrder(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Finds a sweep order by name.
+		 * @param name The name of the order.
+		 * @return The order with that name, or <code>null</code> if no such order exists.
+		 */
+		public static SweepOrder forName(String name)
+		{
+			for (SweepOrder order : values())
+			{
+				if (order.name.equals(name)) return order;
+			}
+			return null;
+		}
+
+		public String toString()
+		{
+			return this.name;
+		}
+	}
+
+	/** The world in which this agent is operating. */
+	private WorldMap world;
+	/** The discount factor for this agent. */
+	private double discountFactor;
+	/** The transition function that this agent uses. */
+	private TransitionFunction transitionFunction;
+	/** The reward function that this agent uses. */
+	private RewardFunction rewardFunction;
+	/** The heuristic which provides the initial utility of each state. */
+	private Heuristic heuristic;
+	/** The convergence tolerance (epsilon). */
+	private double convergenceTolerance;
+	/** Whether or not the compiled transition table stores its probabilities in single precision. */
+	private boolean singlePrecisionTransitions;
+	/** The number of threads used to compile the transition table and perform synchronous sweeps. */
+	private int threads;
+	/** The manner in which this agent sweeps over its states. */
+	private SweepMode sweepMode;
+	/** The order in which in-place sweeps visit the states. */
+	private SweepOrder sweepOrder;
+	/** The number of sweeps performed so far. */
+	private int sweeps;
+	/** The number of sweeps performed when convergence was first detected, or -1 if it has not been detected. */
+	private int sweepsToConvergence;
+	/** The expected utility of each state, addressed by state index. */
+	private double[] utilities;
+
+	/** The reward of each state, addressed by state index. */
+	private transient double[] rewards;
+	/** The states which can be reached from the starting line. */
+	private transient ReachableStates reachable;
+	/** The compiled transition model. */
+	private transient TransitionTable table;
+	/** The time, expressed in ms, spent compiling the transition table. */
+	private transient long compileTime;
+	/** The state indices in the order an in-place sweep visits them, or <code>null</code> for index order. */
+	private transient int[] visitOrder;
+	/** The buffer into which a synchronous sweep writes its utilities. */
+	private transient double[] nextUtilities;
+
+	/**
+	 * Creates a new indexed value iterating agent.
+	 */
+	public IndexedValueIteratingAgent()
+	{
+		this.world = null;
+		this.discountFactor = 0.5;
+		this.transitionFunction = null;
+		this.rewardFunction = null;
+		this.heuristic = new ZeroHeuristic();
+		this.convergenceTolerance = 0.000000001;
+		this.singlePrecisionTransitions = false;
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.sweepMode = SweepMode.GAUSS_SEIDEL;
+		this.sweepOrder = SweepOrder.ROW_MAJOR;
+		this.sweeps = 0;
+		this.sweepsToConvergence = -1;
+		this.utilities = null;
+	}
+
+	/**
+	 * Compiles the reward and transition models of the world into primitive arrays if this has not yet been done.
+	 */
+	private void compile()
+	{
+		if (this.table!=null) return;
+
+		long start = System.currentTimeMillis();
+		StateIndexer indexer = this.world.getStateIndexer();
+		this.reachable = ReachableStates.forWorld(this.world, this.transitionFunction);
+		this.rewards = this.reachable.rewards(this.rewardFunction);
+		if (this.utilities==null)
+		{
+			this.utilities = this.reachable.estimate(this.heuristic);
+		}
+		this.table = TransitionTable.build(this.transitionFunction, indexer, this.reachable,
+				this.singlePrecisionTransitions, this.threads);
+		if (this.sweepOrder==SweepOrder.FINISH_DISTANCE)
+		{
+			this.visitOrder = buildFinishDistanceOrder(indexer);
+		}
+		this.compileTime = System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Orders the states of the world by the distance of their positions from the finish line.  Distances are found by
+	 * a breadth-first search from the finish positions over adjacent (including diagonally adjacent) non-wall cells;
+	 * states at positions which cannot reach the finish line are placed last.  Unreachable states are left out.
+	 * @param indexer The indexer which addresses the states of the world.
+	 * @return The reachable state indices in order of increasing distance.
+	 */
+	private int[] buildFinishDistanceOrder(StateIndexer indexer)
+	{
+		int positions = indexer.getPositionCount();
+		int[] distances = new int[positions];
+		Arrays.fill(distances, -1);
+		int[] queue = new int[positions];
+		int head = 0;
+		int tail = 0;
+		for (Pair<Integer,Integer> finish : this.world.getFinishPositions())
+		{
+			int p = indexer.positionIndexOf(finish.getFirst(), finish.getSecond());
+			if (p>=0 && distances[p]<0)
+			{
+				distances[p] = 0;
+				queue[tail++] = p;
+			}
+		}
+		while (head<tail)
+		{
+			int p = queue[head++];
+			int x = indexer.getX(p * StateIndexer.VELOCITY_COUNT);
+			int y = indexer.getY(p * StateIndexer.VELOCITY_COUNT);
+			for (int dx=-1;dx<=1;dx++)
+			{
+				for (int dy=-1;dy<=1;dy++)
+				{
+					int neighbor = indexer.positionIndexOf(x + dx, y + dy);
+					if (neighbor>=0 && distances[neighbor]<0)
+					{
+						distances[neighbor] = distances[p] + 1;
+						queue[tail++] = neighbor;
+					}
+				}
+			}
+		}
+		for (int p=0;p<positions;p++)
+		{
+			if (distances[p]<0) queue[tail++] = p;
+		}
+
+		int[] order = new int[this.reachable.size()];
+		int i = 0;
+		for (int q=0;q<positions;q++)
+		{
+			for (int v=0;v<StateIndexer.VELOCITY_COUNT;v++)
+			{
+				int s = queue[q] * StateIndexer.VELOCITY_COUNT + v;
+				if (this.reachable.contains(s))
+				{
+					order[i++] = s;
+				}
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Calculates the Bellman backup of a state.
+	 * @param s The index of the state.
+	 * @param source The utilities from which to calculate the backup.
+	 * @return The reward of the state plus the discounted utility of its best action.
+	 */
+	private double backup(int s, double[] source)
+	{
+		double maxUtility = Double.NEGATIVE_INFINITY;
+		for (int a=0;a<ACTIONS.length;a++)
+		{
+			double utility = this.table.expectedValue(s, a, source);
+			if (utility > maxUtility)
+			{
+				maxUtility = utility;
+			}
+		}
+		return this.rewards[s] + this.discountFactor * maxUtility;
+	}
+
+	@Override
+	public Policy getPolicy()
+	{
+		return new IndexedValuePolicy();
+	}
+
+	/**
+	 * Performs a single sweep over every reachable state.  Return value specifies whether a termination criterion has
+	 * been met.
+	 */
+	@Override
+	public boolean iterate()
+	{
+		compile();
+
+		double delta;
+		if (this.sweepMode==SweepMode.JACOBI)
+		{
+			delta = synchronousSweep();
+		} else
+		{
+			delta = inPlaceSweep();
+		}
+		this.sweeps++;
+
+		boolean converged = delta < (this.convergenceTolerance * ((1 - this.discountFactor) / this.discountFactor));
+		if (converged && this.sweepsToConvergence<0)
+		{
+			this.sweepsToConvergence = this.sweeps;
+		}
+		return converged;
+	}
+
+	/**
+	 * Performs a sweep which updates each utility in place.
+	 * @return The largest change made to any utility.
+	 */
+	private double inPlaceSweep()
+	{
+		int size = this.reachable.size();
+		boolean reverse = (this.sweepOrder==SweepOrder.REVERSE) ||
+				(this.sweepOrder==SweepOrder.ALTERNATING && this.sweeps % 2 == 1);
+		double delta = 0.0;
+		for (int i=0;i<size;i++)
+		{
+			int s;
+			if (this.visitOrder!=null)
+			{
+				s = this.visitOrder[i];
+			} else
+			{
+				s = this.reachable.getState(reverse ? size - 1 - i : i);
+			}
+			double updatedUtility = backup(s, this.utilities);
+			double difference = Math.abs(updatedUtility - this.utilities[s]);
+			if (difference > delta)
+			{
+				delta = difference;
+			}
+			this.utilities[s] = updatedUtility;
+		}
+		return delta;
+	}
+
+	/**
+	 * Performs a sweep which calculates every utility from the previous sweep's utilities, then swaps buffers.
+	 * @return The largest change made to any utility.
+	 */
+	private double synchronousSweep()
+	{
+		if (this.nextUtilities==null)
+		{
+			this.nextUtilities = new double[this.utilities.length];
+		}
+		ForkJoinPool pool = getPool(Math.max(1, this.threads));
+		double delta = pool.invoke(new SweepTask(this.utilities, this.nextUtilities, 0, this.reachable.size()));
+
+		double[] swap = this.utilities;
+		this.utilities = this.nextUtilities;
+		this.nextUtilities = swap;
+		return delta;
+	}
+
+	/**
+	 * Retrieves the pool shared by all agents for synchronous sweeps with a number of threads, creating it if no agent
+	 * has used that number before.
+	 * @param parallelism The number of threads the pool should have.
+	 * @return The pool.
+	 */
+	private static synchronized ForkJoinPool getPool(int parallelism)
+	{
+		ForkJoinPool pool = POOLS.get(parallelism);
+		if (pool==null)
+		{
+			pool = new ForkJoinPool(parallelism);
+			POOLS.put(parallelism, pool);
+		}
+		return pool;
+	}
+
+	@Override
+	public IndexedValueIteratingAgent duplicate()
+	{
+		IndexedValueIteratingAgent ret = new IndexedValueIteratingAgent();
+		ret.setConvergenceTolerance(this.convergenceTolerance);
+		ret.setDiscountFactor(this.discountFactor);
+		ret.setRewardFunction(this.rewardFunction);
+		ret.setTransitionFunction(this.transitionFunction);
+		ret.setHeuristic(this.heuristic);
+		ret.setWorld(this.world);
+		ret.setSinglePrecisionTransitions(this.singlePrecisionTransitions);
+		ret.setThreads(this.threads);
+		ret.setSweepMode(this.sweepMode);
+		ret.setSweepOrder(this.sweepOrder);
+		ret.sweeps = this.sweeps;
+		ret.sweepsToConvergence = this.sweepsToConvergence;
+		if (this.utilities!=null)
+		{
+			ret.utilities = Arrays.copyOf(this.utilities, this.utilities.length);
+		}
+		ret.rewards = this.rewards;
+		ret.reachable = this.reachable;
+		ret.table = this.table;
+		ret.compileTime = this.compileTime;
+		ret.visitOrder = this.visitOrder;
+		return ret;
+	}
+
+	@Override
+	public List<Pair<String,String>> getMetrics()
+	{
+		List<Pair<String,String>> metrics = new ArrayList<Pair<String,String>>();
+		if (this.table!=null)
+		{
+			metrics.add(new Pair<String,String>("States", this.reachable.size() + " reachable of " +
+					this.table.getStateCount() + " (" + this.reachable.getPrunedCount() + " pruned)"));
+			metrics.add(new Pair<String,String>("Transition entries", String.valueOf(this.table.getEntryCount())));
+			metrics.add(new Pair<String,String>("Transition table",
+					(this.table.getMemoryFootprint() / 1024) + " KiB (" +
+					(this.table.isSinglePrecision() ? "single" : "double") + " precision, compiled in " +
+					this.compileTime + " ms)"));
+		}
+		String sweep = (this.sweepMode==SweepMode.JACOBI) ? this.sweepMode.toString() :
+				this.sweepMode + ", " + this.sweepOrder + " order";
+		metrics.add(new Pair<String,String>("Sweeps", this.sweeps + " (" + sweep + ")"));
+		metrics.add(new Pair<String,String>("Sweeps to convergence",
+				this.sweepsToConvergence<0 ? "not converged" : String.valueOf(this.sweepsToConvergence)));
+		return metrics;
+	}
+
+	public double getDiscountFactor()
+	{
+		return discountFactor;
+	}
+
+	public void setDiscountFactor(double discountFactor)
+	{
+		this.discountFactor = discountFactor;
+	}
+
+	public TransitionFunction getTransitionFunction()
+	{
+		return transitionFunction;
+	}
+
+	public void setTransitionFunction(TransitionFunction transitionFunction)
+	{
+		this.transitionFunction = transitionFunction;
+	}
+
+	public RewardFunction getRewardFunction()
+	{
+		return rewardFunction;
+	}
+
+	public void setRewardFunction(RewardFunction rewardFunction)
+	{
+		this.rewardFunction = rewardFunction;
+	}
+
+	public Heuristic getHeuristic()
+	{
+		return heuristic;
+	}
+
+	public void setHeuristic(Heuristic heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+
+	public WorldMap getWorld()
+	{
+		return world;
+	}
+
+	public void setWorld(WorldMap world)
+	{
+		this.world = world;
+	}
+
+	public boolean getSinglePrecisionTransitions()
+	{
+		return singlePrecisionTransitions;
+	}
+
+	public void setSinglePrecisionTransitions(boolean singlePrecisionTransitions)
+	{
+		this.singlePrecisionTransitions = singlePrecisionTransitions;
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = threads;
+	}
+
+	public SweepMode getSweepMode()
+	{
+		return sweepMode;
+	}
+
+	public void setSweepMode(SweepMode sweepMode)
+	{
+		this.sweepMode = sweepMode;
+	}
+
+	public SweepOrder getSweepOrder()
+	{
+		return sweepOrder;
+	}
+
+	public void setSweepOrder(SweepOrder sweepOrder)
+	{
+		this.sweepOrder = sweepOrder;
+	}
+
+	public double getConvergenceTolerance()
+	{
+		return convergenceTolerance;
+	}
+
+	public void setConvergenceTolerance(double convergenceTolerance)
+	{
+		this.convergenceTolerance = convergenceTolerance;
+	}
+
+	/**
+	 * A task which performs a synchronous sweep over a range of states and reports the largest change it made.
+	 */
+	private class SweepTask extends RecursiveTask<Double>
+	{
+		private static final long serialVersionUID = 1L;
+
+		/** The utilities of the previous sweep. */
+		private double[] source;
+		/** The array into which updated utilities are written. */
+		private double[] target;
+		/** The position of the first reachable state in this task's range. */
+		private int first;
+		/** The position after the last reachable state in this task's range. */
+		private int last;
+
+		public SweepTask(double[] source, double[] target, int first, int last)
+		{
+			super();
+			this.source = source;
+			this.target = target;
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		protected Double compute()
+		{
+			if (this.last - this.first > STATES_PER_TASK)
+			{
+				int middle = (this.first + this.last) >>> 1;
+				SweepTask left = new SweepTask(this.source, this.target, this.first, middle);
+				SweepTask right = new SweepTask(this.source, this.target, middle, this.last);
+				left.fork();
+				double rightDelta = right.compute();
+				return Math.max(left.join(), rightDelta);
+			}
+
+			double delta = 0.0;
+			for (int i=this.first;i<this.last;i++)
+			{
+				int s = reachable.getState(i);
+				double updatedUtility = backup(s, this.source);
+				double difference = Math.abs(updatedUtility - this.source[s]);
+				if (difference > delta)
+				{
+					delta = difference;
+				}
+				this.target[s] = updatedUtility;
+			}
+			return delta;
+		}
+	}
+
+	/**
+	 * Represents a policy that this agent would produce.
+	 */
+	public class IndexedValuePolicy implements Policy
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The action an agent decides to take from a given state.
+		 */
+		public Action decide(State state)
+		{
+			compile();
+			return table.decide(state, utilities, transitionFunction);
+		}
+	}
+}
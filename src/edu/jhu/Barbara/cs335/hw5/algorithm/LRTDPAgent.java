@@ -0,0 +1,566 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.Set;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.simulator.Simulator;
+import edu.jhu.Barbara.cs335.hw5.simulator.SimulatorListener;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+import edu.jhu.Barbara.cs335.hw5.util.ReinforcementLearningUtilities;
+
+/**
+ * An agent which learns by Labeled Real-Time Dynamic Programming.  Rather than sweeping over the world, each iteration
+ * runs a trial: starting from a random starting state, the agent repeatedly backs up its current state, takes the
+ * greedy action and samples an outcome, until it reaches the finish line or a state already labeled as solved.  The
+ * states of the trial are then checked in reverse order; a state is labeled solved once the Bellman residual of every
+ * state reachable from it under the greedy policy falls below the convergence threshold.  The agent has converged
+ * once every starting state is solved.
+ *
+ * Only the states which a trial touches are ever represented.  Each is given the utility estimated by a
+ * {@link Heuristic} when it is first touched; if the heuristic is admissible, the states which a trial never touches
+ * cannot affect the policy from the starting line.  Finish states are terminal and worth 0.
+ */
+public class LRTDPAgent implements SimulationBasedReinforcementLearningAgent, MetricReportingReinforcementLearningAgent
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The actions available to the agent, by ordinal. */
+	private static final Action[] ACTIONS = Action.values();
+
+	/** The world in which this agent is operating. */
+	private WorldMap world;
+	/** The discount factor for this agent. */
+	private double discountFactor;
+	/** The transition function that this agent uses. */
+	private TransitionFunction transitionFunction;
+	/** The reward function that this agent uses. */
+	private RewardFunction rewardFunction;
+	/** The heuristic which provides the initial utility of each state. */
+	private Heuristic heuristic;
+	/** The convergence tolerance (epsilon). */
+	private double convergenceTolerance;
+	/** The states touched so far, keyed by state index. */
+	private Map<Integer,Node> nodes;
+	/** The number of trials run so far. */
+	private long trials;
+	/** The number of backups performed so far. */
+	private long backups;
+
+	/** The simulator which is simulating the environment in which this agent is learning. */
+	private transient Simulator simulator;
+	/** The indexer which addresses the states of the world. */
+	private transient StateIndexer indexer;
+	/** Whether or not each position, addressed by position index, is on the finish line. */
+	private transient boolean[] finishPositions;
+	/** The indices of the starting states. */
+	private transient int[] startStates;
+	/** The states which are on the stack of the current solved check. */
+	private transient BitSet marked;
+	/** The random number generator used to choose starting states and sample outcomes, split from the simulator's. */
+	private transient SplittableRandom random;
+
+	/**
+	 * Creates a new LRTDP agent.
+	 */
+	public LRTDPAgent()
+	{
+		this.world = null;
+		this.discountFactor = 0.5;
+		this.transitionFunction = null;
+		this.rewardFunction = null;
+		this.heuristic = new ZeroHeuristic();
+		this.convergenceTolerance = 0.000000001;
+		this.nodes = new HashMap<Integer,Node>();
+		this.trials = 0;
+		this.backups = 0;
+		this.simulator = null;
+	}
+
+	/**
+	 * Prepares the agent's view of the world if this has not yet been done.
+	 */
+	private void prepare()
+	{
+		if (this.indexer!=null) return;
+
+		this.indexer = this.world.getStateIndexer();
+		this.finishPositions = new boolean[this.indexer.getPositionCount()];
+		for (Pair<Integer,Integer> finish : this.world.getFinishPositions())
+		{
+			int p = this.indexer.positionIndexOf(finish.getFirst(), finish.getSecond());
+			if (p>=0) this.finishPositions[p] = true;
+		}
+		List<Integer> starts = new ArrayList<Integer>();
+		for (Pair<Integer,Integer> start : this.world.getStartPositions())
+		{
+			int s = this.indexer.indexOf(start.getFirst(), start.getSecond(), 0, 0);
+			if (s>=0) starts.add(s);
+		}
+		this.startStates = new int[starts.size()];
+		for (int i=0;i<this.startStates.length;i++)
+		{
+			this.startStates[i] = starts.get(i);
+		}
+		this.marked = new BitSet(this.indexer.size());
+		if (this.random==null) this.random = new SplittableRandom();
+	}
+
+	/**
+	 * Retrieves the node of a state, creating it with its heuristic utility if it has not yet been touched.
+	 * @param index The index of the state.
+	 * @return The state's node.
+	 */
+	private Node node(int index)
+	{
+		Node node = this.nodes.get(index);
+		if (node==null)
+		{
+			State state = this.indexer.decode(index);
+			boolean finish = this.finishPositions[this.indexer.getPositionIndex(index)];
+			node = new Node(index, this.rewardFunction.reward(state), finish ? 0.0 : this.heuristic.estimate(state),
+					finish);
+			this.nodes.put(index, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Compiles the outcomes of every action from a state if this has not yet been done.  The nodes of the outcome
+	 * states are created as necessary.
+	 * @param node The node of the state.
+	 */
+	private void expand(Node node)
+	{
+		if (node.successors!=null) return;
+
+		State state = this.indexer.decode(node.index);
+		List<Node> successors = new ArrayList<Node>();
+		List<Double> probabilities = new ArrayList<Double>();
+		int[] offsets = new int[ACTIONS.length + 1];
+		for (int a=0;a<ACTIONS.length;a++)
+		{
+			offsets[a] = successors.size();
+			for (Pair<State,Double> outcome : this.transitionFunction.transition(state, ACTIONS[a]))
+			{
+				int successor = this.indexer.indexOf(outcome.getFirst());
+				if (successor<0)
+				{
+					throw new IllegalStateException("Transition from " + state + " leads to unindexed state " +
+							outcome.getFirst());
+				}
+				successors.add(node(successor));
+				probabilities.add(outcome.getSecond());
+			}
+		}
+		offsets[ACTIONS.length] = successors.size();
+
+		node.offsets = offsets;
+		node.probabilities = new double[probabilities.size()];
+		for (int i=0;i<node.probabilities.length;i++)
+		{
+			node.probabilities[i] = probabilities.get(i);
+		}
+		node.successors = successors.toArray(new Node[successors.size()]);
+	}
+
+	/**
+	 * Calculates the expected utility of taking an action from an expanded state.
+	 * @param node The node of the state.
+	 * @param action The index of the action.
+	 * @return The sum of the utilities of each outcome weighted by its probability.
+	 */
+	private double expectedValue(Node node, int action)
+	{
+		double value = 0.0;
+		for (int i=node.offsets[action];i<node.offsets[action + 1];i++)
+		{
+			value += node.probabilities[i] * node.successors[i].value;
+		}
+		return value;
+	}
+
+	/**
+	 * Finds the action with the greatest expected utility from a state, expanding the state if necessary.  Ties are
+	 * broken in favor of the action with the lowest ordinal.
+	 * @param node The node of the state.
+	 * @return The index of the best action.
+	 */
+	private int greedyAction(Node node)
+	{
+		expand(node);
+		int bestAction = 0;
+		double bestValue = expectedValue(node, 0);
+		for (int a=1;a<ACTIONS.length;a++)
+		{
+			double value = expectedValue(node, a);
+			if (value > bestValue)
+			{
+				bestValue = value;
+				bestAction = a;
+			}
+		}
+		return bestAction;
+	}
+
+	/**
+	 * Calculates the Bellman backup of a non-terminal state.
+	 * @param node The node of the state.
+	 * @return The reward of the state plus the discounted utility of its best action.
+	 */
+	private double backup(Node node)
+	{
+		return node.reward + this.discountFactor * expectedValue(node, greedyAction(node));
+	}
+
+	/**
+	 * Replaces the utility of a state with its Bellman backup.  Terminal states are left unchanged.
+	 * @param node The node of the state.
+	 */
+	private void update(Node node)
+	{
+		if (node.finish) return;
+		node.value = backup(node);
+		this.backups++;
+	}
+
+	/**
+	 * Calculates the Bellman residual of a state.
+	 * @param node The node of the state.
+	 * @return The absolute difference between the state's utility and its Bellman backup.
+	 */
+	private double residual(Node node)
+	{
+		if (node.finish) return 0.0;
+		return Math.abs(backup(node) - node.value);
+	}
+
+	/**
+	 * Samples the outcome of taking an action from an expanded state.
+	 * @param node The node of the state.
+	 * @param action The index of the action.
+	 * @return The node of the resulting state.
+	 */
+	private Node sample(Node node, int action)
+	{
+		double prob = this.random.nextDouble();
+		int last = node.offsets[action + 1] - 1;
+		for (int i=node.offsets[action];i<last;i++)
+		{
+			if (prob < node.probabilities[i])
+			{
+				return node.successors[i];
+			}
+			prob -= node.probabilities[i];
+		}
+		return node.successors[last];
+	}
+
+	/**
+	 * Retrieves the Bellman residual below which a state is considered converged.
+	 */
+	private double threshold()
+	{
+		return this.convergenceTolerance * ((1 - this.discountFactor) / this.discountFactor);
+	}
+
+	/**
+	 * Runs a single trial from a state.
+	 * @param start The node of the state from which to start.
+	 */
+	private void trial(Node start)
+	{
+		Deque<Node> visited = new ArrayDeque<Node>();
+		Node node = start;
+		while (!node.solved)
+		{
+			visited.push(node);
+			if (node.finish) break;
+			int action = greedyAction(node);
+			update(node);
+			node = sample(node, action);
+		}
+		while (!visited.isEmpty())
+		{
+			if (!checkSolved(visited.pop())) break;
+		}
+		this.trials++;
+	}
+
+	/**
+	 * Determines whether a state is solved: whether every state reachable from it under the greedy policy has a
+	 * Bellman residual below the convergence threshold.  If so, all of those states are labeled solved; if not, each
+	 * of the states examined is backed up.
+	 * @param start The node of the state to check.
+	 * @return <code>true</code> if the state has been labeled solved; <code>false</code> otherwise.
+	 */
+	private boolean checkSolved(Node start)
+	{
+		boolean solved = true;
+		double threshold = threshold();
+		Deque<Node> open = new ArrayDeque<Node>();
+		Deque<Node> closed = new ArrayDeque<Node>();
+		if (!start.solved)
+		{
+			open.push(start);
+			this.marked.set(start.index);
+		}
+		while (!open.isEmpty())
+		{
+			Node node = open.pop();
+			closed.push(node);
+			if (node.finish) continue;
+			if (residual(node) >= threshold)
+			{
+				solved = false;
+				continue;
+			}
+			int action = greedyAction(node);
+			for (int i=node.offsets[action];i<node.offsets[action + 1];i++)
+			{
+				Node successor = node.successors[i];
+				if (!successor.solved && !this.marked.get(successor.index))
+				{
+					open.push(successor);
+					this.marked.set(successor.index);
+				}
+			}
+		}
+
+		for (Node node : open)
+		{
+			this.marked.clear(node.index);
+		}
+		for (Node node : closed)
+		{
+			this.marked.clear(node.index);
+			if (solved)
+			{
+				node.solved = true;
+			} else
+			{
+				update(node);
+			}
+		}
+		return solved;
+	}
+
+	@Override
+	public Policy getPolicy()
+	{
+		return new LRTDPPolicy();
+	}
+
+	/**
+	 * Runs a single trial from a random starting state.  Return value specifies whether every starting state has
+	 * been solved.
+	 */
+	@Override
+	public boolean iterate()
+	{
+		prepare();
+
+		State start = ReinforcementLearningUtilities.getRandomStartingState(this.world, this.random);
+		trial(node(this.indexer.indexOf(start)));
+
+		for (int s : this.startStates)
+		{
+			if (!node(s).solved) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public Set<? extends SimulatorListener> getSimulatorListeners()
+	{
+		return Collections.emptySet();
+	}
+
+	@Override
+	public LRTDPAgent duplicate()
+	{
+		LRTDPAgent ret = new LRTDPAgent();
+		ret.setConvergenceTolerance(this.convergenceTolerance);
+		ret.setDiscountFactor(this.discountFactor);
+		ret.setRewardFunction(this.rewardFunction);
+		ret.setTransitionFunction(this.transitionFunction);
+		ret.setHeuristic(this.heuristic);
+		ret.setWorld(this.world);
+		for (Node node : this.nodes.values())
+		{
+			ret.nodes.put(node.index, new Node(node.index, node.reward, node.value, node.finish));
+			ret.nodes.get(node.index).solved = node.solved;
+		}
+		ret.trials = this.trials;
+		ret.backups = this.backups;
+		return ret;
+	}
+
+	@Override
+	public List<Pair<String,String>> getMetrics()
+	{
+		List<Pair<String,String>> metrics = new ArrayList<Pair<String,String>>();
+		metrics.add(new Pair<String,String>("Heuristic", this.heuristic.getClass().getSimpleName()));
+		metrics.add(new Pair<String,String>("Trials", String.valueOf(this.trials)));
+		metrics.add(new Pair<String,String>("Backups", String.valueOf(this.backups)));
+		if (this.indexer!=null)
+		{
+			int solved = 0;
+			for (Node node : this.nodes.values())
+			{
+				if (node.solved) solved++;
+			}
+			metrics.add(new Pair<String,String>("States touched", this.nodes.size() + " of " + this.indexer.size() +
+					String.format(" (%.2f%%)", 100.0 * this.nodes.size() / this.indexer.size())));
+			metrics.add(new Pair<String,String>("Solved states", String.valueOf(solved)));
+		}
+		return metrics;
+	}
+
+	public double getDiscountFactor()
+	{
+		return discountFactor;
+	}
+
+	public void setDiscountFactor(double discountFactor)
+	{
+		this.discountFactor = discountFactor;
+	}
+
+	public TransitionFunction getTransitionFunction()
+	{
+		return transitionFunction;
+	}
+
+	public void setTransitionFunction(TransitionFunction transitionFunction)
+	{
+		this.transitionFunction = transitionFunction;
+	}
+
+	public RewardFunction getRewardFunction()
+	{
+		return rewardFunction;
+	}
+
+	public void setRewardFunction(RewardFunction rewardFunction)
+	{
+		this.rewardFunction = rewardFunction;
+	}
+
+	public Heuristic getHeuristic()
+	{
+		return heuristic;
+	}
+
+	public void setHeuristic(Heuristic heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+
+	public WorldMap getWorld()
+	{
+		return world;
+	}
+
+	public void setWorld(WorldMap world)
+	{
+		this.world = world;
+	}
+
+	public double getConvergenceTolerance()
+	{
+		return convergenceTolerance;
+	}
+
+	public void setConvergenceTolerance(double convergenceTolerance)
+	{
+		this.convergenceTolerance = convergenceTolerance;
+	}
+
+	public Simulator getSimulator()
+	{
+		return simulator;
+	}
+
+	public void setSimulator(Simulator simulator)
+	{
+		this.simulator = simulator;
+		this.random = simulator.splitRandom();
+	}
+
+	/**
+	 * A state which has been touched by this agent.  The outcomes of a state are compiled when it is first expanded
+	 * and refer directly to the nodes of the outcome states; they are not serialized, but are recompiled as needed.
+	 */
+	private static class Node implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		/** The index of the state. */
+		private int index;
+		/** The reward of the state. */
+		private double reward;
+		/** The current utility estimate of the state. */
+		private double value;
+		/** Whether or not the state is on the finish line. */
+		private boolean finish;
+		/** Whether or not the state has been labeled solved. */
+		private boolean solved;
+		/** The offset of the first outcome of each action; entry <code>ACTIONS.length</code> is the outcome count. */
+		private transient int[] offsets;
+		/** The outcome states. */
+		private transient Node[] successors;
+		/** The probability of each outcome. */
+		private transient double[] probabilities;
+
+		public Node(int index, double reward, double value, boolean finish)
+		{
+			super();
+			this.index = index;
+			this.reward = reward;
+			this.value = value;
+			this.finish = finish;
+			this.solved = finish;
+		}
+	}
+
+	/**
+	 * Represents a policy that this agent would produce.  States which the agent has not yet touched are decided
+	 * greedily against their heuristic utilities.
+	 */
+	public class LRTDPPolicy implements Policy
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The action an agent decides to take from a given state.
+		 */
+		public Action decide(State state)
+		{
+			prepare();
+			int s = indexer.indexOf(state);
+			if (s<0)
+			{
+				return ACTIONS[0];
+			}
+			Node node = node(s);
+			if (node.finish)
+			{
+				return ACTIONS[0];
+			}
+			return ACTIONS[greedyAction(node)];
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+
+/**
+ * A tabular model of a world learned from observed transitions, as used by Dyna-Q planning.  For each state-action
+ * pair which has been observed, the model counts how often each successor state followed it, along with the reward
+ * and whether the successor ended the episode.  Sampling a pair's successor in proportion to these counts simulates
+ * the world without running it.
+ *
+ * The model is stored in flat arrays.  Observed pairs are found through an open-addressing hash table of their keys
+ * (<code>state * Action.COUNT + action</code>), and the successors of each pair form a linked list through the
+ * successor arrays; a racetrack pair rarely has more than a few successors, so the lists are short.  The arrays are
+ * reserved against a {@link MemoryBudget}, and an observation which would exceed it leaves the model unchanged.
+ */
+public class LearnedTransitionModel
+{
+	/** The key which marks an empty slot of the hash table. */
+	private static final int EMPTY = -1;
+	/** The number of slots, pairs and successors for which a new model has room. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** The key stored in each slot of the hash table, or {@link #EMPTY}. */
+	private int[] slotKeys;
+	/** The pair number stored in each slot of the hash table. */
+	private int[] slotPairs;
+
+	/** The key of each pair, in order of first observation. */
+	private int[] pairKeys;
+	/** The number of observations of each pair. */
+	private int[] pairTotals;
+	/** The first successor of each pair. */
+	private int[] pairHeads;
+	/** The number of pairs observed. */
+	private int pairCount;
+
+	/** The state index of each successor. */
+	private int[] successorStates;
+	/** The number of times each successor was observed. */
+	private int[] successorCounts;
+	/** The reward received on reaching each successor. */
+	private double[] successorRewards;
+	/** Whether or not each successor ended the episode. */
+	private boolean[] successorTerminals;
+	/** The next successor of the same pair, or -1. */
+	private int[] successorNexts;
+	/** The number of successors stored. */
+	private int successorCount;
+
+	/** A random number generator. */
+	private SplittableRandom random;
+	/** The budget against which the arrays of this model are reserved. */
+	private MemoryBudget budget;
+
+	/**
+	 * General constructor.  Creates an empty model without a memory budget.
+	 * @param random The random number generator with which to sample the model.
+	 */
+	public LearnedTransitionModel(SplittableRandom random)
+	{
+		this(random, new MemoryBudget(0));
+	}
+
+	/**
+	 * General constructor.  Creates an empty model.
+	 * @param random The random number generator with which to sample the model.
+	 * @param budget The budget against which to reserve the arrays of the model.
+	 * @throws MemoryBudgetExceededException If even an empty model would exceed the budget.
+	 */
+	public LearnedTransitionModel(SplittableRandom random, MemoryBudget budget)
+	{
+		super();
+		budget.reserve(41L * INITIAL_CAPACITY);
+		this.budget = budget;
+		this.slotKeys = new int[INITIAL_CAPACITY];
+		this.slotPairs = new int[INITIAL_CAPACITY];
+		Arrays.fill(this.slotKeys, EMPTY);
+		this.pairKeys = new int[INITIAL_CAPACITY];
+		this.pairTotals = new int[INITIAL_CAPACITY];
+		this.pairHeads = new int[INITIAL_CAPACITY];
+		this.pairCount = 0;
+		this.successorStates = new int[INITIAL_CAPACITY];
+		this.successorCounts = new int[INITIAL_CAPACITY];
+		this.successorRewards = new double[INITIAL_CAPACITY];
+		this.successorTerminals = new boolean[INITIAL_CAPACITY];
+		this.successorNexts = new int[INITIAL_CAPACITY];
+		this.successorCount = 0;
+		this.random = random;
+	}
+
+	/**
+	 * Records an observed transition.
+	 * @param state The index of the state in which the action was taken.
+	 * @param action The index of the action taken.
+	 * @param reward The reward received.
+	 * @param successor The index of the state reached.
+	 * @param terminal Whether or not the state reached ended the episode.
+	 * @throws MemoryBudgetExceededException If the model would exceed its budget; the model is then unchanged.
+	 */
+	public void observe(int state, int action, double reward, int successor, boolean terminal)
+	{
+		// Make room for a new successor first, so that a refusal happens before anything is changed
+		if (this.successorCount==this.successorStates.length)
+		{
+			int capacity = this.successorStates.length * 2;
+			this.budget.reserve(21L * this.successorStates.length);
+			this.successorStates = Arrays.copyOf(this.successorStates, capacity);
+			this.successorCounts = Arrays.copyOf(this.successorCounts, capacity);
+			this.successorRewards = Arrays.copyOf(this.successorRewards, capacity);
+			this.successorTerminals = Arrays.copyOf(this.successorTerminals, capacity);
+			this.successorNexts = Arrays.copyOf(this.successorNexts, capacity);
+		}
+
+		int pair = pairOf(state * Action.COUNT + action);
+		this.pairTotals[pair]++;
+		for (int i=this.pairHeads[pair];i>=0;i=this.successorNexts[i])
+		{
+			if (this.successorStates[i]==successor)
+			{
+				this.successorCounts[i]++;
+				return;
+			}
+		}
+
+		int i = this.successorCount++;
+		this.successorStates[i] = successor;
+		this.successorCounts[i] = 1;
+		this.successorRewards[i] = reward;
+		this.successorTerminals[i] = terminal;
+		this.successorNexts[i] = this.pairHeads[pair];
+		this.pairHeads[pair] = i;
+	}
+
+	/**
+	 * Finds the number of a pair, adding the pair if it has not yet been observed.
+	 * @param key The key of the pair.
+	 * @return The number of the pair.
+	 * @throws MemoryBudgetExceededException If adding the pair would exceed the budget; the model is then unchanged.
+	 */
+	private int pairOf(int key)
+	{
+		int slot = find(key);
+		if (this.slotKeys[slot]==key) return this.slotPairs[slot];
+
+		// Grow the pairs and the hash table before adding the pair, so that a refusal leaves the model unchanged
+		long growth = 0;
+		if (this.pairCount==this.pairKeys.length) growth += 12L * this.pairKeys.length;
+		if ((this.pairCount + 1) * 2 > this.slotKeys.length) growth += 8L * this.slotKeys.length;
+		this.budget.reserve(growth);
+		if ((this.pairCount + 1) * 2 > this.slotKeys.length)
+		{
+			rehash(this.slotKeys.length * 2);
+			slot = find(key);
+		}
+		if (this.pairCount==this.pairKeys.length)
+		{
+			int capacity = this.pairKeys.length * 2;
+			this.pairKeys = Arrays.copyOf(this.pairKeys, capacity);
+			this.pairTotals = Arrays.copyOf(this.pairTotals, capacity);
+			this.pairHeads = Arrays.copyOf(this.pairHeads, capacity);
+		}
+		int pair = this.pairCount++;
+		this.pairKeys[pair] = key;
+		this.pairTotals[pair] = 0;
+		this.pairHeads[pair] = -1;
+		this.slotKeys[slot] = key;
+		this.slotPairs[slot] = pair;
+		return pair;
+	}
+
+	/**
+	 * Finds the slot of a key.
+	 * @param key The key to find.
+	 * @return The slot holding the key, or the empty slot where it would be inserted.
+	 */
+	private int find(int key)
+	{
+		int mask = this.slotKeys.length - 1;
+		int hash = key * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (this.slotKeys[slot]!=EMPTY && this.slotKeys[slot]!=key)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Rebuilds the hash table with more slots.
+	 * @param capacity The number of slots, which must be a power of two.
+	 */
+	private void rehash(int capacity)
+	{
+		this.slotKeys = new int[capacity];
+		this.slotPairs = new int[capacity];
+		Arrays.fill(this.slotKeys, EMPTY);
+		int mask = capacity - 1;
+		for (int pair=0;pair<this.pairCount;pair++)
+		{
+			int hash = this.pairKeys[pair] * 0x9E3779B9;
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (this.slotKeys[slot]!=EMPTY) slot = (slot + 1) & mask;
+			this.slotKeys[slot] = this.pairKeys[pair];
+			this.slotPairs[slot] = pair;
+		}
+	}
+
+	/**
+	 * Chooses an observed pair uniformly at random.
+	 * @return The number of the pair, or -1 if no pair has been observed.
+	 */
+	public int samplePair()
+	{
+		return (this.pairCount==0) ? -1 : this.random.nextInt(this.pairCount);
+	}
+
+	/**
+	 * Chooses a successor of a pair in proportion to how often it has been observed.
+	 * @param pair The number of the pair.
+	 * @return The successor.
+	 */
+	public int sampleSuccessor(int pair)
+	{
+		int target = this.random.nextInt(this.pairTotals[pair]);
+		int i = this.pairHeads[pair];
+		while (target>=this.successorCounts[i])
+		{
+			target -= this.successorCounts[i];
+			i = this.successorNexts[i];
+		}
+		return i;
+	}
+
+	public int getState(int pair)
+	{
+		return this.pairKeys[pair] / Action.COUNT;
+	}
+
+	public int getAction(int pair)
+	{
+		return this.pairKeys[pair] % Action.COUNT;
+	}
+
+	public int getSuccessorState(int successor)
+	{
+		return this.successorStates[successor];
+	}
+
+	public double getSuccessorReward(int successor)
+	{
+		return this.successorRewards[successor];
+	}
+
+	public boolean isSuccessorTerminal(int successor)
+	{
+		return this.successorTerminals[successor];
+	}
+
+	/**
+	 * Retrieves the number of state-action pairs observed.
+	 * @return The number of pairs.
+	 */
+	public int getPairCount()
+	{
+		return this.pairCount;
+	}
+
+	/**
+	 * Retrieves the number of distinct successors observed across all pairs.
+	 * @return The number of successors.
+	 */
+	public int getSuccessorCount()
+	{
+		return this.successorCount;
+	}
+
+	/**
+	 * Calculates the memory used by the arrays of this model.
+	 * @return The approximate number of bytes used by this model.
+	 */
+	public long getMemoryFootprint()
+	{
+		return 8L * this.slotKeys.length + 12L * this.pairKeys.length + 21L * this.successorStates.length;
+	}
+}
@@ -0,0 +1,63 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.Serializable;
+
+/**
+ * An account of the memory used by the structures of one agent, such as its Q-table, replay buffer and learned model.
+ * A structure reserves the bytes of an allocation before making it and releases those of an allocation it discards,
+ * so that all of the structures grow against one limit.  A reservation which would exceed the limit is refused, and
+ * the structure is expected to leave itself as it was.
+ */
+public class MemoryBudget implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The largest number of bytes which may be reserved, or 0 for no limit. */
+	private long limit;
+	/** The number of bytes reserved. */
+	private long used;
+
+	/**
+	 * General constructor.
+	 * @param limit The largest number of bytes which may be reserved, or 0 for no limit.
+	 */
+	public MemoryBudget(long limit)
+	{
+		super();
+		this.limit = limit;
+		this.used = 0;
+	}
+
+	/**
+	 * Reserves a number of bytes.
+	 * @param bytes The number of bytes to reserve.
+	 * @throws MemoryBudgetExceededException If the reservation would exceed the limit; nothing is then reserved.
+	 */
+	public void reserve(long bytes)
+	{
+		if (this.limit>0 && this.used + bytes > this.limit)
+		{
+			throw new MemoryBudgetExceededException(this.limit, this.used + bytes);
+		}
+		this.used += bytes;
+	}
+
+	/**
+	 * Releases a number of bytes which were reserved.
+	 * @param bytes The number of bytes to release.
+	 */
+	public void release(long bytes)
+	{
+		this.used -= bytes;
+	}
+
+	public long getLimit()
+	{
+		return limit;
+	}
+
+	public long getUsed()
+	{
+		return used;
+	}
+}
@@ -0,0 +1,37 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+/**
+ * Thrown when an agent would need more memory than its budget allows in order to continue learning.  The agent's
+ * knowledge is left as it was before the allocation was attempted.
+ */
+public class MemoryBudgetExceededException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The budget, in bytes. */
+	private long budget;
+	/** The number of bytes which would have been needed. */
+	private long required;
+
+	/**
+	 * General constructor.
+	 * @param budget The budget, in bytes.
+	 * @param required The number of bytes which would have been needed.
+	 */
+	public MemoryBudgetExceededException(long budget, long required)
+	{
+		super("Memory budget of " + (budget / 1024) + " KiB exceeded: " + (required / 1024) + " KiB needed");
+		this.budget = budget;
+		this.required = required;
+	}
+
+	public long getBudget()
+	{
+		return budget;
+	}
+
+	public long getRequired()
+	{
+		return required;
+	}
+}
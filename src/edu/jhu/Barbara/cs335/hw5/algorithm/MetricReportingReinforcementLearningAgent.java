@@ -0,0 +1,17 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.List;
+
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * This interface is implemented by those agents which can report metrics specific to their learning algorithm.
+ */
+public interface MetricReportingReinforcementLearningAgent extends ReinforcementLearningAgent
+{
+	/**
+	 * Retrieves the metrics this agent has gathered.
+	 * @return A list of pairings between human-readable metric names and their current values.
+	 */
+	public List<Pair<String,String>> getMetrics();
+}
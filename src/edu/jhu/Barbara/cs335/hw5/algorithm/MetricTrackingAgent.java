@@ -1,10 +1,12 @@
 package edu.jhu.Barbara.cs335.hw5.algorithm;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import edu.jhu.Barbara.cs335.hw5.simulator.Simulator;
 import edu.jhu.Barbara.cs335.hw5.simulator.SimulatorListener;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
 
 /**
  * This wrapper object tracks the call metrics to another agent which are made through it.
@@ -61,6 +63,21 @@ public class MetricTrackingAgent implements SimulationBasedReinforcementLearning
 		return convergenceDetected;
 	}
 	
+	/**
+	 * Retrieves any algorithm-specific metrics reported by the wrapped agent.
+	 * @return The wrapped agent's metrics, or an empty list if it does not report any.
+	 */
+	public List<Pair<String,String>> getAgentMetrics()
+	{
+		if (this.backingAgent instanceof MetricReportingReinforcementLearningAgent)
+		{
+			return ((MetricReportingReinforcementLearningAgent)this.backingAgent).getMetrics();
+		} else
+		{
+			return Collections.emptyList();
+		}
+	}
+	
 	@Override
 	public void setSimulator(Simulator simulator)
 	{
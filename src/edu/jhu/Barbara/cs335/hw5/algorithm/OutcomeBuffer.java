@@ -0,0 +1,71 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * A pair of reusable buffers into which the outcomes of an {@link IndexedTransitionFunction} are read.  The buffers
+ * grow as needed, so after the first few transitions reading outcomes allocates nothing.  A buffer belongs to one
+ * thread at a time.
+ */
+public class OutcomeBuffer
+{
+	/** The number of outcomes for which a new buffer has room; a move which does not crash hard has at most two. */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/** The index of the state reached by each outcome. */
+	private int[] successors;
+	/** The probability of each outcome. */
+	private double[] probabilities;
+	/** The number of outcomes read. */
+	private int size;
+
+	/**
+	 * General constructor.  Creates an empty buffer.
+	 */
+	public OutcomeBuffer()
+	{
+		super();
+		this.successors = new int[INITIAL_CAPACITY];
+		this.probabilities = new double[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Reads the outcomes of a transition into this buffer, replacing those read before.
+	 * @param transitionFunction The transition function.
+	 * @param state The index of the state in question.
+	 * @param action The index of the action taken from that state.
+	 * @return The number of outcomes.
+	 */
+	public int load(IndexedTransitionFunction transitionFunction, int state, int action)
+	{
+		this.size = transitionFunction.transition(state, action, this.successors, this.probabilities);
+		if (this.size>this.successors.length)
+		{
+			int capacity = Math.max(this.size, this.successors.length * 2);
+			this.successors = Arrays.copyOf(this.successors, capacity);
+			this.probabilities = Arrays.copyOf(this.probabilities, capacity);
+			this.size = transitionFunction.transition(state, action, this.successors, this.probabilities);
+		}
+		return this.size;
+	}
+
+	/**
+	 * Retrieves the number of outcomes read.
+	 * @return The number of outcomes.
+	 */
+	public int size()
+	{
+		return this.size;
+	}
+
+	public int getSuccessor(int i)
+	{
+		return this.successors[i];
+	}
+
+	public double getProbability(int i)
+	{
+		return this.probabilities[i];
+	}
+}
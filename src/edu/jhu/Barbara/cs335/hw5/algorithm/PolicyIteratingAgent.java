@@ -0,0 +1,365 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * An agent which learns by policy iteration over the same indexed state layout and compiled {@link TransitionTable}
+ * as {@link IndexedValueIteratingAgent}, restricted to the {@link ReachableStates} of the world.  Each iteration
+ * evaluates the current policy and then improves it greedily.  The first policy is greedy with respect to the
+ * estimates of a {@link Heuristic}.
+ *
+ * Evaluation is either exact or modified.  Exact evaluation solves the linear system
+ * <code>U = R + gamma * P(policy) * U</code> with the iterative Gauss-Seidel method until no utility changes by more
+ * than the convergence threshold.  Modified evaluation performs a fixed number of Gauss-Seidel sweeps of the same
+ * system, which is usually enough for the improvement step to find the next policy.
+ */
+public class PolicyIteratingAgent implements MetricReportingReinforcementLearningAgent
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The actions available to the agent, by ordinal. */
+	private static final Action[] ACTIONS = Action.values();
+	/** The maximum number of sweeps performed by exact evaluation before it gives up on the threshold. */
+	private static final int MAXIMUM_EVALUATION_SWEEPS = 1000000;
+
+	/** The world in which this agent is operating. */
+	private WorldMap world;
+	/** The discount factor for this agent. */
+	private double discountFactor;
+	/** The transition function that this agent uses. */
+	private TransitionFunction transitionFunction;
+	/** The reward function that this agent uses. */
+	private RewardFunction rewardFunction;
+	/** The heuristic which provides the initial utility of each state. */
+	private Heuristic heuristic;
+	/** The convergence tolerance (epsilon). */
+	private double convergenceTolerance;
+	/** The number of threads used to compile the transition table. */
+	private int threads;
+	/** The number of evaluation sweeps per improvement, or 0 to evaluate each policy exactly. */
+	private int evaluationSweeps;
+	/** The expected utility of each state under the current policy, addressed by state index. */
+	private double[] utilities;
+	/** The index of the action the current policy takes from each state. */
+	private int[] policy;
+	/** The number of improvement steps performed so far. */
+	private int improvements;
+	/** The number of evaluation sweeps performed so far. */
+	private long totalEvaluationSweeps;
+	/** The number of states whose action changed in the last improvement step. */
+	private int lastPolicyChanges;
+	/** The largest utility change in the last evaluation sweep. */
+	private double lastEvaluationDelta;
+
+	/** The reward of each state, addressed by state index. */
+	private transient double[] rewards;
+	/** The states which can be reached from the starting line. */
+	private transient ReachableStates reachable;
+	/** The compiled transition model. */
+	private transient TransitionTable table;
+
+	/**
+	 * Creates a new policy iterating agent.
+	 */
+	public PolicyIteratingAgent()
+	{
+		this.world = null;
+		this.discountFactor = 0.5;
+		this.transitionFunction = null;
+		this.rewardFunction = null;
+		this.heuristic = new ZeroHeuristic();
+		this.convergenceTolerance = 0.000000001;
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.evaluationSweeps = 0;
+		this.utilities = null;
+		this.policy = null;
+		this.improvements = 0;
+		this.totalEvaluationSweeps = 0;
+		this.lastPolicyChanges = -1;
+		this.lastEvaluationDelta = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Compiles the reward and transition models of the world if this has not yet been done.
+	 */
+	private void compile()
+	{
+		if (this.table!=null) return;
+
+		StateIndexer indexer = this.world.getStateIndexer();
+		int size = indexer.size();
+		this.reachable = ReachableStates.forWorld(this.world, this.transitionFunction);
+		this.rewards = this.reachable.rewards(this.rewardFunction);
+		this.table = TransitionTable.build(this.transitionFunction, indexer, this.reachable, false, this.threads);
+		if (this.utilities==null)
+		{
+			this.utilities = this.reachable.estimate(this.heuristic);
+			this.policy = new int[size];
+			for (int i=0;i<this.reachable.size();i++)
+			{
+				int s = this.reachable.getState(i);
+				this.policy[s] = this.table.greedyAction(s, this.utilities);
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the largest utility change below which values are considered converged.
+	 */
+	private double threshold()
+	{
+		return this.convergenceTolerance * ((1 - this.discountFactor) / this.discountFactor);
+	}
+
+	/**
+	 * Performs one in-place sweep of the current policy's evaluation equations.
+	 * @return The largest change made to any utility.
+	 */
+	private double evaluationSweep()
+	{
+		double delta = 0.0;
+		for (int i=0;i<this.reachable.size();i++)
+		{
+			int s = this.reachable.getState(i);
+			double updated = this.rewards[s] +
+					this.discountFactor * this.table.expectedValue(s, this.policy[s], this.utilities);
+			double difference = Math.abs(updated - this.utilities[s]);
+			if (difference > delta)
+			{
+				delta = difference;
+			}
+			this.utilities[s] = updated;
+		}
+		this.totalEvaluationSweeps++;
+		return delta;
+	}
+
+	/**
+	 * Evaluates the current policy, either exactly or with the configured number of sweeps.
+	 */
+	private void evaluate()
+	{
+		if (this.evaluationSweeps>0)
+		{
+			for (int i=0;i<this.evaluationSweeps;i++)
+			{
+				this.lastEvaluationDelta = evaluationSweep();
+			}
+		} else
+		{
+			double threshold = threshold();
+			int sweeps = 0;
+			do
+			{
+				this.lastEvaluationDelta = evaluationSweep();
+				sweeps++;
+			} while (this.lastEvaluationDelta >= threshold && sweeps < MAXIMUM_EVALUATION_SWEEPS);
+		}
+	}
+
+	/**
+	 * Replaces the action of each state with the greedy action under the current utilities.  A state keeps its
+	 * current action unless another action is strictly better, so that ties cannot cause the policy to cycle.
+	 * @return The number of states whose action changed.
+	 */
+	private int improve()
+	{
+		int changes = 0;
+		for (int i=0;i<this.reachable.size();i++)
+		{
+			int s = this.reachable.getState(i);
+			int current = this.policy[s];
+			double currentValue = this.table.expectedValue(s, current, this.utilities);
+			int best = this.table.greedyAction(s, this.utilities);
+			if (best!=current &&
+					this.table.expectedValue(s, best, this.utilities) > currentValue + Math.ulp(currentValue) * 4)
+			{
+				this.policy[s] = best;
+				changes++;
+			}
+		}
+		return changes;
+	}
+
+	@Override
+	public Policy getPolicy()
+	{
+		return new IndexedPolicy();
+	}
+
+	/**
+	 * Evaluates the current policy and performs a single improvement step.  Return value specifies whether the policy
+	 * is stable; for modified policy iteration, the evaluation must also have settled within the convergence
+	 * threshold.
+	 */
+	@Override
+	public boolean iterate()
+	{
+		compile();
+
+		evaluate();
+		this.lastPolicyChanges = improve();
+		this.improvements++;
+
+		return this.lastPolicyChanges==0 && this.lastEvaluationDelta < threshold();
+	}
+
+	@Override
+	public PolicyIteratingAgent duplicate()
+	{
+		PolicyIteratingAgent ret = new PolicyIteratingAgent();
+		ret.setConvergenceTolerance(this.convergenceTolerance);
+		ret.setDiscountFactor(this.discountFactor);
+		ret.setRewardFunction(this.rewardFunction);
+		ret.setTransitionFunction(this.transitionFunction);
+		ret.setHeuristic(this.heuristic);
+		ret.setWorld(this.world);
+		ret.setThreads(this.threads);
+		ret.setEvaluationSweeps(this.evaluationSweeps);
+		if (this.utilities!=null)
+		{
+			ret.utilities = Arrays.copyOf(this.utilities, this.utilities.length);
+			ret.policy = Arrays.copyOf(this.policy, this.policy.length);
+		}
+		ret.improvements = this.improvements;
+		ret.totalEvaluationSweeps = this.totalEvaluationSweeps;
+		ret.lastPolicyChanges = this.lastPolicyChanges;
+		ret.lastEvaluationDelta = this.lastEvaluationDelta;
+		ret.rewards = this.rewards;
+		ret.reachable = this.reachable;
+		ret.table = this.table;
+		return ret;
+	}
+
+	@Override
+	public List<Pair<String,String>> getMetrics()
+	{
+		List<Pair<String,String>> metrics = new ArrayList<Pair<String,String>>();
+		metrics.add(new Pair<String,String>("Evaluation", this.evaluationSweeps>0 ?
+				"modified, " + this.evaluationSweeps + " sweeps per improvement" : "exact"));
+		if (this.reachable!=null)
+		{
+			metrics.add(new Pair<String,String>("States", this.reachable.size() + " reachable of " +
+					this.table.getStateCount() + " (" + this.reachable.getPrunedCount() + " pruned)"));
+		}
+		metrics.add(new Pair<String,String>("Improvements", String.valueOf(this.improvements)));
+		metrics.add(new Pair<String,String>("Evaluation sweeps", String.valueOf(this.totalEvaluationSweeps)));
+		if (this.lastPolicyChanges>=0)
+		{
+			metrics.add(new Pair<String,String>("Policy changes", String.valueOf(this.lastPolicyChanges)));
+			metrics.add(new Pair<String,String>("Policy stable?", this.lastPolicyChanges==0 ? "yes" : "no"));
+		}
+		return metrics;
+	}
+
+	public double getDiscountFactor()
+	{
+		return discountFactor;
+	}
+
+	public void setDiscountFactor(double discountFactor)
+	{
+		this.discountFactor = discountFactor;
+	}
+
+	public TransitionFunction getTransitionFunction()
+	{
+		return transitionFunction;
+	}
+
+	public void setTransitionFunction(TransitionFunction transitionFunction)
+	{
+		this.transitionFunction = transitionFunction;
+	}
+
+	public RewardFunction getRewardFunction()
+	{
+		return rewardFunction;
+	}
+
+	public void setRewardFunction(RewardFunction rewardFunction)
+	{
+		this.rewardFunction = rewardFunction;
+	}
+
+	public Heuristic getHeuristic()
+	{
+		return heuristic;
+	}
+
+	public void setHeuristic(Heuristic heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+
+	public WorldMap getWorld()
+	{
+		return world;
+	}
+
+	public void setWorld(WorldMap world)
+	{
+		this.world = world;
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = threads;
+	}
+
+	public int getEvaluationSweeps()
+	{
+		return evaluationSweeps;
+	}
+
+	public void setEvaluationSweeps(int evaluationSweeps)
+	{
+		this.evaluationSweeps = evaluationSweeps;
+	}
+
+	public double getConvergenceTolerance()
+	{
+		return convergenceTolerance;
+	}
+
+	public void setConvergenceTolerance(double convergenceTolerance)
+	{
+		this.convergenceTolerance = convergenceTolerance;
+	}
+
+	/**
+	 * Represents the policy this agent has established.  Reachable states take the action stored for them; any other
+	 * state is decided greedily against the current utilities.
+	 */
+	public class IndexedPolicy implements Policy
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The action an agent decides to take from a given state.
+		 */
+		public Action decide(State state)
+		{
+			compile();
+			int s = world.getStateIndexer().indexOf(state);
+			if (s>=0 && reachable.contains(s))
+			{
+				return ACTIONS[policy[s]];
+			}
+			return table.decide(state, utilities, transitionFunction);
+		}
+	}
+}
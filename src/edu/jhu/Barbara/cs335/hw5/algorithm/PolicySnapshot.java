@@ -0,0 +1,177 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * The decisions of a policy recorded once for every reachable state.  Each decision is stored as the ordinal of its
+ * action, so that a simulation can look up the action for a state index without building a {@link State} or
+ * consulting the policy again.  A snapshot never changes once it has been taken, so it may be shared
+ * by any number of threads; it is only faithful to policies which make the same decision every time they are asked.
+ */
+public class PolicySnapshot implements Policy
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The marker of a state for which no decision was recorded. */
+	private static final byte NONE = -1;
+
+	/** The indexer which addresses the states of the world. */
+	private StateIndexer indexer;
+	/** The index of the action chosen in each state, or {@link #NONE} for states which are not reachable. */
+	private byte[] actions;
+
+	/**
+	 * General constructor.
+	 * @param indexer The indexer which addresses the states of the world.
+	 * @param actions The index of the action chosen in each state.
+	 */
+	private PolicySnapshot(StateIndexer indexer, byte[] actions)
+	{
+		super();
+		this.indexer = indexer;
+		this.actions = actions;
+	}
+
+	/**
+	 * Records the decision of a policy in every reachable state.
+	 * @param policy The policy to record.
+	 * @param reachable The states in which to record its decisions.
+	 * @return The snapshot.
+	 * @throws IllegalStateException If the policy chooses an action which is not legal.
+	 */
+	public static PolicySnapshot take(Policy policy, ReachableStates reachable)
+	{
+		StateIndexer indexer = reachable.getIndexer();
+		byte[] actions = new byte[indexer.size()];
+		Arrays.fill(actions, NONE);
+		for (int i=0;i<reachable.size();i++)
+		{
+			int s = reachable.getState(i);
+			State state = indexer.decode(s);
+			Action action = policy.decide(state);
+			int a = (action==null) ? -1 : action.ordinal();
+			if (a<0)
+			{
+				throw new IllegalStateException("Policy chose an illegal action in " + state);
+			}
+			actions[s] = (byte)a;
+		}
+		return new PolicySnapshot(indexer, actions);
+	}
+
+	/**
+	 * Finds a state in which a simulation following this snapshot can become trapped: one which the snapshot may reach
+	 * from the starting line but from which it can never reach the finish line.  A simulation which enters such a
+	 * state never ends.  A policy which learns as it is simulated may escape such a state, but its snapshot cannot.
+	 * @param transitionFunction The transition function of the world.
+	 * @param world The world.
+	 * @return A trapping state, or <code>null</code> if every simulation ends with certainty.
+	 */
+	public State findTrap(TransitionFunction transitionFunction, WorldMap world)
+	{
+		boolean[] finishing = new boolean[this.indexer.getPositionCount()];
+		for (Pair<Integer,Integer> position : world.getFinishPositions())
+		{
+			int p = this.indexer.positionIndexOf(position.getFirst(), position.getSecond());
+			if (p>=0) finishing[p] = true;
+		}
+
+		// Find the states the snapshot may visit, and their successors under the snapshot
+		int[][] successors = new int[this.indexer.size()][];
+		List<Integer> visited = new ArrayList<Integer>();
+		for (Pair<Integer,Integer> position : world.getStartPositions())
+		{
+			int s = this.indexer.indexOf(position.getFirst(), position.getSecond(), 0, 0);
+			if (s>=0 && successors[s]==null)
+			{
+				successors[s] = new int[0];
+				visited.add(s);
+			}
+		}
+		for (int i=0;i<visited.size();i++)
+		{
+			int s = visited.get(i);
+			if (finishing[this.indexer.getPositionIndex(s)] || this.actions[s]==NONE) continue;
+			Set<Pair<State,Double>> outcomes = transitionFunction.transition(this.indexer.decode(s),
+					Action.valueOf(this.actions[s]));
+			int[] next = new int[outcomes.size()];
+			int count = 0;
+			for (Pair<State,Double> outcome : outcomes)
+			{
+				if (outcome.getSecond()<=0) continue;
+				int t = this.indexer.indexOf(outcome.getFirst());
+				next[count++] = t;
+				if (successors[t]==null)
+				{
+					successors[t] = new int[0];
+					visited.add(t);
+				}
+			}
+			successors[s] = Arrays.copyOf(next, count);
+		}
+
+		// Find the visited states which can reach the finish line, working back from it until nothing changes
+		boolean[] finishes = new boolean[this.indexer.size()];
+		for (int s : visited)
+		{
+			finishes[s] = finishing[this.indexer.getPositionIndex(s)];
+		}
+		boolean changed = true;
+		while (changed)
+		{
+			changed = false;
+			for (int s : visited)
+			{
+				if (finishes[s]) continue;
+				for (int t : successors[s])
+				{
+					if (finishes[t])
+					{
+						finishes[s] = true;
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+
+		for (int s : visited)
+		{
+			if (!finishes[s]) return this.indexer.decode(s);
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves the action recorded for a state.
+	 * @param state The index of the state.
+	 * @return The index of the action, or -1 if the state is not reachable.
+	 */
+	public int action(int state)
+	{
+		return this.actions[state];
+	}
+
+	/**
+	 * The action recorded for a given state.
+	 * @throws IllegalArgumentException If no action was recorded for the state.
+	 */
+	public Action decide(State state)
+	{
+		int s = this.indexer.indexOf(state);
+		if (s<0 || this.actions[s]==NONE)
+		{
+			throw new IllegalArgumentException("No decision recorded for " + state);
+		}
+		return Action.valueOf(this.actions[s]);
+	}
+}
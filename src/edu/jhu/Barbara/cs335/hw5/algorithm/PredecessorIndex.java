@@ -0,0 +1,110 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Arrays;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+
+/**
+ * The reverse of a {@link TransitionTable}: for each state, the distinct states from which some action can lead to it.
+ * Predecessors are stored in compressed sparse row form.
+ */
+public class PredecessorIndex
+{
+	/** The offset of the first predecessor of each state; entry <code>states</code> is the number of predecessors. */
+	private int[] offsets;
+	/** The predecessor state indices. */
+	private int[] predecessors;
+
+	/**
+	 * General constructor.
+	 * @param table The transition table to reverse.
+	 */
+	public PredecessorIndex(TransitionTable table)
+	{
+		super();
+		int states = table.getStateCount();
+		int[] lastSeen = new int[states];
+
+		// Count the distinct predecessors of each state
+		this.offsets = new int[states + 1];
+		Arrays.fill(lastSeen, -1);
+		for (int s=0;s<states;s++)
+		{
+			for (int a=0;a<Action.COUNT;a++)
+			{
+				for (int i=table.getRowStart(s, a);i<table.getRowEnd(s, a);i++)
+				{
+					int successor = table.getSuccessor(i);
+					if (lastSeen[successor]!=s)
+					{
+						lastSeen[successor] = s;
+						this.offsets[successor + 1]++;
+					}
+				}
+			}
+		}
+		for (int s=0;s<states;s++)
+		{
+			this.offsets[s + 1] += this.offsets[s];
+		}
+
+		// Fill them in
+		this.predecessors = new int[this.offsets[states]];
+		int[] fill = Arrays.copyOf(this.offsets, states);
+		Arrays.fill(lastSeen, -1);
+		for (int s=0;s<states;s++)
+		{
+			for (int a=0;a<Action.COUNT;a++)
+			{
+				for (int i=table.getRowStart(s, a);i<table.getRowEnd(s, a);i++)
+				{
+					int successor = table.getSuccessor(i);
+					if (lastSeen[successor]!=s)
+					{
+						lastSeen[successor] = s;
+						this.predecessors[fill[successor]++] = s;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the offset of the first predecessor of a state.
+	 * @param state The index of the state.
+	 * @return The offset of its first predecessor.
+	 */
+	public int getStart(int state)
+	{
+		return this.offsets[state];
+	}
+
+	/**
+	 * Retrieves the offset after the last predecessor of a state.
+	 * @param state The index of the state.
+	 * @return The offset after its last predecessor.
+	 */
+	public int getEnd(int state)
+	{
+		return this.offsets[state + 1];
+	}
+
+	/**
+	 * Retrieves a predecessor.
+	 * @param offset The offset of the predecessor.
+	 * @return The predecessor's state index.
+	 */
+	public int getPredecessor(int offset)
+	{
+		return this.predecessors[offset];
+	}
+
+	/**
+	 * Calculates the memory used by the arrays of this index.
+	 * @return The approximate number of bytes used by this index.
+	 */
+	public long getMemoryFootprint()
+	{
+		return 4L * this.offsets.length + 4L * this.predecessors.length;
+	}
+}
@@ -0,0 +1,311 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.IndexedPriorityQueue;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * A value iterating agent which, rather than sweeping over every state, always backs up the state with the largest
+ * Bellman error.  Whenever a state's utility changes, the Bellman errors of its predecessors are recalculated and
+ * their priorities updated.  The agent has converged once the largest remaining Bellman error falls below the same
+ * threshold used by {@link ValueIteratingAgent}.
+ *
+ * Only the {@link ReachableStates} of the world are compiled and queued.  Each iteration performs as many backups as
+ * there are reachable states, so that iteration counts remain comparable to those of sweeping agents.  Utilities start
+ * at the estimates of a {@link Heuristic}.
+ */
+public class PrioritizedSweepingAgent implements MetricReportingReinforcementLearningAgent
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The actions available to the agent, by ordinal. */
+	private static final Action[] ACTIONS = Action.values();
+
+	/** The world in which this agent is operating. */
+	private WorldMap world;
+	/** The discount factor for this agent. */
+	private double discountFactor;
+	/** The transition function that this agent uses. */
+	private TransitionFunction transitionFunction;
+	/** The reward function that this agent uses. */
+	private RewardFunction rewardFunction;
+	/** The heuristic which provides the initial utility of each state. */
+	private Heuristic heuristic;
+	/** The convergence tolerance (epsilon). */
+	private double convergenceTolerance;
+	/** The number of threads used to compile the transition table. */
+	private int threads;
+	/** The expected utility of each state, addressed by state index. */
+	private double[] utilities;
+	/** The number of backups performed so far. */
+	private long backups;
+
+	/** The reward of each state, addressed by state index. */
+	private transient double[] rewards;
+	/** The states which can be reached from the starting line. */
+	private transient ReachableStates reachable;
+	/** The compiled transition model. */
+	private transient TransitionTable table;
+	/** The states from which each state can be reached. */
+	private transient PredecessorIndex predecessors;
+	/** The states whose Bellman error is above the convergence threshold, prioritized by that error. */
+	private transient IndexedPriorityQueue queue;
+
+	/**
+	 * Creates a new prioritized sweeping agent.
+	 */
+	public PrioritizedSweepingAgent()
+	{
+		this.world = null;
+		this.discountFactor = 0.5;
+		this.transitionFunction = null;
+		this.rewardFunction = null;
+		this.heuristic = new ZeroHeuristic();
+		this.convergenceTolerance = 0.000000001;
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.utilities = null;
+		this.backups = 0;
+	}
+
+	/**
+	 * Compiles the reward and transition models if this has not yet been done.
+	 */
+	private void compile()
+	{
+		if (this.table!=null) return;
+
+		StateIndexer indexer = this.world.getStateIndexer();
+		this.reachable = ReachableStates.forWorld(this.world, this.transitionFunction);
+		this.rewards = this.reachable.rewards(this.rewardFunction);
+		if (this.utilities==null)
+		{
+			this.utilities = this.reachable.estimate(this.heuristic);
+		}
+		this.table = TransitionTable.build(this.transitionFunction, indexer, this.reachable, false, this.threads);
+		this.predecessors = new PredecessorIndex(this.table);
+	}
+
+	/**
+	 * Seeds the priority queue with the Bellman error of every reachable state if this has not yet been done.
+	 */
+	private void seed()
+	{
+		if (this.queue!=null) return;
+
+		this.queue = new IndexedPriorityQueue(this.utilities.length);
+		for (int i=0;i<this.reachable.size();i++)
+		{
+			prioritize(this.reachable.getState(i));
+		}
+	}
+
+	/**
+	 * Calculates the Bellman backup of a state.
+	 * @param s The index of the state.
+	 * @return The reward of the state plus the discounted utility of its best action.
+	 */
+	private double backup(int s)
+	{
+		double maxUtility = Double.NEGATIVE_INFINITY;
+		for (int a=0;a<ACTIONS.length;a++)
+		{
+			double utility = this.table.expectedValue(s, a, this.utilities);
+			if (utility > maxUtility)
+			{
+				maxUtility = utility;
+			}
+		}
+		return this.rewards[s] + this.discountFactor * maxUtility;
+	}
+
+	/**
+	 * Recalculates the Bellman error of a state and updates its place in the priority queue.
+	 * @param s The index of the state.
+	 */
+	private void prioritize(int s)
+	{
+		double error = Math.abs(backup(s) - this.utilities[s]);
+		if (error >= threshold())
+		{
+			this.queue.set(s, error);
+		} else
+		{
+			this.queue.remove(s);
+		}
+	}
+
+	/**
+	 * Retrieves the Bellman error below which a state is considered converged.
+	 */
+	private double threshold()
+	{
+		return this.convergenceTolerance * ((1 - this.discountFactor) / this.discountFactor);
+	}
+
+	@Override
+	public Policy getPolicy()
+	{
+		return new PrioritizedSweepingPolicy();
+	}
+
+	/**
+	 * Backs up the states with the largest Bellman errors.  Return value specifies whether a termination criterion
+	 * has been met.
+	 */
+	@Override
+	public boolean iterate()
+	{
+		compile();
+		seed();
+
+		for (int i=0;i<this.reachable.size();i++)
+		{
+			if (this.queue.isEmpty()) break;
+
+			int s = this.queue.poll();
+			this.utilities[s] = backup(s);
+			this.backups++;
+			for (int p=this.predecessors.getStart(s);p<this.predecessors.getEnd(s);p++)
+			{
+				prioritize(this.predecessors.getPredecessor(p));
+			}
+		}
+
+		return this.queue.isEmpty();
+	}
+
+	@Override
+	public PrioritizedSweepingAgent duplicate()
+	{
+		PrioritizedSweepingAgent ret = new PrioritizedSweepingAgent();
+		ret.setConvergenceTolerance(this.convergenceTolerance);
+		ret.setDiscountFactor(this.discountFactor);
+		ret.setRewardFunction(this.rewardFunction);
+		ret.setTransitionFunction(this.transitionFunction);
+		ret.setHeuristic(this.heuristic);
+		ret.setWorld(this.world);
+		ret.setThreads(this.threads);
+		ret.backups = this.backups;
+		if (this.utilities!=null)
+		{
+			ret.utilities = Arrays.copyOf(this.utilities, this.utilities.length);
+		}
+		// The queue is mutable, so the duplicate seeds its own from the copied utilities if it iterates.
+		ret.rewards = this.rewards;
+		ret.reachable = this.reachable;
+		ret.table = this.table;
+		ret.predecessors = this.predecessors;
+		return ret;
+	}
+
+	@Override
+	public List<Pair<String,String>> getMetrics()
+	{
+		List<Pair<String,String>> metrics = new ArrayList<Pair<String,String>>();
+		metrics.add(new Pair<String,String>("Backups", String.valueOf(this.backups)));
+		if (this.queue!=null)
+		{
+			metrics.add(new Pair<String,String>("Sweep equivalents",
+					String.format("%.2f", (double)this.backups / this.reachable.size())));
+			metrics.add(new Pair<String,String>("Pruned states", String.valueOf(this.reachable.getPrunedCount())));
+			metrics.add(new Pair<String,String>("Queued states", String.valueOf(this.queue.size())));
+			metrics.add(new Pair<String,String>("Model size",
+					((this.table.getMemoryFootprint() + this.predecessors.getMemoryFootprint()) / 1024) + " KiB"));
+		}
+		return metrics;
+	}
+
+	public double getDiscountFactor()
+	{
+		return discountFactor;
+	}
+
+	public void setDiscountFactor(double discountFactor)
+	{
+		this.discountFactor = discountFactor;
+	}
+
+	public TransitionFunction getTransitionFunction()
+	{
+		return transitionFunction;
+	}
+
+	public void setTransitionFunction(TransitionFunction transitionFunction)
+	{
+		this.transitionFunction = transitionFunction;
+	}
+
+	public RewardFunction getRewardFunction()
+	{
+		return rewardFunction;
+	}
+
+	public void setRewardFunction(RewardFunction rewardFunction)
+	{
+		this.rewardFunction = rewardFunction;
+	}
+
+	public Heuristic getHeuristic()
+	{
+		return heuristic;
+	}
+
+	public void setHeuristic(Heuristic heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+
+	public WorldMap getWorld()
+	{
+		return world;
+	}
+
+	public void setWorld(WorldMap world)
+	{
+		this.world = world;
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = threads;
+	}
+
+	public double getConvergenceTolerance()
+	{
+		return convergenceTolerance;
+	}
+
+	public void setConvergenceTolerance(double convergenceTolerance)
+	{
+		this.convergenceTolerance = convergenceTolerance;
+	}
+
+	/**
+	 * Represents a policy that this agent would produce.
+	 */
+	public class PrioritizedSweepingPolicy implements Policy
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The action an agent decides to take from a given state.
+		 */
+		public Action decide(State state)
+		{
+			compile();
+			return table.decide(state, utilities, transitionFunction);
+		}
+	}
+}
@@ -1,13 +1,23 @@
 package edu.jhu.Barbara.cs335.hw5.algorithm;
 import edu.jhu.Barbara.cs335.hw5.data.Action;
 import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
 import edu.jhu.Barbara.cs335.hw5.simulator.SimulationStep;
 import edu.jhu.Barbara.cs335.hw5.simulator.Simulator;
 import edu.jhu.Barbara.cs335.hw5.simulator.SimulatorEvent;
 import edu.jhu.Barbara.cs335.hw5.simulator.SimulatorListener;
-import edu.jhu.Barbara.cs335.hw5.util.DefaultValueHashMap;
+import edu.jhu.Barbara.cs335.hw5.simulator.StepCallback;
 import edu.jhu.Barbara.cs335.hw5.util.Pair;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A reinforcement agent which uses the Q-learning technique.
@@ -24,12 +34,94 @@ import java.util.*;
  * the difference between subsequent Q-value updates, searching for eventual
  * convergence. An aMaxFunction method returns the action associated with the'
  * maximum reward for a given state. A QLearningFunction method updates a
- * HashMap of rewards according to the classic Q-learning function:
- * Q <- Q + alpha(n)(r + gamma*Qmax' - Q), where n = # of visit events	*/
-public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
+ * primitive QTable of rewards according to the classic Q-learning function:
+ * Q <- Q + alpha(n)(r + gamma*Qmax' - Q), where n = # of visit events.
+ * If a steps-to-finish heuristic is provided, unlearned Q-values start at the
+ * heuristic's upper bound instead of 0.0, and that bound replaces rOptimistic
+ * as the optimistic estimate of scarcely-used state-actions.
+ * In streaming mode, each iteration makes exactly one update per transition
+ * from inside the simulator's step, so the policy learns as it goes and no
+ * history is kept or replayed.  If a memory budget is set, the agent runs in
+ * bounded-memory mode: the Q-table, replay buffer and learned model together
+ * may not grow beyond the budget, and the agent always streams.  Exceeding the budget stops learning with a
+ * MemoryBudgetExceededException.
+ * With more than one actor, each iteration runs one streamed episode per
+ * actor at once, each on its own thread and simulator, all learning into
+ * one ConcurrentQTable.  Unlearned pairs of that table are filled with their
+ * initial estimate up front, so every update is a single atomic step.
+ * With a replay capacity, each transition is also stored in a ReplayBuffer,
+ * and after each step the agent replays stored transitions at a set ratio
+ * of replays to steps.  A replay updates Q(s, a) at the pair's current
+ * learning rate without counting as a visit.  Replay implies streaming.
+ * With planning steps, the agent runs Dyna-Q: each transition is also
+ * counted in a LearnedTransitionModel, and after each step the agent makes
+ * that many planning updates from transitions sampled from the model, in
+ * the same way as replays.  Planning implies streaming.
+ * With a lambda, the agent runs Watkins's Q(lambda): each error is spread
+ * over every pair with an eligibility trace, and the traces are cut when
+ * the next action is exploratory (its learned value falls short of the best
+ * learned value, or it has never been tried).  With n steps, the agent
+ * runs n-step Q-learning: each pair is updated toward its next n rewards
+ * plus the discounted value after them, without importance-sampling
+ * corrections.  Both are kept within one episode and imply streaming.	*/
+public class QLearningAgent implements SimulationBasedReinforcementLearningAgent,
+		MetricReportingReinforcementLearningAgent
 {
 	private static final long serialVersionUID = 1L;
 
+	/** The actions available to the agent, by ordinal. */
+	private static final Action[] ACTIONS = Action.values();
+	/** The largest number of eligibility traces active at once. */
+	private static final int TRACE_CAPACITY = 4096;
+	/** The smallest eligibility trace kept. */
+	private static final double TRACE_CUTOFF = 0.0001;
+	/** The smallest learning factor used by Q(lambda) and n-step Q. */
+	private static final double MINIMUM_RATE = 0.1;
+	/** The largest number of state-action pairs for which a dense Q-table is chosen automatically. */
+	private static final int DENSE_TABLE_LIMIT = 1 << 22;
+	/** The number of seconds for which an actor's thread may sit idle before it ends. */
+	private static final long ACTOR_KEEP_ALIVE = 60;
+
+	/**
+	 * The kinds of Q-table this agent can keep.
+	 */
+	public static enum TableType
+	{
+		/** Chooses a dense table unless the world has too many state-action pairs. */
+		AUTO("auto"),
+		/** Keeps a slot for every state-action pair of the world. */
+		DENSE("dense"),
+		/** Keeps only the state-action pairs which have been visited, in a hash table. */
+		HASH("hash");
+
+		/** The name by which this type is selected. */
+		private String name;
+
+		private TableType(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Finds a table type by name.
+		 * @param name The name of the type.
+		 * @return The type with that name, or <code>null</code> if no such type exists.
+		 */
+		public static TableType forName(String name)
+		{
+			for (TableType type : values())
+			{
+				if (type.name.equals(name)) return type;
+			}
+			return null;
+		}
+
+		public String toString()
+		{
+			return this.name;
+		}
+	}
+
 	/** The number of times the agent will explore a given state-action pair before giving up on it. */
 	private int minimumExplorationCount;
 	/** The discount factor used by this agent to allow control over how important short-term gains are considered. */
@@ -42,14 +134,85 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 	private double delta;
 	/** An optimistic reward estimate of unknown or scarcely-used State-Action pairs, encouraging exploration. */
 	private double rOptimistic;
+	/** The heuristic which bounds unlearned Q-values, or null to start them at 0.0. */
+	private StepsToFinishHeuristic heuristic;
 
-	/** The record of how frequently each action has been explored from each state. */
-	private Map<Pair<State, Action>, Integer> visitEvents;
-	/** The expected reward for the provided state-action pair. */
-	private Map<Pair<State, Action>, Double> expectedReward;
+	/** The world in which this agent is operating. */
+	private WorldMap world;
+	/** The kind of Q-table this agent keeps. */
+	private TableType tableType;
+	/** The expected reward and visit count of each state-action pair, created when first needed. */
+	private QTable qTable;
+	/** The largest number of bytes the Q-table, replay buffer and model may use together, or 0 for no limit (and no
+	 *  bounded-memory mode). */
+	private long memoryBudget;
+	/** Whether or not learning has been stopped by the memory budget. */
+	private boolean budgetExceeded;
+	/** Whether or not each iteration streams its updates instead of replaying the simulation's history. */
+	private boolean streaming;
+	/** The number of actors which learn at once, each running its own episode on its own thread. */
+	private int actors;
+	/** The way in which the actors' updates to a shared Q-table are made atomic. */
+	private ConcurrentQTable.Synchronization synchronization;
+	/** The number of transitions the replay buffer holds, or 0 for no experience replay. */
+	private int replayCapacity;
+	/** The number of replayed updates made for each step. */
+	private double replayRatio;
+	/** The way in which transitions are sampled for replay. */
+	private ReplayBuffer.Sampling replaySampling;
+	/** Whether or not the replay buffer is stored off of the heap. */
+	private boolean replayDirect;
+	/** The number of Dyna-Q planning updates made after each step, or 0 for no planning. */
+	private int planningSteps;
+	/** The number of planning updates made so far. */
+	private long planningUpdates;
+	/** The decay of eligibility traces for Q(lambda), or 0 for no traces. */
+	private double lambda;
+	/** The number of rewards in each n-step return, or 1 for one-step Q-learning. */
+	private int nSteps;
+	/** The number of replayed updates made so far. */
+	private long replayUpdates;
+	/** The number of Q-value updates made so far. */
+	private long updates;
+	/** The time spent in iterations so far, in nanoseconds. */
+	private long iterationNanos;
 
 	/** The simulator which is simulating the environment in which this agent is learning. */
 	private transient Simulator simulator;
+	/** The indexer which addresses the states of the world. */
+	private transient StateIndexer indexer;
+	/** Whether or not each position, addressed by position index, is on the finish line. */
+	private transient boolean[] finishPositions;
+	/** The simulator of each actor, duplicated from this agent's simulator when first needed. */
+	private transient Simulator[] actorSimulators;
+	/** The threads on which the actors run, created when first needed and rebuilt when the actor count changes. */
+	private transient ExecutorService executor;
+	/** The number of threads in executor. */
+	private transient int executorThreads;
+	/** The random number generator of the replay buffer and model, split from the simulator's. */
+	private transient SplittableRandom random;
+	/** The budget to which the Q-table, replay buffer and model are all charged. */
+	private transient MemoryBudget budget;
+	/** The transitions kept for replay, created when first needed. */
+	private transient ReplayBuffer replay;
+	/** The replays owed to the steps taken so far but not yet made. */
+	private transient double replayCredit;
+	/** The model learned for planning, created when first needed. */
+	private transient LearnedTransitionModel model;
+	/** The active eligibility traces of the current episode, created when first needed. */
+	private transient EligibilityTraces traces;
+	/** The state of each pair in the n-step window, a ring starting at {@link #windowStart}. */
+	private transient int[] windowStates;
+	/** The action of each pair in the n-step window. */
+	private transient int[] windowActions;
+	/** The reward received after each pair in the n-step window. */
+	private transient double[] windowRewards;
+	/** The learning factor of the visit of each pair in the n-step window. */
+	private transient double[] windowRates;
+	/** The position of the oldest pair in the n-step window. */
+	private transient int windowStart;
+	/** The number of pairs in the n-step window. */
+	private transient int windowCount;
 
 	/**
 	 * General constructor.
@@ -60,21 +223,98 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 		this.discountFactor = 0.99;
 		this.learningFactor = 0.5;
 		this.convergenceTolerance = 0.01;
-		this.visitEvents = new DefaultValueHashMap<Pair<State, Action>, Integer>(0);
-		this.expectedReward = new DefaultValueHashMap<Pair<State, Action>, Double>(0.0);
+		this.world = null;
+		this.tableType = TableType.AUTO;
+		this.qTable = null;
+		this.memoryBudget = 0;
+		this.budgetExceeded = false;
+		this.streaming = false;
+		this.actors = 1;
+		this.synchronization = ConcurrentQTable.Synchronization.CAS;
+		this.replayCapacity = 0;
+		this.replayRatio = 1.0;
+		this.replaySampling = ReplayBuffer.Sampling.UNIFORM;
+		this.replayDirect = false;
+		this.replayUpdates = 0;
+		this.planningSteps = 0;
+		this.planningUpdates = 0;
+		this.lambda = 0.0;
+		this.nSteps = 1;
+		this.updates = 0;
+		this.iterationNanos = 0;
 		this.simulator = null;
 		this.delta = 0.0;
 		this.rOptimistic = 0.2;
+		this.heuristic = null;
+	}
+
+	/** Creates the Q-table when it is first needed, picking a dense table for any world small enough (and, in
+	 *  bounded-memory mode, any world whose dense table fits the budget): */
+	private void prepare() {
+		if (indexer == null) {
+			indexer = world.getStateIndexer();
+			finishPositions = new boolean[indexer.getPositionCount()];
+			for (Pair<Integer, Integer> finish : world.getFinishPositions()) {
+				int p = indexer.positionIndexOf(finish.getFirst(), finish.getSecond());
+				if (p >= 0) {
+					finishPositions[p] = true;
+				}
+			}
+		}
+		if (qTable == null && actors > 1) {
+			long footprint = DenseQTable.footprint(indexer.size());
+			if (memoryBudget > 0 && footprint > memoryBudget) {
+				throw new MemoryBudgetExceededException(memoryBudget, footprint);
+			}
+			qTable = new ConcurrentQTable(indexer.size(), synchronization);
+			if (heuristic != null) {
+				for (int s = 0; s < indexer.size(); s++) {
+					double initial = initialQ(s);
+					for (int a = 0; a < ACTIONS.length; a++) {
+						qTable.setValue(s, a, initial);
+					}
+				}
+			}
+		}
+		if (qTable == null) {
+			long denseFootprint = DenseQTable.footprint(indexer.size());
+			boolean dense = (tableType == TableType.DENSE) || (tableType == TableType.AUTO &&
+					(long) indexer.size() * ACTIONS.length <= DENSE_TABLE_LIMIT &&
+					(memoryBudget <= 0 || denseFootprint <= memoryBudget));
+			if (dense && memoryBudget > 0 && denseFootprint > memoryBudget) {
+				throw new MemoryBudgetExceededException(memoryBudget, denseFootprint);
+			}
+			qTable = dense ? new DenseQTable(indexer.size()) : new HashQTable(memoryBudget);
+		}
+		if (budget == null) {
+			/** A hash table reserves its slots as it grows; any other table is charged in full at once: */
+			if (qTable instanceof HashQTable) {
+				budget = ((HashQTable) qTable).getBudget();
+			} else {
+				budget = new MemoryBudget(memoryBudget);
+				budget.reserve(qTable.getMemoryFootprint());
+			}
+		}
+	}
+
+	/** The index of the state (s or s') in the Q-table: */
+	private int stateIndex(State state) {
+		prepare();
+		int s = indexer.indexOf(state);
+		if (s < 0) {
+			throw new IllegalStateException("State " + state + " is not part of the world");
+		}
+		return s;
 	}
 
-	private Action aMaxFunction(State state) {
-		Action aMax = null;
-		Double rMax = Double.MIN_VALUE;
-		for (Action action : Action.LEGAL_ACTIONS) {
-			Double reward = explorationFunction(state, action);
+	private int aMaxFunction(int state) {
+		int aMax = -1;
+		double rMax = Double.MIN_VALUE;
+		for (int action = 0; action < ACTIONS.length; action++) {
+			double reward = explorationFunction(state, action);
 
 			/** The very first action will become the initial max, ensuring an action is always taken: */
-			if (reward >= rMax || rMax == Double.MIN_VALUE) {
+			if (reward >= rMax || aMax < 0) {
 				rMax = reward;
 				aMax = action;
 			}
@@ -82,54 +322,98 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 		return aMax;
 	}
 
-	private Double explorationFunction(State sPrime, Action aPrime) {
+	private double explorationFunction(int sPrime, int aPrime) {
 		/** The potential of a future state may be positive if it is a "gateway" to exploration. Just as an
 		 *  optimistic value was assigned for exploration in the action selection, an optimistic value is a
 		 *  potential incentive for exploration when calculating the max a' of Q(s', a'). */
-		Double reward;
-		Pair<State, Action> sa = new Pair<>(sPrime, aPrime);
-		int n = visitEvents.get(sa);
+		double reward;
+		int n = qTable.getVisits(sPrime, aPrime);
 		if (n < minimumExplorationCount) {
-			reward = rOptimistic;
+			reward = (heuristic == null) ? rOptimistic : initialQ(sPrime);
 		} else {
-			reward = expectedReward.get(sa);
+			reward = qValue(sPrime, aPrime);
 		}
 
 		return reward;
 	}
 
+	/** An unlearned Q(s, a) is the expected utility of the state after s, which cannot be more than the utility of
+	 *  a state one step closer to the finish line than s.  The finish line itself is worth nothing further: */
+	private double initialQ(int state) {
+		int steps = heuristic.getSteps(state);
+		if (steps != StepsToFinishHeuristic.UNFINISHABLE && steps > 0) {
+			steps--;
+		}
+		return heuristic.bound(steps);
+	}
+
+	/** Every update of Q(s, a) is also a visit, so a pair without visits is unlearned: */
+	private double qValue(int s, int a) {
+		if (heuristic == null || qTable.getVisits(s, a) > 0) {
+			return qTable.getValue(s, a);
+		}
+		return initialQ(s);
+	}
+
 	private void QLearningFunction(SimulationStep step) {
+		/** The last step of a simulation only reports the finish state; no action was taken from it: */
+		if (step.getAction() == null) {
+			return;
+		}
+		QLearningFunction(step.getState(), step.getAction(), step.getResultState(),
+				step.getAfterScore() - step.getBeforeScore());
+	}
+
+	private void QLearningFunction(State state, Action action, State resultState, double r) {
 		/** Q(s, a): */
-		State s = step.getState();
-		Action a = step.getAction();
-		Pair<State, Action> Qsa = new Pair<State, Action>(s, a);
-		Double Q = expectedReward.get(Qsa);
+		int s = stateIndex(state);
+		int a = action.ordinal();
+		double Q = qValue(s, a);
 
 		/** Q(s', a'): */
-		State sPrime = step.getResultState();
+		int sPrime = stateIndex(resultState);
 
 		/** Qmaxa'(s', a'): */
-		Action maxAPrime = aMaxFunction(sPrime);
-		Double maxQPrime = expectedReward.get(new Pair<>(sPrime, maxAPrime));
+		int maxAPrime = aMaxFunction(sPrime);
+		double maxQPrime = qValue(sPrime, maxAPrime);
 
 		/** Update the exploration value, or number of visits: */
-		int n = visitEvents.get(Qsa) + 1;
-		visitEvents.put(Qsa, n);
-
-		/** The resulting reward, r: */
-		Double before = step.getBeforeScore();
-		Double after = step.getAfterScore();
+		int n = qTable.visit(s, a);
 
 		/** The learning factor decreases as n increases. This function is crucial to eventual convergence, as the
 		 *  Q-learning agent is never completely static: */
-		Double learningFactorFunction = learningFactor / (double) (n*n);
+		double learningFactorFunction = learningFactor / ((double) n * n);
+
+		/** Whether s' ends the episode: */
+		boolean terminal = finishPositions[indexer.getPositionIndex(sPrime)];
+
+		/** Q(lambda) and n-step Q defer or spread the update, so an unlearned Q(s, a) is stored as it was before its
+		 *  first visit.  Their learning factor decreases only as 1/n, and never below MINIMUM_RATE: the sum of
+		 *  alpha/n^2 is finite, so a pair which leads back to its own state can stop learning while still above its
+		 *  true value, and multi-step updates, which lower the pairs around it faster, would then leave the agent
+		 *  repeating it forever: */
+		if (lambda > 0 || nSteps > 1) {
+			if (n == 1) {
+				qTable.setValue(s, a, Q);
+			}
+			double rate = Math.max(learningFactor / n, MINIMUM_RATE);
+			if (lambda > 0) {
+				tracedFunction(s, a, rate * (r + (discountFactor * maxQPrime) - Q), n == 1, sPrime, maxQPrime,
+						terminal);
+			} else {
+				nStepFunction(s, a, r, rate, maxQPrime, terminal);
+			}
+			updates++;
+			learnFromExperience(s, a, r, sPrime, terminal);
+			return;
+		}
 
 		/** Recalculate delta by determining the updated difference, or convergence progression. Some alpha learning
 		 *  functions will reach infinite values after multiple updates. In these cases we assume negligible difference
 		 *  between a value of Infinity and another value of Infinity, sending back a delta indicating convergence: */
 		double update = 0.0;
 		try {
-			update = Q + learningFactorFunction * ((after - before) + (discountFactor * maxQPrime) - Q);
+			update = Q + learningFactorFunction * (r + (discountFactor * maxQPrime) - Q);
 			double difference = Math.abs(update - Q);
 			if(difference > delta){
 				delta = difference;
@@ -139,7 +423,208 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 				delta = Double.NEGATIVE_INFINITY;
 			}
 		}
-		expectedReward.put(Qsa, update);
+		qTable.setValue(s, a, update);
+		updates++;
+		learnFromExperience(s, a, r, sPrime, terminal);
+	}
+
+	/** Changes Q(s, a) by an amount, and records the change in delta: */
+	private void adjust(int s, int a, double change) {
+		if (Math.abs(change) > delta) {
+			delta = Math.abs(change);
+		}
+		qTable.setValue(s, a, qValue(s, a) + change);
+	}
+
+	/** Watkins's Q(lambda) with replacing traces: the trace of the pair just taken is set to 1 and the traces of the
+	 *  other actions from s are dropped, since s no longer leads to what follows by way of them.  The error of the
+	 *  step, scaled by the step's learning factor, is then applied to every traced pair in proportion to its trace.
+	 *  The traces then decay, unless the next action (the agent's choice in s') is exploratory, in which case the
+	 *  pairs before it no longer lead greedily to what follows and the traces are cut.  A first try of a pair is
+	 *  exploratory too, since it was chosen on its initial estimate; passing its error back would lower the pairs
+	 *  before it below values that were never learned, and the agent could then settle into a loop over them: */
+	private void tracedFunction(int s, int a, double change, boolean firstVisit, int sPrime, double nextQ,
+			boolean terminal) {
+		if (traces == null) {
+			traces = new EligibilityTraces(TRACE_CAPACITY, TRACE_CUTOFF);
+		}
+		if (firstVisit) {
+			traces.clear();
+		}
+		for (int b = 0; b < ACTIONS.length; b++) {
+			if (b != a) {
+				traces.drop(s * ACTIONS.length + b);
+			}
+		}
+		traces.set(s * ACTIONS.length + a, 1.0);
+		for (int i = 0; i < traces.size(); i++) {
+			adjust(traces.getKey(i) / ACTIONS.length, traces.getKey(i) % ACTIONS.length, change * traces.getValue(i));
+		}
+
+		boolean exploratory = false;
+		for (int b = 0; b < ACTIONS.length && !exploratory; b++) {
+			exploratory = qValue(sPrime, b) > nextQ;
+		}
+		if (terminal || exploratory) {
+			traces.clear();
+		} else {
+			traces.decay(discountFactor * lambda);
+		}
+	}
+
+	/** n-step Q: the pair just taken joins a window of the last n pairs, along with the learning factor of its visit.
+	 *  Once the window is full, its oldest pair is updated toward its n rewards plus the discounted value of s'; at the
+	 *  end of an episode, every remaining pair is updated toward the rewards left to it: */
+	private void nStepFunction(int s, int a, double r, double rate, double nextQ, boolean terminal) {
+		if (windowStates == null || windowStates.length != nSteps) {
+			windowStates = new int[nSteps];
+			windowActions = new int[nSteps];
+			windowRewards = new double[nSteps];
+			windowRates = new double[nSteps];
+			windowStart = 0;
+			windowCount = 0;
+		}
+		int end = (windowStart + windowCount) % nSteps;
+		windowStates[end] = s;
+		windowActions[end] = a;
+		windowRewards[end] = r;
+		windowRates[end] = rate;
+		windowCount++;
+
+		while (windowCount == nSteps || (terminal && windowCount > 0)) {
+			double target = nextQ;
+			for (int i = windowCount - 1; i >= 0; i--) {
+				target = windowRewards[(windowStart + i) % nSteps] + (discountFactor * target);
+			}
+			int x = windowStates[windowStart];
+			int y = windowActions[windowStart];
+			adjust(x, y, windowRates[windowStart] * (target - qValue(x, y)));
+			windowStart = (windowStart + 1) % nSteps;
+			windowCount--;
+		}
+	}
+
+	/** Every real step earns replays of past steps and planning steps from the model: */
+	private void learnFromExperience(int s, int a, double r, int sPrime, boolean terminal) {
+		if (replayCapacity > 0 || planningSteps > 0) {
+			if (replayCapacity > 0) {
+				if (replay == null) {
+					replay = new ReplayBuffer(replayCapacity, replaySampling, replayDirect, random.split(), budget);
+				}
+				replay.add(s, a, r, sPrime, terminal);
+				replayCredit += replayRatio;
+				while (replayCredit >= 1) {
+					replayCredit--;
+					int slot = replay.sample();
+					replay.setError(slot, backupFunction(replay.getState(slot), replay.getAction(slot),
+							replay.getReward(slot), replay.getNextState(slot), replay.isTerminal(slot)));
+					replayUpdates++;
+				}
+			}
+			if (planningSteps > 0) {
+				if (model == null) {
+					model = new LearnedTransitionModel(random.split(), budget);
+				}
+				model.observe(s, a, r, sPrime, terminal);
+				for (int i = 0; i < planningSteps; i++) {
+					int pair = model.samplePair();
+					int successor = model.sampleSuccessor(pair);
+					backupFunction(model.getState(pair), model.getAction(pair), model.getSuccessorReward(successor),
+							model.getSuccessorState(successor), model.isSuccessorTerminal(successor));
+					planningUpdates++;
+				}
+			}
+		}
+	}
+
+	/** A backup of a transition which was not just taken, whether replayed or planned.  It moves Q(s, a) toward its
+	 *  target at the rate of the pair's last visit; it is not a visit itself, and the end of an episode has no future
+	 *  to bootstrap from.  Returns the error of Q(s, a) before the backup: */
+	private double backupFunction(int s, int a, double r, int sPrime, boolean terminal) {
+		double Q = qValue(s, a);
+		double maxQPrime = 0.0;
+		if (!terminal) {
+			maxQPrime = qValue(sPrime, aMaxFunction(sPrime));
+		}
+		int n = qTable.getVisits(s, a);
+		double error = r + (discountFactor * maxQPrime) - Q;
+		qTable.setValue(s, a, Q + (learningFactor / ((double) n * n)) * error);
+		return error;
+	}
+
+	/** Whether or not each simulation is streamed rather than kept as a history: */
+	private boolean isStreamed() {
+		return streaming || memoryBudget > 0 || replayCapacity > 0 || planningSteps > 0 || lambda > 0 || nSteps > 1;
+	}
+
+	/** The update made by an actor.  Q(s, a) starts at its initial estimate in a shared table, so the update is a
+	 *  single atomic step toward the target, and the change is returned to the actor rather than kept in delta: */
+	private double concurrentQLearningFunction(State state, Action action, State resultState, double r) {
+		int s = stateIndex(state);
+		int a = action.ordinal();
+		int sPrime = stateIndex(resultState);
+		double maxQPrime = qValue(sPrime, aMaxFunction(sPrime));
+		int n = qTable.visit(s, a);
+		double learningFactorFunction = learningFactor / ((double) n * n);
+		return ((ConcurrentQTable) qTable).update(s, a, r + (discountFactor * maxQPrime), learningFactorFunction);
+	}
+
+	/** Runs one episode on each actor at once, and gathers their deltas and update counts: */
+	private void iterateActors() {
+		prepare();
+		if (actorSimulators == null || actorSimulators.length != actors) {
+			actorSimulators = new Simulator[actors];
+			for (int i = 0; i < actors; i++) {
+				actorSimulators[i] = simulator.duplicate();
+			}
+		}
+		if (executor == null || executorThreads != actors) {
+			/** The threads of an agent which is abandoned without being released end once they have been idle: */
+			releaseActors();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(actors, actors, ACTOR_KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Q-learning actor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+			executorThreads = actors;
+		}
+
+		List<Actor> tasks = new ArrayList<Actor>();
+		for (Simulator actorSimulator : actorSimulators) {
+			tasks.add(new Actor(actorSimulator));
+		}
+		delta = Integer.MIN_VALUE;
+		try {
+			for (Future<Actor> future : executor.invokeAll(tasks)) {
+				Actor actor = future.get();
+				delta = Math.max(delta, actor.delta);
+				updates += actor.updates;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while Q-learning", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Q-learning actor failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Shuts down the threads on which the actors run.  They are created again if this agent next iterates with more
+	 * than one actor.
+	 */
+	public void releaseActors() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
 	}
 
 	@Override
@@ -157,12 +642,32 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 	public boolean iterate()
 	{
 		// TODO: this function should call the simulator to perform a sample run
-		/** Calls simulator: */
-		List<SimulationStep> history = this.simulator.simulate(this.getPolicy());
+		/** Calls simulator.  A streamed simulation informs no listeners; its callback makes the only update of each
+		 *  step: */
+		long start = System.nanoTime();
+		try {
+			if (actors > 1) {
+				iterateActors();
+			} else if (isStreamed()) {
+				delta = Integer.MIN_VALUE;
+				if (traces != null) {
+					traces.clear();
+				}
+				windowCount = 0;
+				this.simulator.run(this.getPolicy(), new QLearningCallback());
+			} else {
+				List<SimulationStep> history = this.simulator.simulate(this.getPolicy());
 
-		delta = Integer.MIN_VALUE;
-		for (int i = 0; i < history.size() - 1; i++) {
-			QLearningFunction(history.get(i));
+				delta = Integer.MIN_VALUE;
+				for (int i = 0; i < history.size() - 1; i++) {
+					QLearningFunction(history.get(i));
+				}
+			}
+		} catch (MemoryBudgetExceededException e) {
+			budgetExceeded = true;
+			throw e;
+		} finally {
+			iterationNanos += System.nanoTime() - start;
 		}
 
 		/** Each iteration is checked for convergence, with special care to handle calculation of infinite numbers: */
@@ -194,11 +699,212 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 		ret.setDiscountFactor(this.discountFactor);
 		ret.setLearningFactor(this.learningFactor);
 		ret.setMinimumExplorationCount(this.minimumExplorationCount);
-		ret.expectedReward.putAll(this.expectedReward);
-		ret.visitEvents.putAll(this.visitEvents);
+		ret.setHeuristic(this.heuristic);
+		ret.setWorld(this.world);
+		ret.setTableType(this.tableType);
+		ret.setMemoryBudget(this.memoryBudget);
+		ret.budgetExceeded = this.budgetExceeded;
+		ret.setStreaming(this.streaming);
+		ret.setActors(this.actors);
+		ret.setSynchronization(this.synchronization);
+		ret.setReplayCapacity(this.replayCapacity);
+		ret.setReplayRatio(this.replayRatio);
+		ret.setReplaySampling(this.replaySampling);
+		ret.setReplayDirect(this.replayDirect);
+		ret.replayUpdates = this.replayUpdates;
+		ret.setPlanningSteps(this.planningSteps);
+		ret.planningUpdates = this.planningUpdates;
+		ret.setLambda(this.lambda);
+		ret.setNSteps(this.nSteps);
+		ret.updates = this.updates;
+		ret.iterationNanos = this.iterationNanos;
+		if (this.qTable != null) {
+			ret.qTable = this.qTable.copy();
+		}
 		return ret;
 	}
 
+	@Override
+	public List<Pair<String, String>> getMetrics()
+	{
+		List<Pair<String, String>> metrics = new ArrayList<Pair<String, String>>();
+		if (qTable != null) {
+			String type = (qTable instanceof ConcurrentQTable) ?
+					"concurrent (" + ((ConcurrentQTable) qTable).getSynchronization() + ")" :
+					((qTable instanceof DenseQTable) ? "dense" : "hash");
+			metrics.add(new Pair<String, String>("Q table", type +
+					", " + qTable.size() + " pairs visited, " + (qTable.getMemoryFootprint() / 1024) + " KiB"));
+		}
+		if (memoryBudget > 0) {
+			metrics.add(new Pair<String, String>("Memory budget", ((budget == null) ? 0 : budget.getUsed() / 1024) +
+					" of " + (memoryBudget / 1024) + " KiB used" +
+					(budgetExceeded ? " (EXCEEDED; learning stopped)" : "")));
+		}
+		String rate = (iterationNanos > 0) ?
+				String.format(", %.0f per second", updates / (iterationNanos / 1000000000.0)) : "";
+		if (actors > 1) {
+			metrics.add(new Pair<String, String>("Actors", String.valueOf(actors)));
+		}
+		metrics.add(new Pair<String, String>("Updates", updates + ((isStreamed() || actors > 1) ?
+				" streamed" : " replayed") + rate));
+		if (lambda > 0) {
+			metrics.add(new Pair<String, String>("Traces", "Q(" + lambda + "), " +
+					((traces == null) ? 0 : traces.size()) + " active"));
+		} else if (nSteps > 1) {
+			metrics.add(new Pair<String, String>("Returns", nSteps + "-step"));
+		}
+		if (model != null) {
+			metrics.add(new Pair<String, String>("Dyna-Q", updates + " real steps, " + planningUpdates +
+					" planning updates"));
+			metrics.add(new Pair<String, String>("Model", model.getPairCount() + " pairs, " +
+					model.getSuccessorCount() + " successors (" + (model.getMemoryFootprint() / 1024) + " KiB)"));
+		}
+		if (replay != null) {
+			metrics.add(new Pair<String, String>("Replay", replayUpdates + " updates from " + replay.size() + "/" +
+					replay.getCapacity() + " transitions (" + replay.getSampling() + ", " +
+					(replay.isDirect() ? "off-heap, " : "") + (replay.getMemoryFootprint() / 1024) + " KiB)"));
+		}
+		return metrics;
+	}
+
+	public WorldMap getWorld()
+	{
+		return world;
+	}
+
+	public void setWorld(WorldMap world)
+	{
+		this.world = world;
+	}
+
+	public TableType getTableType()
+	{
+		return tableType;
+	}
+
+	public void setTableType(TableType tableType)
+	{
+		this.tableType = tableType;
+	}
+
+	public long getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+
+	public void setMemoryBudget(long memoryBudget)
+	{
+		this.memoryBudget = memoryBudget;
+	}
+
+	public boolean isStreaming()
+	{
+		return streaming;
+	}
+
+	public void setStreaming(boolean streaming)
+	{
+		this.streaming = streaming;
+	}
+
+	public int getActors()
+	{
+		return actors;
+	}
+
+	public void setActors(int actors)
+	{
+		this.actors = actors;
+	}
+
+	public ConcurrentQTable.Synchronization getSynchronization()
+	{
+		return synchronization;
+	}
+
+	public void setSynchronization(ConcurrentQTable.Synchronization synchronization)
+	{
+		this.synchronization = synchronization;
+	}
+
+	public int getReplayCapacity()
+	{
+		return replayCapacity;
+	}
+
+	public void setReplayCapacity(int replayCapacity)
+	{
+		this.replayCapacity = replayCapacity;
+		this.replay = null;
+	}
+
+	public double getReplayRatio()
+	{
+		return replayRatio;
+	}
+
+	public void setReplayRatio(double replayRatio)
+	{
+		this.replayRatio = replayRatio;
+	}
+
+	public ReplayBuffer.Sampling getReplaySampling()
+	{
+		return replaySampling;
+	}
+
+	public void setReplaySampling(ReplayBuffer.Sampling replaySampling)
+	{
+		this.replaySampling = replaySampling;
+		this.replay = null;
+	}
+
+	public boolean isReplayDirect()
+	{
+		return replayDirect;
+	}
+
+	public void setReplayDirect(boolean replayDirect)
+	{
+		this.replayDirect = replayDirect;
+		this.replay = null;
+	}
+
+	public int getPlanningSteps()
+	{
+		return planningSteps;
+	}
+
+	public void setPlanningSteps(int planningSteps)
+	{
+		this.planningSteps = planningSteps;
+	}
+
+	public double getLambda()
+	{
+		return lambda;
+	}
+
+	public void setLambda(double lambda)
+	{
+		this.lambda = lambda;
+	}
+
+	public int getNSteps()
+	{
+		return nSteps;
+	}
+
+	public void setNSteps(int nSteps)
+	{
+		this.nSteps = nSteps;
+	}
+
+	public long getUpdates()
+	{
+		return updates;
+	}
+
 	public int getMinimumExplorationCount()
 	{
 		return minimumExplorationCount;
@@ -219,6 +925,16 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 		this.discountFactor = discountFactor;
 	}
 
+	public StepsToFinishHeuristic getHeuristic()
+	{
+		return heuristic;
+	}
+
+	public void setHeuristic(StepsToFinishHeuristic heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+
 	public double getLearningFactor()
 	{
 		return learningFactor;
@@ -247,6 +963,8 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 	public void setSimulator(Simulator simulator)
 	{
 		this.simulator = simulator;
+		this.actorSimulators = null;
+		this.random = simulator.splitRandom();
 	}
 
 	/**
@@ -256,9 +974,6 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 	{
 		private static final long serialVersionUID = 1L;
 
-		/** A randomizer used to break ties. */
-		private Random random = new Random();
-
 		public QPolicy()
 		{
 			super();
@@ -273,7 +988,57 @@ public class QLearningAgent implements SimulationBasedReinforcementLearningAgent
 			// TODO: this function should return an appropriate action based on
 			// an exploration policy and the current estimate of expected
 			// future reward.
-			return aMaxFunction(state);
+			return ACTIONS[aMaxFunction(stateIndex(state))];
+		}
+	}
+
+	/**
+	 * An actor which runs one episode on its own simulator, learning into the shared Q-table as it goes.
+	 */
+	class Actor implements Callable<Actor>, StepCallback
+	{
+		/** The simulator on which this actor runs. */
+		private Simulator simulator;
+		/** The largest change this actor made to any Q-value. */
+		private double delta;
+		/** The number of updates this actor made. */
+		private long updates;
+
+		public Actor(Simulator simulator)
+		{
+			super();
+			this.simulator = simulator;
+			this.delta = Integer.MIN_VALUE;
+			this.updates = 0;
+		}
+
+		@Override
+		public Actor call()
+		{
+			simulator.run(getPolicy(), this);
+			return this;
+		}
+
+		@Override
+		public void step(State state, Action action, State resultState, double reward)
+		{
+			double difference = concurrentQLearningFunction(state, action, resultState, reward);
+			if (difference > delta) {
+				delta = difference;
+			}
+			updates++;
+		}
+	}
+
+	/**
+	 * The callback which learns on behalf of this agent during a streamed simulation.
+	 */
+	class QLearningCallback implements StepCallback
+	{
+		@Override
+		public void step(State state, Action action, State resultState, double reward)
+		{
+			QLearningFunction(state, action, resultState, reward);
 		}
 	}
 
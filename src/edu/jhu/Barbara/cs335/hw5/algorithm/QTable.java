@@ -0,0 +1,62 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.io.Serializable;
+
+/**
+ * Implementers of this interface store a Q-value and a visit count for each state-action pair.  States are addressed
+ * by the index a {@link edu.jhu.Barbara.cs335.hw5.data.StateIndexer} assigns them and actions by their ordinal (see
+ * {@link edu.jhu.Barbara.cs335.hw5.data.Action#ordinal()}), so that no lookup allocates or boxes.  A pair which has
+ * never been stored has a Q-value of 0 and no visits.
+ */
+public interface QTable extends Serializable
+{
+	/**
+	 * Retrieves the Q-value of a state-action pair.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @return The Q-value of the pair.
+	 */
+	public double getValue(int state, int action);
+
+	/**
+	 * Changes the Q-value of a state-action pair.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @param value The new Q-value of the pair.
+	 */
+	public void setValue(int state, int action, double value);
+
+	/**
+	 * Retrieves the number of times a state-action pair has been visited.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @return The visit count of the pair.
+	 */
+	public int getVisits(int state, int action);
+
+	/**
+	 * Records a visit to a state-action pair.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @return The visit count of the pair, including this visit.
+	 */
+	public int visit(int state, int action);
+
+	/**
+	 * Retrieves the number of state-action pairs this table has stored.
+	 * @return The number of pairs stored.
+	 */
+	public int size();
+
+	/**
+	 * Calculates the memory used by the arrays of this table.
+	 * @return The approximate number of bytes used by this table.
+	 */
+	public long getMemoryFootprint();
+
+	/**
+	 * Creates an independent copy of this table.
+	 * @return The copy.
+	 */
+	public QTable copy();
+}
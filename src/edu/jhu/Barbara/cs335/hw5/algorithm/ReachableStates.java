@@ -0,0 +1,193 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * The closure of the states which an agent can reach from the starting line.  The closure is found by a
+ * breadth-first search over a transition function from each start position with zero velocity.  Since a hard crash
+ * resets the agent to these same states, the closure also contains every state reachable after a crash.  Indexed
+ * states outside of the closure (most of them high-velocity states beside walls) can never be visited and need not be
+ * swept.
+ */
+public class ReachableStates
+{
+	/** The closures computed so far for each world, indexed by whether hard crashing is enabled. */
+	private static final Map<WorldMap,ReachableStates[]> CACHE = new WeakHashMap<WorldMap,ReachableStates[]>();
+
+	/** The indexer which addresses the states of the world. */
+	private StateIndexer indexer;
+	/** The set of reachable state indices. */
+	private BitSet reachable;
+	/** The reachable state indices in ascending order. */
+	private int[] states;
+
+	/**
+	 * General constructor.  Performs the search.
+	 * @param world The world in which to search.
+	 * @param transitionFunction The transition function over which to search.
+	 */
+	public ReachableStates(WorldMap world, TransitionFunction transitionFunction)
+	{
+		super();
+		this.indexer = world.getStateIndexer();
+		this.reachable = new BitSet(this.indexer.size());
+
+		int[] queue = new int[this.indexer.size()];
+		int head = 0;
+		int tail = 0;
+		for (Pair<Integer,Integer> start : world.getStartPositions())
+		{
+			int s = this.indexer.indexOf(start.getFirst(), start.getSecond(), 0, 0);
+			if (s>=0 && !this.reachable.get(s))
+			{
+				this.reachable.set(s);
+				queue[tail++] = s;
+			}
+		}
+		while (head<tail)
+		{
+			State state = this.indexer.decode(queue[head++]);
+			for (int a=0;a<Action.COUNT;a++)
+			{
+				for (Pair<State,Double> outcome : transitionFunction.transition(state, Action.valueOf(a)))
+				{
+					int successor = this.indexer.indexOf(outcome.getFirst());
+					if (successor>=0 && !this.reachable.get(successor))
+					{
+						this.reachable.set(successor);
+						queue[tail++] = successor;
+					}
+				}
+			}
+		}
+
+		this.states = new int[tail];
+		int i = 0;
+		for (int s=this.reachable.nextSetBit(0);s>=0;s=this.reachable.nextSetBit(s + 1))
+		{
+			this.states[i++] = s;
+		}
+	}
+
+	/**
+	 * Retrieves the reachable states of a world.  The result for a {@link TerrainBasedTransitionFunction} depends only
+	 * upon the world and whether hard crashing is enabled, so it is cached and shared on that basis; other transition
+	 * functions are searched anew on every call.  A {@link CachingTransitionFunction} is treated as the function it
+	 * caches.
+	 * @param world The world in question.
+	 * @param transitionFunction The transition function of the world.
+	 * @return The reachable states.
+	 */
+	public static ReachableStates forWorld(WorldMap world, TransitionFunction transitionFunction)
+	{
+		if (transitionFunction instanceof CachingTransitionFunction)
+		{
+			transitionFunction = ((CachingTransitionFunction)transitionFunction).getDelegate();
+		}
+		if (!(transitionFunction instanceof TerrainBasedTransitionFunction))
+		{
+			return new ReachableStates(world, transitionFunction);
+		}
+
+		int key = ((TerrainBasedTransitionFunction)transitionFunction).getHardCrash() ? 1 : 0;
+		synchronized (CACHE)
+		{
+			ReachableStates[] cached = CACHE.get(world);
+			if (cached==null)
+			{
+				cached = new ReachableStates[2];
+				CACHE.put(world, cached);
+			}
+			if (cached[key]==null)
+			{
+				cached[key] = new ReachableStates(world, transitionFunction);
+			}
+			return cached[key];
+		}
+	}
+
+	/**
+	 * Retrieves the indexer which addresses the states of the world.
+	 * @return The state indexer.
+	 */
+	public StateIndexer getIndexer()
+	{
+		return this.indexer;
+	}
+
+	/**
+	 * Retrieves the number of reachable states.
+	 * @return The number of reachable states.
+	 */
+	public int size()
+	{
+		return this.states.length;
+	}
+
+	/**
+	 * Retrieves a reachable state.
+	 * @param i The position of the state in ascending index order, from <code>0</code> to <code>size()-1</code>.
+	 * @return The index of the state.
+	 */
+	public int getState(int i)
+	{
+		return this.states[i];
+	}
+
+	/**
+	 * Determines whether a state is reachable.
+	 * @param index The index of the state.
+	 * @return <code>true</code> if the state is reachable; <code>false</code> otherwise.
+	 */
+	public boolean contains(int index)
+	{
+		return this.reachable.get(index);
+	}
+
+	/**
+	 * Creates an array of utilities in which each reachable state holds its heuristic estimate.
+	 * @param heuristic The heuristic with which to estimate the reachable states.
+	 * @return The utilities, addressed by state index; unreachable states are given 0.
+	 */
+	public double[] estimate(Heuristic heuristic)
+	{
+		double[] utilities = new double[this.indexer.size()];
+		for (int s : this.states)
+		{
+			utilities[s] = heuristic.estimate(this.indexer.decode(s));
+		}
+		return utilities;
+	}
+
+	/**
+	 * Creates an array of rewards in which each reachable state holds the reward for entering it.
+	 * @param rewardFunction The reward function with which to reward the reachable states.
+	 * @return The rewards, addressed by state index; unreachable states are given 0.
+	 */
+	public double[] rewards(RewardFunction rewardFunction)
+	{
+		double[] rewards = new double[this.indexer.size()];
+		for (int s : this.states)
+		{
+			rewards[s] = rewardFunction.reward(this.indexer.decode(s));
+		}
+		return rewards;
+	}
+
+	/**
+	 * Retrieves the number of indexed states which are not reachable.
+	 * @return The number of pruned states.
+	 */
+	public int getPrunedCount()
+	{
+		return this.indexer.size() - this.states.length;
+	}
+}
@@ -0,0 +1,288 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * A fixed-capacity ring of the transitions an agent has experienced, kept so that they may be replayed.  Each
+ * transition is a (state index, action index, reward, next state index, terminal) tuple.  The tuples are stored in
+ * struct-of-arrays form: one {@link ByteBuffer}, either on the heap or off of it, holds a region for each field, so
+ * that adding or sampling a transition allocates nothing.  Once the ring is full, each new transition replaces the
+ * oldest.
+ *
+ * Transitions are sampled either uniformly or in proportion to their priority.  A transition's priority is
+ * <code>(|error| + MINIMUM_PRIORITY) ^ PRIORITY_EXPONENT</code> for the temporal-difference error of its last replay;
+ * new transitions are given the highest priority seen so far, so that each is likely to be replayed at least once.
+ * Priorities are kept in a sum tree, so that sampling and updating a priority both take logarithmic time.
+ */
+public class ReplayBuffer
+{
+	/** The number of bytes each transition occupies. */
+	private static final int TRANSITION_SIZE = 4 + 4 + 8 + 1 + 1;
+	/** The exponent which controls how strongly priorities bias sampling; 0 would be uniform. */
+	private static final double PRIORITY_EXPONENT = 0.6;
+	/** The amount added to each error so that no transition becomes impossible to sample. */
+	private static final double MINIMUM_PRIORITY = 0.000001;
+
+	/**
+	 * The ways in which transitions can be sampled.
+	 */
+	public static enum Sampling
+	{
+		/** Samples each stored transition with equal probability. */
+		UNIFORM("uniform"),
+		/** Samples each stored transition in proportion to its priority. */
+		PRIORITIZED("prioritized");
+
+		/** The name by which this sampling is selected. */
+		private String name;
+
+		private Sampling(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Finds a sampling by name.
+		 * @param name The name of the sampling.
+		 * @return The sampling with that name, or <code>null</code> if no such sampling exists.
+		 */
+		public static Sampling forName(String name)
+		{
+			for (Sampling sampling : values())
+			{
+				if (sampling.name.equals(name)) return sampling;
+			}
+			return null;
+		}
+
+		public String toString()
+		{
+			return this.name;
+		}
+	}
+
+	/** The storage of the transitions. */
+	private ByteBuffer buffer;
+	/** The number of transitions the ring can hold. */
+	private int capacity;
+	/** The number of transitions stored. */
+	private int size;
+	/** The slot into which the next transition is stored. */
+	private int next;
+	/** The way in which transitions are sampled. */
+	private Sampling sampling;
+	/** The offset of the region of state indices. */
+	private int stateOffset;
+	/** The offset of the region of next state indices. */
+	private int nextStateOffset;
+	/** The offset of the region of rewards. */
+	private int rewardOffset;
+	/** The offset of the region of action indices. */
+	private int actionOffset;
+	/** The offset of the region of terminal flags. */
+	private int terminalOffset;
+	/** The sum tree of priorities: the leaf of slot <code>i</code> is at <code>leaves + i</code>, and each inner node
+	 *  holds the sum of its children.  <code>null</code> for uniform sampling. */
+	private double[] priorities;
+	/** The number of leaves in the sum tree, a power of two. */
+	private int leaves;
+	/** The highest priority given to any transition so far. */
+	private double maximumPriority;
+	/** A random number generator. */
+	private SplittableRandom random;
+
+	/**
+	 * General constructor.
+	 * @param capacity The number of transitions the ring can hold.
+	 * @param sampling The way in which transitions are sampled.
+	 * @param direct <code>true</code> to store the transitions off of the heap; <code>false</code> otherwise.
+	 * @param random The random number generator with which to sample transitions.
+	 */
+	public ReplayBuffer(int capacity, Sampling sampling, boolean direct, SplittableRandom random)
+	{
+		this(capacity, sampling, direct, random, new MemoryBudget(0));
+	}
+
+	/**
+	 * General constructor.
+	 * @param capacity The number of transitions the ring can hold.
+	 * @param sampling The way in which transitions are sampled.
+	 * @param direct <code>true</code> to store the transitions off of the heap; <code>false</code> otherwise.
+	 * @param random The random number generator with which to sample transitions.
+	 * @param budget The budget against which to reserve the memory of the buffer.
+	 * @throws MemoryBudgetExceededException If the buffer would exceed the budget.
+	 */
+	public ReplayBuffer(int capacity, Sampling sampling, boolean direct, SplittableRandom random, MemoryBudget budget)
+	{
+		super();
+		if (capacity<1 || capacity>Integer.MAX_VALUE / TRANSITION_SIZE)
+		{
+			throw new IllegalArgumentException("Invalid replay capacity: " + capacity);
+		}
+		int leaves = Integer.highestOneBit(capacity);
+		if (leaves<capacity) leaves *= 2;
+		budget.reserve((long)capacity * TRANSITION_SIZE + ((sampling==Sampling.PRIORITIZED) ? 16L * leaves : 0));
+		this.capacity = capacity;
+		this.size = 0;
+		this.next = 0;
+		this.sampling = sampling;
+		this.buffer = direct ? ByteBuffer.allocateDirect(capacity * TRANSITION_SIZE) :
+				ByteBuffer.allocate(capacity * TRANSITION_SIZE);
+		this.stateOffset = 0;
+		this.nextStateOffset = this.stateOffset + 4 * capacity;
+		this.rewardOffset = this.nextStateOffset + 4 * capacity;
+		this.actionOffset = this.rewardOffset + 8 * capacity;
+		this.terminalOffset = this.actionOffset + capacity;
+		if (sampling==Sampling.PRIORITIZED)
+		{
+			this.leaves = leaves;
+			this.priorities = new double[2 * this.leaves];
+		}
+		this.maximumPriority = 1.0;
+		this.random = random;
+	}
+
+	/**
+	 * Stores a transition, replacing the oldest if the ring is full.
+	 * @param state The index of the state in which the action was taken.
+	 * @param action The index of the action taken.
+	 * @param reward The reward received.
+	 * @param nextState The index of the state reached.
+	 * @param terminal Whether or not the state reached ends the episode.
+	 * @return The slot in which the transition was stored.
+	 */
+	public int add(int state, int action, double reward, int nextState, boolean terminal)
+	{
+		int slot = this.next;
+		this.buffer.putInt(this.stateOffset + 4 * slot, state);
+		this.buffer.putInt(this.nextStateOffset + 4 * slot, nextState);
+		this.buffer.putDouble(this.rewardOffset + 8 * slot, reward);
+		this.buffer.put(this.actionOffset + slot, (byte)action);
+		this.buffer.put(this.terminalOffset + slot, (byte)(terminal ? 1 : 0));
+		if (this.priorities!=null)
+		{
+			setPriority(slot, this.maximumPriority);
+		}
+		this.next = (slot + 1 == this.capacity) ? 0 : slot + 1;
+		if (this.size<this.capacity) this.size++;
+		return slot;
+	}
+
+	/**
+	 * Chooses a stored transition at random.
+	 * @return The slot of the transition.
+	 * @throws IllegalStateException If no transition is stored.
+	 */
+	public int sample()
+	{
+		if (this.size==0)
+		{
+			throw new IllegalStateException("No transitions to sample");
+		}
+		if (this.priorities==null)
+		{
+			return this.random.nextInt(this.size);
+		}
+
+		double target = this.random.nextDouble() * this.priorities[1];
+		int node = 1;
+		while (node<this.leaves)
+		{
+			int left = node * 2;
+			if (target < this.priorities[left] || this.priorities[left + 1]<=0)
+			{
+				node = left;
+			} else
+			{
+				target -= this.priorities[left];
+				node = left + 1;
+			}
+		}
+		return Math.min(node - this.leaves, this.size - 1);
+	}
+
+	/**
+	 * Records the temporal-difference error of a transition's latest replay.  Under uniform sampling, this has no
+	 * effect.
+	 * @param slot The slot of the transition.
+	 * @param error The error.
+	 */
+	public void setError(int slot, double error)
+	{
+		if (this.priorities==null) return;
+		double priority = Math.pow(Math.abs(error) + MINIMUM_PRIORITY, PRIORITY_EXPONENT);
+		if (priority>this.maximumPriority) this.maximumPriority = priority;
+		setPriority(slot, priority);
+	}
+
+	/**
+	 * Changes the priority of a slot and the sums above it.
+	 * @param slot The slot.
+	 * @param priority The new priority.
+	 */
+	private void setPriority(int slot, double priority)
+	{
+		int node = this.leaves + slot;
+		double change = priority - this.priorities[node];
+		while (node>=1)
+		{
+			this.priorities[node] += change;
+			node /= 2;
+		}
+	}
+
+	public int getState(int slot)
+	{
+		return this.buffer.getInt(this.stateOffset + 4 * slot);
+	}
+
+	public int getAction(int slot)
+	{
+		return this.buffer.get(this.actionOffset + slot);
+	}
+
+	public double getReward(int slot)
+	{
+		return this.buffer.getDouble(this.rewardOffset + 8 * slot);
+	}
+
+	public int getNextState(int slot)
+	{
+		return this.buffer.getInt(this.nextStateOffset + 4 * slot);
+	}
+
+	public boolean isTerminal(int slot)
+	{
+		return this.buffer.get(this.terminalOffset + slot)!=0;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public Sampling getSampling()
+	{
+		return sampling;
+	}
+
+	public boolean isDirect()
+	{
+		return this.buffer.isDirect();
+	}
+
+	/**
+	 * Calculates the memory used by this buffer.
+	 * @return The approximate number of bytes used by the transitions and their priorities.
+	 */
+	public long getMemoryFootprint()
+	{
+		return (long)this.buffer.capacity() + ((this.priorities==null) ? 0 : 8L * this.priorities.length);
+	}
+}
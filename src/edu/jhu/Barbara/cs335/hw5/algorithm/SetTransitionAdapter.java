@@ -0,0 +1,80 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * Presents an {@link IndexedTransitionFunction} as a {@link TransitionFunction}.  Each transition indexes the state
+ * and action, reads the outcomes and decodes them into a new set; outcomes which reach the same state are merged, so
+ * that no probability is lost to the set.  Only indexed states may be given to it.
+ */
+public class SetTransitionAdapter implements TransitionFunction
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The indexed transition function to adapt. */
+	private IndexedTransitionFunction transitionFunction;
+
+	/**
+	 * General constructor.
+	 * @param transitionFunction The indexed transition function to adapt.
+	 */
+	public SetTransitionAdapter(IndexedTransitionFunction transitionFunction)
+	{
+		super();
+		this.transitionFunction = transitionFunction;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IllegalArgumentException If the state is not indexed or the action is not legal.
+	 */
+	@Override
+	public Set<Pair<State, Double>> transition(State state, Action action)
+	{
+		StateIndexer indexer = this.transitionFunction.getIndexer();
+		int s = indexer.indexOf(state);
+		int a = action.ordinal();
+		if (s<0 || a<0)
+		{
+			throw new IllegalArgumentException("Cannot index transition from " + state + " by " + action);
+		}
+
+		OutcomeBuffer outcomes = new OutcomeBuffer();
+		int count = outcomes.load(this.transitionFunction, s, a);
+		Set<Pair<State,Double>> ret = new HashSet<Pair<State,Double>>();
+		for (int i=0;i<count;i++)
+		{
+			boolean merged = false;
+			double probability = outcomes.getProbability(i);
+			for (int j=0;j<i;j++)
+			{
+				if (outcomes.getSuccessor(j)==outcomes.getSuccessor(i))
+				{
+					merged = true;
+					break;
+				}
+			}
+			if (merged) continue;
+			for (int j=i+1;j<count;j++)
+			{
+				if (outcomes.getSuccessor(j)==outcomes.getSuccessor(i))
+				{
+					probability += outcomes.getProbability(j);
+				}
+			}
+			ret.add(new Pair<State,Double>(indexer.decode(outcomes.getSuccessor(i)), probability));
+		}
+		return ret;
+	}
+
+	public IndexedTransitionFunction getTransitionFunction()
+	{
+		return transitionFunction;
+	}
+}
@@ -0,0 +1,9 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+/**
+ * A marker for transition functions whose outcomes depend only on the state and action given to them, so that the
+ * outcomes of a state and action never change and may be computed once and kept.
+ */
+public interface StationaryTransitionFunction extends TransitionFunction
+{
+}
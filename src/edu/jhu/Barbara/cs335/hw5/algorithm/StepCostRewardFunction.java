@@ -1,7 +1,11 @@
 package edu.jhu.Barbara.cs335.hw5.algorithm;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
 import edu.jhu.Barbara.cs335.hw5.data.State;
 import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
 
 /**
  * Represents a reward function for step cost.  Each state which is not part of the goal is worth -1; the goal is worth
@@ -14,6 +18,12 @@ public class StepCostRewardFunction implements RewardFunction
 	
 	/** The world in which to implement this reward function. */
 	private WorldMap world;
+	/** The width of the world. */
+	private transient int width;
+	/** The height of the world. */
+	private transient int height;
+	/** Whether each cell of the world, addressed by <code>x + y * width</code>, is a finish position. */
+	private transient boolean[] finishing;
 	
 	/**
 	 * General constructor.
@@ -23,6 +33,21 @@ public class StepCostRewardFunction implements RewardFunction
 	{
 		super();
 		this.world = world;
+		findFinishPositions();
+	}
+
+	/**
+	 * Marks the cells of the world which are finish positions.
+	 */
+	private void findFinishPositions()
+	{
+		this.width = this.world.getSize().getFirst();
+		this.height = this.world.getSize().getSecond();
+		this.finishing = new boolean[this.width * this.height];
+		for (Pair<Integer,Integer> position : this.world.getFinishPositions())
+		{
+			this.finishing[position.getFirst() + position.getSecond() * this.width] = true;
+		}
 	}
 
 	/**
@@ -32,6 +57,15 @@ public class StepCostRewardFunction implements RewardFunction
 	 */
 	public double reward(State state)
 	{
-		return this.world.getFinishPositions().contains(state.getPosition()) ? 0 : -1;
+		int x = state.getX();
+		int y = state.getY();
+		if (x<0 || y<0 || x>=this.width || y>=this.height) return -1;
+		return this.finishing[x + y * this.width] ? 0 : -1;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		findFinishPositions();
 	}
 }
@@ -0,0 +1,196 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * A heuristic based upon the fewest steps in which each state could possibly reach the finish line.  The step counts
+ * are found by a breadth-first search backward from every finish state over the union of the outcomes of every action.
+ * Since the outcome of a slip is the same as the outcome of not accelerating, this union contains every path the
+ * agent could take under any luck, and the step counts are lower bounds on the steps of any actual run.
+ *
+ * A state which must take at least <code>d</code> steps to finish collects a reward of -1 for at least each of those
+ * steps, so its utility is at most <code>-(1 - gamma^d) / (1 - gamma)</code>.  This estimate is admissible.
+ *
+ * Only the {@link ReachableStates} of the world are searched.  Unreachable states are given no steps (and so are
+ * estimated to be worth 0); reachable states which cannot reach the finish line are given {@link #UNFINISHABLE}
+ * steps.  The step counts are cached and shared for each world and hard crash setting.
+ */
+public class StepsToFinishHeuristic implements Heuristic
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The number of steps of a state from which the finish line cannot be reached. */
+	public static final int UNFINISHABLE = Integer.MAX_VALUE;
+
+	/** The step counts computed so far for each world, indexed by whether hard crashing is enabled. */
+	private static final Map<WorldMap,int[][]> CACHE = new WeakHashMap<WorldMap,int[][]>();
+
+	/** The indexer which addresses the states of the world. */
+	private StateIndexer indexer;
+	/** The fewest steps to the finish line of each state, addressed by state index. */
+	private int[] steps;
+	/** The discount factor used to convert steps into utilities. */
+	private double discountFactor;
+
+	/**
+	 * General constructor.
+	 * @param world The world for which to compute the heuristic.
+	 * @param transitionFunction The transition function of the world.
+	 * @param discountFactor The discount factor used to convert steps into utilities.
+	 * @param threads The number of threads to use while compiling the world's transitions.
+	 */
+	public StepsToFinishHeuristic(WorldMap world, TransitionFunction transitionFunction, double discountFactor,
+			int threads)
+	{
+		super();
+		this.indexer = world.getStateIndexer();
+		this.steps = stepsFor(world, transitionFunction, threads);
+		this.discountFactor = discountFactor;
+	}
+
+	/**
+	 * Retrieves the step counts of a world.  The result for a {@link TerrainBasedTransitionFunction} depends only upon
+	 * the world and whether hard crashing is enabled, so it is cached on that basis; other transition functions are
+	 * searched anew on every call.  A {@link CachingTransitionFunction} is treated as the function it caches.
+	 * @param world The world in question.
+	 * @param transitionFunction The transition function of the world.
+	 * @param threads The number of threads to use while compiling the world's transitions.
+	 * @return The fewest steps to the finish line of each state, addressed by state index.
+	 */
+	private static int[] stepsFor(WorldMap world, TransitionFunction transitionFunction, int threads)
+	{
+		if (transitionFunction instanceof CachingTransitionFunction)
+		{
+			transitionFunction = ((CachingTransitionFunction)transitionFunction).getDelegate();
+		}
+		if (!(transitionFunction instanceof TerrainBasedTransitionFunction))
+		{
+			return search(world, transitionFunction, threads);
+		}
+
+		int key = ((TerrainBasedTransitionFunction)transitionFunction).getHardCrash() ? 1 : 0;
+		synchronized (CACHE)
+		{
+			int[][] cached = CACHE.get(world);
+			if (cached==null)
+			{
+				cached = new int[2][];
+				CACHE.put(world, cached);
+			}
+			if (cached[key]==null)
+			{
+				cached[key] = search(world, transitionFunction, threads);
+			}
+			return cached[key];
+		}
+	}
+
+	/**
+	 * Searches backward from the finish line over the reachable states of a world.
+	 * @param world The world in question.
+	 * @param transitionFunction The transition function of the world.
+	 * @param threads The number of threads to use while compiling the world's transitions.
+	 * @return The fewest steps to the finish line of each state, addressed by state index.
+	 */
+	private static int[] search(WorldMap world, TransitionFunction transitionFunction, int threads)
+	{
+		StateIndexer indexer = world.getStateIndexer();
+		ReachableStates reachable = ReachableStates.forWorld(world, transitionFunction);
+		PredecessorIndex predecessors = new PredecessorIndex(
+				TransitionTable.build(transitionFunction, indexer, reachable, false, threads));
+
+		int[] steps = new int[indexer.size()];
+		int[] queue = new int[reachable.size()];
+		int head = 0;
+		int tail = 0;
+		Arrays.fill(steps, UNFINISHABLE);
+		for (Pair<Integer,Integer> finish : world.getFinishPositions())
+		{
+			int p = indexer.positionIndexOf(finish.getFirst(), finish.getSecond());
+			if (p<0) continue;
+			for (int v=0;v<StateIndexer.VELOCITY_COUNT;v++)
+			{
+				int s = p * StateIndexer.VELOCITY_COUNT + v;
+				if (reachable.contains(s) && steps[s]!=0)
+				{
+					steps[s] = 0;
+					queue[tail++] = s;
+				}
+			}
+		}
+		while (head<tail)
+		{
+			int s = queue[head++];
+			for (int i=predecessors.getStart(s);i<predecessors.getEnd(s);i++)
+			{
+				int predecessor = predecessors.getPredecessor(i);
+				if (steps[predecessor]==UNFINISHABLE)
+				{
+					steps[predecessor] = steps[s] + 1;
+					queue[tail++] = predecessor;
+				}
+			}
+		}
+		for (int s=0;s<steps.length;s++)
+		{
+			if (!reachable.contains(s)) steps[s] = 0;
+		}
+		return steps;
+	}
+
+	/**
+	 * Retrieves the fewest steps in which a state could reach the finish line.
+	 * @param state The state in question.
+	 * @return The number of steps, 0 if the state is not indexed or not reachable, or {@link #UNFINISHABLE}.
+	 */
+	public int getSteps(State state)
+	{
+		int s = this.indexer.indexOf(state);
+		return (s>=0) ? this.steps[s] : 0;
+	}
+
+	/**
+	 * Retrieves the fewest steps in which a state could reach the finish line.
+	 * @param index The index of the state.
+	 * @return The number of steps, 0 if the state is not reachable, or {@link #UNFINISHABLE}.
+	 */
+	public int getSteps(int index)
+	{
+		return this.steps[index];
+	}
+
+	/**
+	 * Calculates the greatest utility of a state which must take a number of steps to reach the finish line.
+	 * @param steps The number of steps.
+	 * @return The upper bound on the state's utility.
+	 */
+	public double bound(int steps)
+	{
+		if (this.discountFactor>=1)
+		{
+			return (steps==UNFINISHABLE) ? Double.NEGATIVE_INFINITY : -steps;
+		}
+		if (steps==UNFINISHABLE)
+		{
+			return -1 / (1 - this.discountFactor);
+		}
+		return -(1 - Math.pow(this.discountFactor, steps)) / (1 - this.discountFactor);
+	}
+
+	public double estimate(State state)
+	{
+		return bound(getSteps(state));
+	}
+
+	public double getDiscountFactor()
+	{
+		return discountFactor;
+	}
+}
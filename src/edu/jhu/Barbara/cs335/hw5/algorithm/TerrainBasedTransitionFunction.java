@@ -10,14 +10,13 @@ import edu.jhu.Barbara.cs335.hw5.data.State;
 import edu.jhu.Barbara.cs335.hw5.data.Terrain;
 import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
 import edu.jhu.Barbara.cs335.hw5.util.Pair;
-import edu.jhu.Barbara.cs335.hw5.util.ReinforcementLearningUtilities;
 
 /**
  * This transition function moves the agent in accordance with the rules of the worlds set forth in the assignment
  * specification.
  * @author Zachary Palmer
  */
-public class TerrainBasedTransitionFunction implements TransitionFunction
+public class TerrainBasedTransitionFunction implements StationaryTransitionFunction
 {
 	private static final long serialVersionUID = 1L;
 	
@@ -53,7 +52,7 @@ public class TerrainBasedTransitionFunction implements TransitionFunction
 	public Set<Pair<State, Double>> transition(State state, Action action)
 	{
 		double slipProb = 0;
-		switch (this.world.getTerrain(state.getPosition()))
+		switch (this.world.getTerrain(state.getX(), state.getY()))
 		{
 			case WALL:
 				return hardCrashOutcomes();
@@ -66,14 +65,12 @@ public class TerrainBasedTransitionFunction implements TransitionFunction
 		}
 		
 		// Calculate for successful acceleration
-		Pair<Integer,Integer> newVelocity = ReinforcementLearningUtilities.pairPlusMaxAbs(
-				state.getVelocity(), action.getAcceleration(), 5);
-		Pair<Integer,Integer> newPosition = ReinforcementLearningUtilities.pairPlus(
-				state.getPosition(), newVelocity);
-		State noSlipState = new State(newPosition, newVelocity);
+		int vx = Math.min(Math.max(state.getVelocityX() + action.getDdx(), -5), 5);
+		int vy = Math.min(Math.max(state.getVelocityY() + action.getDdy(), -5), 5);
+		State noSlipState = new State(state.getX() + vx, state.getY() + vy, vx, vy);
 		State slipState = new State(
-				ReinforcementLearningUtilities.pairPlus(state.getPosition(), state.getVelocity()),
-				state.getVelocity());
+				state.getX() + state.getVelocityX(), state.getY() + state.getVelocityY(),
+				state.getVelocityX(), state.getVelocityY());
 		
 		// Reprocess for crash
 		Set<Pair<State,Double>> ret = new HashSet<Pair<State,Double>>();
@@ -98,14 +95,12 @@ public class TerrainBasedTransitionFunction implements TransitionFunction
 	private Collection<Pair<State,Double>> crashFilter(State newState, State oldState)
 	{
 		// First, see if a crash occurred.
-		int increments = Math.max(
-				Math.abs(newState.getVelocity().getFirst()),
-				Math.abs(newState.getVelocity().getSecond()));
+		int increments = Math.max(Math.abs(newState.getVelocityX()), Math.abs(newState.getVelocityY()));
 		
 		if (increments==0)
 		{
 			// Special case - we're not moving.  (i/increments==NaN)  Only crash hard if we're already in a wall.
-			if (this.world.getTerrain(newState.getPosition())==Terrain.WALL)
+			if (this.world.getTerrain(newState.getX(), newState.getY())==Terrain.WALL)
 			{
 				return hardCrashOutcomes();
 			} else
@@ -114,32 +109,34 @@ public class TerrainBasedTransitionFunction implements TransitionFunction
 			}
 		}
 		
-		Pair<Integer,Integer> crashPosition = null; // the position the agent would be in right before it hit the wall
+		// The position the agent would be in right before it hit the wall, if it was ever out of the wall
+		boolean crashPositionSet = false;
+		int crashX = 0;
+		int crashY = 0;
 		for (int i=0;i<=increments;i++)
 		{
 			double factor = (double)i/increments;
-			Pair<Integer,Integer> proposedPosition = new Pair<Integer,Integer>(
-					(int)(Math.round(
-							oldState.getPosition().getFirst() + factor * newState.getVelocity().getFirst())),
-					(int)(Math.round(
-							oldState.getPosition().getSecond() + factor * newState.getVelocity().getSecond())));
-			if (this.world.getTerrain(proposedPosition)==Terrain.WALL)
+			int proposedX = (int)(Math.round(oldState.getX() + factor * newState.getVelocityX()));
+			int proposedY = (int)(Math.round(oldState.getY() + factor * newState.getVelocityY()));
+			if (this.world.getTerrain(proposedX, proposedY)==Terrain.WALL)
 			{
 				break;
 			} else
 			{
-				crashPosition = proposedPosition;
+				crashPositionSet = true;
+				crashX = proposedX;
+				crashY = proposedY;
 			}
 		}
 		
-		// If we never set crashPosition, the agent must have been in the wall to start with.
-		if (crashPosition==null)
+		// If we never set the crash position, the agent must have been in the wall to start with.
+		if (!crashPositionSet)
 		{
 			return hardCrashOutcomes();
 		}
 		
 		// If the crash position is the position of the new state, no crash occurred.
-		if (crashPosition.equals(newState.getPosition()))
+		if (crashX==newState.getX() && crashY==newState.getY())
 		{
 			return Collections.singleton(new Pair<State,Double>(newState,1.0));
 		}
@@ -152,16 +149,33 @@ public class TerrainBasedTransitionFunction implements TransitionFunction
 		} else
 		{
 			// Soft crash - stop agent at the crash position
-			return Collections.singleton(new Pair<State,Double>(
-					new State(crashPosition, new Pair<Integer,Integer>(0,0)),
-					1.0));
+			return Collections.singleton(new Pair<State,Double>(new State(crashX, crashY, 0, 0), 1.0));
 		}
 	}
 	
 	/**
-	 * Obtains the outcomes for a hard crash.
+	 * Determines whether this transition function implements hard crashing.
+	 * @return <code>true</code> if a crash resets the agent to the starting line; <code>false</code> otherwise.
 	 */
-	private Set<Pair<State,Double>> hardCrashOutcomes()
+	public boolean getHardCrash()
+	{
+		return this.hardCrash;
+	}
+	
+	/**
+	 * Retrieves the world in which this transition function performs transition.
+	 * @return The world.
+	 */
+	public WorldMap getWorld()
+	{
+		return this.world;
+	}
+	
+	/**
+	 * Obtains the outcomes for a hard crash.  This is synchronized so that the memorized outcomes are safely shared
+	 * when a transition function is used from several threads.
+	 */
+	protected synchronized Set<Pair<State,Double>> hardCrashOutcomes()
 	{
 		if (this.outcomes==null)
 		{
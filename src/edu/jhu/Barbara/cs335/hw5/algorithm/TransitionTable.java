@@ -0,0 +1,429 @@
+package edu.jhu.Barbara.cs335.hw5.algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * A transition model compiled into compressed sparse row form.  Each row of the table represents one state-action
+ * pair (row <code>state * Action.COUNT + action</code>) and lists the indices of its successor states along with
+ * their probabilities.  Successors which appear more than once in a transition function's outcome set are merged.
+ */
+public class TransitionTable
+{
+	/** The number of states which are processed by a single build task. */
+	private static final int STATES_PER_TASK = 4096;
+
+	/** The indexer which addresses the states of this table. */
+	private StateIndexer indexer;
+	/** The offset of the first entry of each row; entry <code>rows</code> is the total number of entries. */
+	private int[] rowOffsets;
+	/** The successor state index of each entry. */
+	private int[] successors;
+	/** The probability of each entry, or <code>null</code> if single precision is in use. */
+	private double[] probabilities;
+	/** The single precision probability of each entry, or <code>null</code> if double precision is in use. */
+	private float[] singleProbabilities;
+
+	/**
+	 * General constructor.  Tables are created with {@link #build(TransitionFunction, StateIndexer, boolean, int)}.
+	 */
+	private TransitionTable(StateIndexer indexer, int[] rowOffsets, int[] successors, double[] probabilities,
+			float[] singleProbabilities)
+	{
+		super();
+		this.indexer = indexer;
+		this.rowOffsets = rowOffsets;
+		this.successors = successors;
+		this.probabilities = probabilities;
+		this.singleProbabilities = singleProbabilities;
+	}
+
+	/**
+	 * Compiles a transition function into a table.
+	 * @param transitionFunction The transition function to compile.
+	 * @param indexer The indexer which addresses the states of the world.
+	 * @param singlePrecision <code>true</code> to store probabilities as floats; <code>false</code> to store doubles.
+	 * @param threads The number of threads to use while compiling.
+	 * @return The resulting table.
+	 */
+	public static TransitionTable build(TransitionFunction transitionFunction, StateIndexer indexer,
+			boolean singlePrecision, int threads)
+	{
+		return build(transitionFunction, indexer, null, singlePrecision, threads);
+	}
+
+	/**
+	 * Compiles the rows of a set of reachable states into a table.  The rows of every other state are left empty.
+	 * @param transitionFunction The transition function to compile.
+	 * @param indexer The indexer which addresses the states of the world.
+	 * @param reachable The states whose rows should be compiled, or <code>null</code> to compile every state.
+	 * @param singlePrecision <code>true</code> to store probabilities as floats; <code>false</code> to store doubles.
+	 * @param threads The number of threads to use while compiling.
+	 * @return The resulting table.
+	 */
+	public static TransitionTable build(final TransitionFunction transitionFunction, final StateIndexer indexer,
+			final ReachableStates reachable, boolean singlePrecision, int threads)
+	{
+		List<Callable<Block>> tasks = new ArrayList<Callable<Block>>();
+		for (int start=0;start<indexer.size();start+=STATES_PER_TASK)
+		{
+			final int first = start;
+			final int last = Math.min(start + STATES_PER_TASK, indexer.size());
+			tasks.add(new Callable<Block>()
+					{
+						public Block call()
+						{
+							return compileBlock(transitionFunction, indexer, reachable, first, last);
+						}
+					});
+		}
+
+		List<Block> blocks = new ArrayList<Block>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try
+		{
+			for (Future<Block> future : executor.invokeAll(tasks))
+			{
+				blocks.add(future.get());
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while compiling transition table", e);
+		} catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Failed to compile transition table", e.getCause());
+		} finally
+		{
+			executor.shutdown();
+		}
+
+		long entries = 0;
+		for (Block block : blocks) entries += block.size;
+		if (entries > Integer.MAX_VALUE)
+		{
+			throw new IllegalStateException("Transition table too large: " + entries + " entries");
+		}
+
+		int rows = indexer.size() * Action.COUNT;
+		int[] rowOffsets = new int[rows + 1];
+		int[] successors = new int[(int)entries];
+		double[] probabilities = singlePrecision ? null : new double[(int)entries];
+		float[] singleProbabilities = singlePrecision ? new float[(int)entries] : null;
+		int row = 0;
+		int offset = 0;
+		for (Block block : blocks)
+		{
+			for (int count : block.rowCounts)
+			{
+				rowOffsets[row++] = offset;
+				offset += count;
+			}
+			int base = rowOffsets[row - block.rowCounts.length];
+			System.arraycopy(block.successors, 0, successors, base, block.size);
+			for (int i=0;i<block.size;i++)
+			{
+				if (singlePrecision)
+				{
+					singleProbabilities[base + i] = (float)block.probabilities[i];
+				} else
+				{
+					probabilities[base + i] = block.probabilities[i];
+				}
+			}
+		}
+		rowOffsets[rows] = offset;
+
+		return new TransitionTable(indexer, rowOffsets, successors, probabilities, singleProbabilities);
+	}
+
+	/**
+	 * Compiles the rows of a contiguous range of states.
+	 * @param transitionFunction The transition function to compile.
+	 * @param indexer The indexer which addresses the states of the world.
+	 * @param reachable The states whose rows should be compiled, or <code>null</code> to compile every state.
+	 * @param first The first state index to compile.
+	 * @param last The state index after the last to compile.
+	 * @return The compiled rows.
+	 */
+	private static Block compileBlock(TransitionFunction transitionFunction, StateIndexer indexer,
+			ReachableStates reachable, int first, int last)
+	{
+		Block block = new Block((last - first) * Action.COUNT);
+		int row = 0;
+		for (int s=first;s<last;s++)
+		{
+			if (reachable!=null && !reachable.contains(s))
+			{
+				row += Action.COUNT;
+				continue;
+			}
+			State state = indexer.decode(s);
+			for (int a=0;a<Action.COUNT;a++)
+			{
+				int rowStart = block.size;
+				Set<Pair<State,Double>> outcomes = transitionFunction.transition(state, Action.valueOf(a));
+				for (Pair<State,Double> outcome : outcomes)
+				{
+					int successor = indexer.indexOf(outcome.getFirst());
+					if (successor<0)
+					{
+						throw new IllegalStateException("Transition from " + state + " leads to unindexed state " +
+								outcome.getFirst());
+					}
+					block.add(rowStart, successor, outcome.getSecond());
+				}
+				block.rowCounts[row++] = block.size - rowStart;
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * Retrieves the indexer which addresses the states of this table.
+	 * @return The state indexer.
+	 */
+	public StateIndexer getIndexer()
+	{
+		return this.indexer;
+	}
+
+	/**
+	 * Retrieves the number of states in this table.
+	 * @return The number of states.
+	 */
+	public int getStateCount()
+	{
+		return this.indexer.size();
+	}
+
+	/**
+	 * Retrieves the number of successor entries stored in this table.
+	 * @return The number of entries.
+	 */
+	public int getEntryCount()
+	{
+		return this.successors.length;
+	}
+
+	/**
+	 * Determines whether this table stores single precision probabilities.
+	 * @return <code>true</code> if probabilities are stored as floats; <code>false</code> if they are doubles.
+	 */
+	public boolean isSinglePrecision()
+	{
+		return this.singleProbabilities!=null;
+	}
+
+	/**
+	 * Calculates the memory used by the arrays of this table.
+	 * @return The approximate number of bytes used by this table.
+	 */
+	public long getMemoryFootprint()
+	{
+		return 4L * this.rowOffsets.length + 4L * this.successors.length +
+				(isSinglePrecision() ? 4L : 8L) * this.successors.length;
+	}
+
+	/**
+	 * Calculates the expected value of taking an action from a state.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @param values The value of each state, addressed by state index.
+	 * @return The sum of the values of each successor weighted by its probability.
+	 */
+	public double expectedValue(int state, int action, double[] values)
+	{
+		int row = state * Action.COUNT + action;
+		int end = this.rowOffsets[row + 1];
+		double value = 0.0;
+		if (this.probabilities!=null)
+		{
+			for (int i=this.rowOffsets[row];i<end;i++)
+			{
+				value += this.probabilities[i] * values[this.successors[i]];
+			}
+		} else
+		{
+			for (int i=this.rowOffsets[row];i<end;i++)
+			{
+				value += this.singleProbabilities[i] * values[this.successors[i]];
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Finds the action with the greatest expected value from a state.  Ties are broken in favor of the action with
+	 * the lowest ordinal.
+	 * @param state The index of the state.
+	 * @param values The value of each state, addressed by state index.
+	 * @return The index of the best action.
+	 */
+	public int greedyAction(int state, double[] values)
+	{
+		int bestAction = 0;
+		double bestValue = expectedValue(state, 0, values);
+		for (int a=1;a<Action.COUNT;a++)
+		{
+			double value = expectedValue(state, a, values);
+			if (value > bestValue)
+			{
+				bestValue = value;
+				bestAction = a;
+			}
+		}
+		return bestAction;
+	}
+
+	/**
+	 * Determines whether the rows of a state were compiled into this table.
+	 * @param state The index of the state.
+	 * @return <code>true</code> if the state has outgoing transitions; <code>false</code> if it was left out.
+	 */
+	public boolean isCompiled(int state)
+	{
+		int row = state * Action.COUNT;
+		return this.rowOffsets[row]!=this.rowOffsets[row + Action.COUNT];
+	}
+
+	/**
+	 * Decides which action to take from a state given the value of each indexed state.  States which were not
+	 * compiled (such as those inside of walls) are evaluated directly against the provided transition function.
+	 * @param state The state in question.
+	 * @param values The value of each state, addressed by state index.
+	 * @param transitionFunction The transition function from which this table was compiled.
+	 * @return The action with the greatest expected value.
+	 */
+	public Action decide(State state, double[] values, TransitionFunction transitionFunction)
+	{
+		int s = this.indexer.indexOf(state);
+		if (s>=0 && isCompiled(s))
+		{
+			return Action.valueOf(greedyAction(s, values));
+		}
+
+		Action bestAction = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int a=0;a<Action.COUNT;a++)
+		{
+			Action action = Action.valueOf(a);
+			double value = 0.0;
+			for (Pair<State,Double> outcome : transitionFunction.transition(state, action))
+			{
+				int index = this.indexer.indexOf(outcome.getFirst());
+				value += outcome.getSecond() * (index>=0 ? values[index] : 0.0);
+			}
+			if (value > bestValue || bestAction==null)
+			{
+				bestValue = value;
+				bestAction = action;
+			}
+		}
+		return bestAction;
+	}
+
+	/**
+	 * Retrieves the offset of the first entry of a state-action row.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @return The offset of the row's first entry.
+	 */
+	public int getRowStart(int state, int action)
+	{
+		return this.rowOffsets[state * Action.COUNT + action];
+	}
+
+	/**
+	 * Retrieves the offset after the last entry of a state-action row.
+	 * @param state The index of the state.
+	 * @param action The index of the action.
+	 * @return The offset after the row's last entry.
+	 */
+	public int getRowEnd(int state, int action)
+	{
+		return this.rowOffsets[state * Action.COUNT + action + 1];
+	}
+
+	/**
+	 * Retrieves the successor state index of an entry.
+	 * @param entry The offset of the entry.
+	 * @return The successor state index.
+	 */
+	public int getSuccessor(int entry)
+	{
+		return this.successors[entry];
+	}
+
+	/**
+	 * Retrieves the probability of an entry.
+	 * @param entry The offset of the entry.
+	 * @return The probability of reaching the entry's successor.
+	 */
+	public double getProbability(int entry)
+	{
+		return (this.probabilities!=null) ? this.probabilities[entry] : this.singleProbabilities[entry];
+	}
+
+	/**
+	 * The rows compiled by a single build task.
+	 */
+	private static class Block
+	{
+		/** The number of entries in each row of this block. */
+		private int[] rowCounts;
+		/** The successors of this block. */
+		private int[] successors;
+		/** The probabilities of this block. */
+		private double[] probabilities;
+		/** The number of entries in this block. */
+		private int size;
+
+		public Block(int rows)
+		{
+			super();
+			this.rowCounts = new int[rows];
+			this.successors = new int[rows * 2];
+			this.probabilities = new double[rows * 2];
+			this.size = 0;
+		}
+
+		/**
+		 * Adds an entry to the current row of this block, merging it with an existing entry for the same successor.
+		 * @param rowStart The offset of the first entry of the current row.
+		 * @param successor The successor state index.
+		 * @param probability The probability of the successor.
+		 */
+		public void add(int rowStart, int successor, double probability)
+		{
+			for (int i=rowStart;i<this.size;i++)
+			{
+				if (this.successors[i]==successor)
+				{
+					this.probabilities[i] += probability;
+					return;
+				}
+			}
+			if (this.size==this.successors.length)
+			{
+				this.successors = Arrays.copyOf(this.successors, this.size * 2);
+				this.probabilities = Arrays.copyOf(this.probabilities, this.size * 2);
+			}
+			this.successors[this.size] = successor;
+			this.probabilities[this.size] = probability;
+			this.size++;
+		}
+	}
+}
@@ -1,12 +1,13 @@
 package edu.jhu.Barbara.cs335.hw5.algorithm;
 import edu.jhu.Barbara.cs335.hw5.data.Action;
 import edu.jhu.Barbara.cs335.hw5.data.State;
-import edu.jhu.Barbara.cs335.hw5.data.Terrain;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
 import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
 import edu.jhu.Barbara.cs335.hw5.util.DefaultValueHashMap;
 import edu.jhu.Barbara.cs335.hw5.util.Pair;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 /** HOMEWORK 5: REINFORCEMENT LEARNING | CS335 AI | Barbara Holt
  * This agent implements Reinforcement learning by iterating over the entire
@@ -18,11 +19,16 @@ import java.util.Random;
  * difference between subsequent Q-value updates, searching for eventual
  * convergence. A utilityFunction method sums together the multiples of the
  * various possible outcomes of a state-action and their probabilities, in
- * order to calculate the expected utility of a state-action. 	*/
-public class ValueIteratingAgent implements ReinforcementLearningAgent
+ * order to calculate the expected utility of a state-action.  Only the states
+ * which can be reached from the starting line are updated, starting from the
+ * estimates of a heuristic.	*/
+public class ValueIteratingAgent implements MetricReportingReinforcementLearningAgent
 {
 	private static final long serialVersionUID = 1L;
 	
+	/** The actions available to the agent, by ordinal. */
+	private static final Action[] ACTIONS = Action.values();
+	
 	/** A mapping between states in that world and their expected values. */
 	private Map<State, Double> expectedValues;
 	/** The world in which this agent is operating. */
@@ -33,6 +39,8 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 	private TransitionFunction transitionFunction;
 	/** The reward function that this agent uses. */
 	private RewardFunction rewardFunction;
+	/** The heuristic which provides the initial expected value of each state. */
+	private Heuristic heuristic;
 	/** The convergence tolerance (epsilon). */
 	private double convergenceTolerance;
 	/** The number of times the agent will explore a given state-action pair before giving up on it. */
@@ -41,6 +49,19 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 	private double uOptimistic;
 	/** The record of how frequently each action has been explored from each state. */
 	private Map<Pair<State, Action>, Integer> visitEvents;
+	/** The states which can be reached from the starting line. */
+	private transient ReachableStates reachable;
+	/** The transition function, by state and action index. */
+	private transient IndexedTransitionFunction indexedTransitionFunction;
+	/** The buffer into which the outcomes of each transition are read. */
+	private transient OutcomeBuffer outcomes;
+	/** The expected value of each state, addressed by state index; it mirrors expectedValues. */
+	private transient double[] utilities;
+	/** The reward for entering each reachable state, addressed by state index. */
+	private transient double[] rewards;
+	/** The number of visits to each state-action pair, at <code>state * Action.COUNT + action</code>; it mirrors
+	 *  visitEvents. */
+	private transient int[] visits;
 
 	/**
 	 * Creates a new value iterating agent.
@@ -54,13 +75,14 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 		this.discountFactor = 0.5;
 		this.transitionFunction = null;
 		this.rewardFunction = null;
+		this.heuristic = new ZeroHeuristic();
 		this.convergenceTolerance = 0.000000001;
 		this.uOptimistic = 0.1;
 		this.visitEvents = new DefaultValueHashMap<Pair<State, Action>, Integer>(0);
 	}
 
 	/** Equation 21.5 in the textbook uses this simple exploration function: */
-	private Double explorationFunction(Double u, Integer n) {
+	private double explorationFunction(double u, int n) {
 		if (n < minimumExplorationCount) {
 			return uOptimistic;
 		} else {
@@ -68,23 +90,58 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 		}
 	}
 
-	private Double utilityFunction(State state, Action currentAction) {
-		/** The transition model function returns a set of all possible actions following state s, along with
-		 *  their probability of occurring: */
-		Double currentUtility = 0.0;
-		for(Pair<State, Double> sPrime : transitionFunction.transition(state, currentAction)) {
-			/** The Utility, U, of each state, multiplied by its probability of occurring:  */
-			Double probabilitySPrime = sPrime.getSecond();
-			Double utilitySPrime = expectedValues.get(sPrime.getFirst());
-			int n;
-			Pair<State, Action> sa = new Pair<>(state, currentAction);
-			if (visitEvents.containsKey(sa)) {
-				n = visitEvents.get(sa);
-			} else {
-				n = 0;
-				visitEvents.put(sa, n);
+	/** Finds the reachable states, adapts the transition function to work by state index, and tabulates the
+	 *  rewards, expected values and visit counts by state index.  The maps of expected values and visits remain the
+	 *  record which is saved and duplicated; the tables mirror them so that a backup reads its successors' values and
+	 *  its visit counts without building states or pairs. */
+	private void prepare() {
+		if (reachable != null) {
+			return;
+		}
+		reachable = ReachableStates.forWorld(world, transitionFunction);
+		StateIndexer indexer = reachable.getIndexer();
+		/** Start from the heuristic's estimates rather than 0 if no values have been learned yet: */
+		if (expectedValues.isEmpty()) {
+			for (int i = 0; i < reachable.size(); i++) {
+				State state = indexer.decode(reachable.getState(i));
+				expectedValues.put(state, heuristic.estimate(state));
+			}
+		}
+		indexedTransitionFunction = IndexedTransitionAdapter.forFunction(transitionFunction, indexer);
+		outcomes = new OutcomeBuffer();
+		utilities = new double[indexer.size()];
+		for (Map.Entry<State, Double> entry : expectedValues.entrySet()) {
+			int s = indexer.indexOf(entry.getKey());
+			if (s >= 0) {
+				utilities[s] = entry.getValue();
+			}
+		}
+		rewards = reachable.rewards(rewardFunction);
+		visits = new int[indexer.size() * ACTIONS.length];
+		for (Map.Entry<Pair<State, Action>, Integer> entry : visitEvents.entrySet()) {
+			int s = indexer.indexOf(entry.getKey().getFirst());
+			int a = entry.getKey().getSecond().ordinal();
+			if (s >= 0 && a >= 0) {
+				visits[s * ACTIONS.length + a] = entry.getValue();
 			}
-			currentUtility += explorationFunction(probabilitySPrime * utilitySPrime, n);
+		}
+	}
+
+	/** Sets the expected value of a state in both the map and its mirror: */
+	private void setUtility(int s, State state, double utility) {
+		utilities[s] = utility;
+		expectedValues.put(state, utility);
+	}
+
+	private double utilityFunction(int s, State state, int a) {
+		/** The transition model function writes all possible outcomes of taking the action in state s into the
+		 *  buffer, along with their probability of occurring: */
+		int n = visits[s * ACTIONS.length + a];
+		double currentUtility = 0.0;
+		int count = outcomes.load(indexedTransitionFunction, s, a);
+		for (int i = 0; i < count; i++) {
+			/** The Utility, U, of each state, multiplied by its probability of occurring:  */
+			currentUtility += explorationFunction(outcomes.getProbability(i) * utilities[outcomes.getSuccessor(i)], n);
 		}
 		return currentUtility;
 	}
@@ -106,47 +163,36 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 		// TODO: implement value iteration; this is basically the inside of the
 		// while(!done) loop.
 
-		/** Traverses all possible states of the map, monitoring delta, or the progression to convergence as values are
-		 *  continuously updated: */
+		/** Traverses all reachable states of the map, monitoring delta, or the progression to convergence as values
+		 *  are continuously updated.  States which cannot be reached from the starting line are never visited, so
+		 *  their values cannot affect the policy: */
+		prepare();
+		StateIndexer indexer = reachable.getIndexer();
 		double delta = 0.0;
-		int width = world.getSize().getFirst();
-		int height = world.getSize().getSecond();
-		for(int i = 0; i < width; i++) {
-			for (int j = 0; j < height; j++) {
-				Pair<Integer, Integer> position = new Pair<>(i,j);
-				if (world.getTerrain(position) != Terrain.WALL) {
-					for (Action action : Action.LEGAL_ACTIONS) {
-						/** Since the maximum velocity is capped at 5, we can determine all possible velocities, in
-						 *  order to survey all possible states:
-						 */
-						for(int k = -5; k <=5; k++){
-							for(int l = -5; l <= 5; l++){
-								Pair<Integer, Integer> velocity =
-										new Pair<>(k, l);
-								State state = new State(position, velocity);
-								/**Calculate the REWARD given at each state: */
-								Double reward = rewardFunction.reward(state);
-								/**Calculate the MAX UTILITY of each state: */
-								Double maxUtility = Double.MIN_VALUE;
-								for(Action actionPrime : Action.LEGAL_ACTIONS) {
-									Double currentUtility = utilityFunction(state, actionPrime);
-									if (currentUtility >= maxUtility || maxUtility == Double.MIN_VALUE) {
-										maxUtility = currentUtility;
-									}
-								}
-								/** Calculate the new utility: */
-								Double updatedUtility = reward + (discountFactor * maxUtility);
-								/** Recalculate delta by determining the difference, or convergence progression: */
-								double maxDifference = Math.abs(updatedUtility - expectedValues.get(state));
-								if(maxDifference > delta){
-									delta = maxDifference;
-								}
-								/** Update the map values: */
-								expectedValues.put(state, updatedUtility);
-							}
-						}
+		/** Sweeps the reachable states once for each action: */
+		for (int sweep = 0; sweep < ACTIONS.length; sweep++) {
+			for (int i = 0; i < reachable.size(); i++) {
+				int s = reachable.getState(i);
+				State state = indexer.decode(s);
+				/**Calculate the REWARD given at each state: */
+				double reward = rewards[s];
+				/**Calculate the MAX UTILITY of each state: */
+				double maxUtility = Double.MIN_VALUE;
+				for (int a = 0; a < ACTIONS.length; a++) {
+					double currentUtility = utilityFunction(s, state, a);
+					if (currentUtility >= maxUtility || maxUtility == Double.MIN_VALUE) {
+						maxUtility = currentUtility;
 					}
 				}
+				/** Calculate the new utility: */
+				double updatedUtility = reward + (discountFactor * maxUtility);
+				/** Recalculate delta by determining the difference, or convergence progression: */
+				double maxDifference = Math.abs(updatedUtility - utilities[s]);
+				if(maxDifference > delta){
+					delta = maxDifference;
+				}
+				/** Update the map values: */
+				setUtility(s, state, updatedUtility);
 			}
 		}
 
@@ -161,10 +207,22 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 		ret.setDiscountFactor(this.discountFactor);
 		ret.setRewardFunction(this.rewardFunction);
 		ret.setTransitionFunction(this.transitionFunction);
+		ret.setHeuristic(this.heuristic);
 		ret.setWorld(this.world);
 		ret.expectedValues.putAll(this.expectedValues);
 		return ret;
 	}
+
+	@Override
+	public List<Pair<String, String>> getMetrics()
+	{
+		List<Pair<String, String>> metrics = new ArrayList<Pair<String, String>>();
+		if (reachable != null) {
+			metrics.add(new Pair<String, String>("States", reachable.size() + " reachable of " +
+					reachable.getIndexer().size() + " (" + reachable.getPrunedCount() + " pruned)"));
+		}
+		return metrics;
+	}
 	
 	public double getLearningFactor()
 	{
@@ -196,6 +254,16 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 		this.rewardFunction = rewardFunction;
 	}
 	
+	public Heuristic getHeuristic()
+	{
+		return heuristic;
+	}
+
+	public void setHeuristic(Heuristic heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+
 	public WorldMap getWorld()
 	{
 		return world;
@@ -222,8 +290,6 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 	public class ValuePolicy implements Policy
 	{
 		private static final long serialVersionUID = 1L;
-		
-		private Random random = new Random();
 
 		/**
 		 * The action an agent decides to take from a given state 
@@ -233,20 +299,25 @@ public class ValueIteratingAgent implements ReinforcementLearningAgent
 			// TODO: this function should return an appropriate action based on
 			// an exploration policy and the current estimate of expected
 			// future reward.
-			Double maxUtility = Double.MIN_VALUE;
-			Action maxAction = null;
-			for (Action currentAction : Action.LEGAL_ACTIONS) {
-				Double currentUtility = utilityFunction(state, currentAction);
+			prepare();
+			int s = reachable.getIndexer().indexOf(state);
+			if (s < 0) {
+				throw new IllegalArgumentException("No expected values are kept for " + state);
+			}
+			double maxUtility = Double.MIN_VALUE;
+			int maxAction = -1;
+			for (int a = 0; a < ACTIONS.length; a++) {
+				double currentUtility = utilityFunction(s, state, a);
 
 				if (currentUtility >= maxUtility || maxUtility == Double.MIN_VALUE) {
 					maxUtility = currentUtility;
-					maxAction = currentAction;
+					maxAction = a;
 				}
 			}
 			/** Update the map values: */
-			Pair<State, Action> executedTransition = new Pair<>(state, maxAction);
-			visitEvents.put(executedTransition, visitEvents.get(executedTransition) + 1);
-			return maxAction;
+			int n = ++visits[s * ACTIONS.length + maxAction];
+			visitEvents.put(new Pair<>(state, ACTIONS[maxAction]), n);
+			return ACTIONS[maxAction];
 		}
 	}
 }
\ No newline at end of file
@@ -1,60 +1,192 @@
 package edu.jhu.Barbara.cs335.hw5.data;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import edu.jhu.Barbara.cs335.hw5.util.Pair;
 
 /**
  * This class represents actions which can be taken by the reinforcement learning agent.
+ *
+ * The legal actions form a fixed catalogue of canonical instances, each of which has an ordinal: its position in the
+ * catalogue.  Per-action data is addressed by ordinal, and ties between actions are broken in favour of the lowest.
+ * The catalogue keeps the order in which the legal actions were always enumerated, so that tables addressed by
+ * ordinal which were saved before it existed remain valid.
  * @author Zachary Palmer
  */
 public class Action implements Serializable
 {
 	private static final long serialVersionUID = 1L;
-	
+
+	/** The x component of the acceleration of each legal action, by ordinal. */
+	private static final int[] DDX = { -1, 0, 1, -1, 0, -1, 1, 0, 1 };
+	/** The y component of the acceleration of each legal action, by ordinal. */
+	private static final int[] DDY = { -1, 0, 1, 0, 1, 1, -1, -1, 0 };
+
+	/** The number of legal actions. */
+	public static final int COUNT = DDX.length;
+
+	/** The canonical instance of each legal action, by ordinal. */
+	private static final Action[] VALUES;
+	/** The ordinal of each acceleration, addressed by <code>(ddx + 1) * 3 + (ddy + 1)</code>. */
+	private static final int[] ORDINALS;
+
 	/**
-	 * The set of actions which are legal for the reinforcement learning agent to take.
+	 * The set of actions which are legal for the reinforcement learning agent to take.  It iterates in order of
+	 * ordinal.
 	 */
 	public static final Set<Action> LEGAL_ACTIONS;
-	
+
 	static
 	{
-		Set<Action> actions = new HashSet<Action>();
-		for (int ddx=-1;ddx<=1;ddx++)
+		ORDINALS = new int[COUNT];
+		for (int a=0;a<COUNT;a++)
 		{
-			for (int ddy=-1;ddy<=1;ddy++)
-			{
-				actions.add(new Action(new Pair<Integer,Integer>(ddx,ddy)));
-			}
+			ORDINALS[(DDX[a] + 1) * 3 + (DDY[a] + 1)] = a;
+		}
+		VALUES = new Action[COUNT];
+		Set<Action> actions = new LinkedHashSet<Action>();
+		for (int a=0;a<COUNT;a++)
+		{
+			VALUES[a] = new Action(DDX[a], DDY[a]);
+			actions.add(VALUES[a]);
 		}
 		LEGAL_ACTIONS = Collections.unmodifiableSet(actions);
 	}
-	
+
 	/**
 	 * The acceleration to apply during the upcoming round.
 	 */
 	private Pair<Integer,Integer> acceleration;
 
+	/** The x component of the acceleration. */
+	private transient int ddx;
+	/** The y component of the acceleration. */
+	private transient int ddy;
+	/** The ordinal of this action, or -1 if it is not legal. */
+	private transient int ordinal;
+
 	public Action(Pair<Integer, Integer> acceleration)
 	{
 		super();
 		this.acceleration = acceleration;
+		initialize();
 	}
 
 	public Action(int ddx, int ddy)
 	{
 		super();
 		this.acceleration = new Pair<Integer, Integer>(ddx, ddy);
+		initialize();
+	}
+
+	/**
+	 * Finds the primitive components and the ordinal of the acceleration.
+	 */
+	private void initialize()
+	{
+		this.ddx = this.acceleration.getFirst();
+		this.ddy = this.acceleration.getSecond();
+		this.ordinal = ordinalOf(this.ddx, this.ddy);
+	}
+
+	/**
+	 * Retrieves the canonical instance of a legal action.
+	 * @param ordinal The ordinal of the action.
+	 * @return The action.
+	 * @throws ArrayIndexOutOfBoundsException If no legal action has the ordinal.
+	 */
+	public static Action valueOf(int ordinal)
+	{
+		return VALUES[ordinal];
+	}
+
+	/**
+	 * Retrieves the canonical instance of a legal action.
+	 * @param ddx The x component of the acceleration of the action.
+	 * @param ddy The y component of the acceleration of the action.
+	 * @return The action.
+	 * @throws IllegalArgumentException If the acceleration is not that of a legal action.
+	 */
+	public static Action valueOf(int ddx, int ddy)
+	{
+		int a = ordinalOf(ddx, ddy);
+		if (a<0)
+		{
+			throw new IllegalArgumentException("Illegal acceleration: (" + ddx + "," + ddy + ")");
+		}
+		return VALUES[a];
+	}
+
+	/**
+	 * Retrieves the canonical instances of the legal actions.
+	 * @return A new array of the actions, in order of ordinal.
+	 */
+	public static Action[] values()
+	{
+		return VALUES.clone();
+	}
+
+	/**
+	 * Finds the ordinal of the legal action with an acceleration.
+	 * @param ddx The x component of the acceleration.
+	 * @param ddy The y component of the acceleration.
+	 * @return The ordinal, or -1 if the acceleration is not that of a legal action.
+	 */
+	public static int ordinalOf(int ddx, int ddy)
+	{
+		if (ddx<-1 || ddx>1 || ddy<-1 || ddy>1) return -1;
+		return ORDINALS[(ddx + 1) * 3 + (ddy + 1)];
+	}
+
+	/**
+	 * Retrieves the x component of the acceleration of a legal action.
+	 * @param ordinal The ordinal of the action.
+	 * @return The x component.
+	 */
+	public static int ddx(int ordinal)
+	{
+		return DDX[ordinal];
+	}
+
+	/**
+	 * Retrieves the y component of the acceleration of a legal action.
+	 * @param ordinal The ordinal of the action.
+	 * @return The y component.
+	 */
+	public static int ddy(int ordinal)
+	{
+		return DDY[ordinal];
 	}
 
 	public Pair<Integer, Integer> getAcceleration()
 	{
 		return acceleration;
 	}
-	
+
+	public int getDdx()
+	{
+		return ddx;
+	}
+
+	public int getDdy()
+	{
+		return ddy;
+	}
+
+	/**
+	 * Retrieves the ordinal of this action.
+	 * @return The ordinal, or -1 if this action is not legal.
+	 */
+	public int ordinal()
+	{
+		return ordinal;
+	}
+
 	@Override
 	public int hashCode()
 	{
@@ -74,17 +206,22 @@ public class Action implements Serializable
 		if (getClass() != obj.getClass())
 			return false;
 		Action other = (Action) obj;
-		if (acceleration == null)
-		{
-			if (other.acceleration != null)
-				return false;
-		} else if (!acceleration.equals(other.acceleration))
-			return false;
-		return true;
+		return this.ddx == other.ddx && this.ddy == other.ddy;
 	}
 
 	public String toString()
 	{
 		return "[" + acceleration.toString() + "]";
 	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		initialize();
+	}
+
+	private Object readResolve()
+	{
+		return (this.ordinal<0) ? this : VALUES[this.ordinal];
+	}
 }
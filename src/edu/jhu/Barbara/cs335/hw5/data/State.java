@@ -1,51 +1,150 @@
 package edu.jhu.Barbara.cs335.hw5.data;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 import edu.jhu.Barbara.cs335.hw5.util.Pair;
 
 /**
  * A class representing the states in which an agent can exist in the world.
+ *
+ * A state is stored as a single long which packs its position and velocity (24 bits for each coordinate and 8 for
+ * each velocity component), along with its hash code, which is found once.  Equal states therefore compare by one
+ * long, and the position and velocity pairs are built anew whenever they are asked for; code which runs on every step
+ * should read the primitive getters instead.
+ *
+ * The serialized form is unchanged: a state is written as its position and velocity pairs.
  */
 public class State implements Serializable
 {
 	private static final long serialVersionUID = 1L;
-	
-	/** The position of the agent in the world. */
-	private Pair<Integer,Integer> position;
-	/** The velocity of the agent in the world. */
-	private Pair<Integer,Integer> velocity;
-	
+
+	/** The fields of the serialized form, which are those of the original representation. */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("position", Pair.class),
+			new ObjectStreamField("velocity", Pair.class)
+	};
+
+	/** The smallest coordinate a state may have. */
+	private static final int MIN_COORDINATE = -(1 << 23);
+	/** The largest coordinate a state may have. */
+	private static final int MAX_COORDINATE = (1 << 23) - 1;
+
+	/** The position and velocity of the agent, packed as x, y, vx and vy from the highest bits to the lowest. */
+	private transient long packed;
+	/** The hash code of this state. */
+	private transient int hash;
+
 	/**
 	 * General constructor.
 	 * @param position The position for this state.
 	 * @param velocity The velocity for this state.
+	 * @throws IllegalArgumentException If the position or velocity is too large to be packed.
 	 */
 	public State(Pair<Integer, Integer> position, Pair<Integer, Integer> velocity)
+	{
+		this(position.getFirst(), position.getSecond(), velocity.getFirst(), velocity.getSecond());
+	}
+
+	/**
+	 * General constructor.
+	 * @param x The x coordinate of the position for this state.
+	 * @param y The y coordinate of the position for this state.
+	 * @param vx The x component of the velocity for this state.
+	 * @param vy The y component of the velocity for this state.
+	 * @throws IllegalArgumentException If the position or velocity is too large to be packed.
+	 */
+	public State(int x, int y, int vx, int vy)
 	{
 		super();
-		this.position = position;
-		this.velocity = velocity;
+		this.packed = pack(x, y, vx, vy);
+		this.hash = hash(x, y, vx, vy);
+	}
+
+	/**
+	 * Packs a position and velocity into a long.
+	 * @param x The x coordinate of the position.
+	 * @param y The y coordinate of the position.
+	 * @param vx The x component of the velocity.
+	 * @param vy The y component of the velocity.
+	 * @return The packed form.
+	 * @throws IllegalArgumentException If the position or velocity is too large to be packed.
+	 */
+	private static long pack(int x, int y, int vx, int vy)
+	{
+		if (x<MIN_COORDINATE || x>MAX_COORDINATE || y<MIN_COORDINATE || y>MAX_COORDINATE ||
+				vx<Byte.MIN_VALUE || vx>Byte.MAX_VALUE || vy<Byte.MIN_VALUE || vy>Byte.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Cannot pack state with position (" + x + ", " + y +
+					") and velocity (" + vx + ", " + vy + ")");
+		}
+		return ((long)x << 40) | ((long)(y & 0xFFFFFF) << 16) | ((vx & 0xFF) << 8) | (vy & 0xFF);
+	}
+
+	/**
+	 * Calculates the hash code of a state.  It is the hash code the state had when it was made of two pairs, so that
+	 * the order of hashed collections of states is unchanged.
+	 * @param x The x coordinate of the position.
+	 * @param y The y coordinate of the position.
+	 * @param vx The x component of the velocity.
+	 * @param vy The y component of the velocity.
+	 * @return The hash code.
+	 */
+	private static int hash(int x, int y, int vx, int vy)
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (prime * (prime + x) + y);
+		result = prime * result + (prime * (prime + vx) + vy);
+		return result;
 	}
 
 	public Pair<Integer, Integer> getPosition()
 	{
-		return position;
+		return new Pair<Integer,Integer>(getX(), getY());
 	}
 
 	public Pair<Integer, Integer> getVelocity()
 	{
-		return velocity;
+		return new Pair<Integer,Integer>(getVelocityX(), getVelocityY());
+	}
+
+	public int getX()
+	{
+		return (int)(this.packed >> 40);
+	}
+
+	public int getY()
+	{
+		return (int)(this.packed << 24 >> 40);
+	}
+
+	public int getVelocityX()
+	{
+		return (byte)(this.packed >> 8);
+	}
+
+	public int getVelocityY()
+	{
+		return (byte)this.packed;
+	}
+
+	/**
+	 * Retrieves the packed form of this state, which is equal for equal states and distinct for distinct ones.
+	 * @return The packed form.
+	 */
+	public long getPacked()
+	{
+		return this.packed;
 	}
 
 	@Override
 	public int hashCode()
 	{
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((position == null) ? 0 : position.hashCode());
-		result = prime * result + ((velocity == null) ? 0 : velocity.hashCode());
-		return result;
+		return this.hash;
 	}
 
 	@Override
@@ -57,30 +156,39 @@ public class State implements Serializable
 			return false;
 		if (getClass() != obj.getClass())
 			return false;
-		State other = (State) obj;
-		if (position == null)
-		{
-			if (other.position != null)
-				return false;
-		} else if (!position.equals(other.position))
-			return false;
-		if (velocity == null)
-		{
-			if (other.velocity != null)
-				return false;
-		} else if (!velocity.equals(other.velocity))
-			return false;
-		return true;
+		return this.packed == ((State) obj).packed;
 	}
-	
+
 	public String toString()
 	{
 		StringBuffer sb = new StringBuffer();
 		sb.append("[p=");
-		sb.append(this.position);
+		sb.append(getPosition());
 		sb.append(";v=");
-		sb.append(this.velocity);
+		sb.append(getVelocity());
 		sb.append("]");
 		return sb.toString();
 	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("position", getPosition());
+		fields.put("velocity", getVelocity());
+		out.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = in.readFields();
+		Pair<Integer,Integer> position = (Pair<Integer,Integer>)fields.get("position", null);
+		Pair<Integer,Integer> velocity = (Pair<Integer,Integer>)fields.get("velocity", null);
+		int x = position.getFirst();
+		int y = position.getSecond();
+		int vx = velocity.getFirst();
+		int vy = velocity.getSecond();
+		this.packed = pack(x, y, vx, vy);
+		this.hash = hash(x, y, vx, vy);
+	}
 }
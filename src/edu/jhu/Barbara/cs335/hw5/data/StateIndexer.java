@@ -0,0 +1,169 @@
+package edu.jhu.Barbara.cs335.hw5.data;
+
+import java.io.Serializable;
+
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * Maps each state which can exist in a world to a dense integer index.  Every non-wall position receives a position
+ * index in row-major order; each position index is then expanded into one slot for every legal velocity.  The index
+ * of a state is therefore <code>positionIndex * VELOCITY_COUNT + velocitySlot</code>.  This allows algorithms to keep
+ * per-state data in flat primitive arrays instead of hash maps keyed by {@link State}.
+ */
+public class StateIndexer implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The maximum absolute value of either velocity component. */
+	public static final int MAX_SPEED = 5;
+	/** The number of distinct values each velocity component may take. */
+	public static final int VELOCITY_RANGE = 2 * MAX_SPEED + 1;
+	/** The number of velocity slots reserved for each position. */
+	public static final int VELOCITY_COUNT = VELOCITY_RANGE * VELOCITY_RANGE;
+
+	/** The width of the indexed world. */
+	private int width;
+	/** The height of the indexed world. */
+	private int height;
+	/** The position index of each cell of the world (in <code>x + y * width</code> order), or -1 for walls. */
+	private int[] positionIndices;
+	/** The x coordinate of each position index. */
+	private int[] positionX;
+	/** The y coordinate of each position index. */
+	private int[] positionY;
+
+	/**
+	 * General constructor.
+	 * @param world The world whose states should be indexed.
+	 */
+	public StateIndexer(WorldMap world)
+	{
+		super();
+		this.width = world.getSize().getFirst();
+		this.height = world.getSize().getSecond();
+		this.positionIndices = new int[this.width * this.height];
+
+		int count = 0;
+		for (int y=0;y<this.height;y++)
+		{
+			for (int x=0;x<this.width;x++)
+			{
+				if (world.getTerrain(new Pair<Integer,Integer>(x,y))==Terrain.WALL)
+				{
+					this.positionIndices[x + y * this.width] = -1;
+				} else
+				{
+					this.positionIndices[x + y * this.width] = count++;
+				}
+			}
+		}
+
+		this.positionX = new int[count];
+		this.positionY = new int[count];
+		for (int cell=0;cell<this.positionIndices.length;cell++)
+		{
+			int p = this.positionIndices[cell];
+			if (p>=0)
+			{
+				this.positionX[p] = cell % this.width;
+				this.positionY[p] = cell / this.width;
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the number of state indices used by this indexer.
+	 * @return The number of indexed states.
+	 */
+	public int size()
+	{
+		return this.positionX.length * VELOCITY_COUNT;
+	}
+
+	/**
+	 * Retrieves the number of non-wall positions in the indexed world.
+	 * @return The number of indexed positions.
+	 */
+	public int getPositionCount()
+	{
+		return this.positionX.length;
+	}
+
+	/**
+	 * Retrieves the position index of a cell.
+	 * @param x The x coordinate of the cell.
+	 * @param y The y coordinate of the cell.
+	 * @return The position index of that cell, or -1 if the cell is a wall or lies outside of the world.
+	 */
+	public int positionIndexOf(int x, int y)
+	{
+		if (x<0 || y<0 || x>=this.width || y>=this.height) return -1;
+		return this.positionIndices[x + y * this.width];
+	}
+
+	/**
+	 * Retrieves the index of a state.
+	 * @param x The x coordinate of the state's position.
+	 * @param y The y coordinate of the state's position.
+	 * @param vx The x component of the state's velocity.
+	 * @param vy The y component of the state's velocity.
+	 * @return The index of that state, or -1 if the state is not indexed.
+	 */
+	public int indexOf(int x, int y, int vx, int vy)
+	{
+		if (vx<-MAX_SPEED || vx>MAX_SPEED || vy<-MAX_SPEED || vy>MAX_SPEED) return -1;
+		int p = positionIndexOf(x, y);
+		if (p<0) return -1;
+		return p * VELOCITY_COUNT + (vx + MAX_SPEED) * VELOCITY_RANGE + (vy + MAX_SPEED);
+	}
+
+	/**
+	 * Retrieves the index of a state.
+	 * @param state The state to index.
+	 * @return The index of that state, or -1 if the state is not indexed.
+	 */
+	public int indexOf(State state)
+	{
+		return indexOf(state.getX(), state.getY(), state.getVelocityX(), state.getVelocityY());
+	}
+
+	/**
+	 * Retrieves the position index of an indexed state.
+	 * @param index The state index.
+	 * @return The position index of that state.
+	 */
+	public int getPositionIndex(int index)
+	{
+		return index / VELOCITY_COUNT;
+	}
+
+	public int getX(int index)
+	{
+		return this.positionX[index / VELOCITY_COUNT];
+	}
+
+	public int getY(int index)
+	{
+		return this.positionY[index / VELOCITY_COUNT];
+	}
+
+	public int getVelocityX(int index)
+	{
+		return (index % VELOCITY_COUNT) / VELOCITY_RANGE - MAX_SPEED;
+	}
+
+	public int getVelocityY(int index)
+	{
+		return (index % VELOCITY_COUNT) % VELOCITY_RANGE - MAX_SPEED;
+	}
+
+	/**
+	 * Decodes a state index.  A new state is made on every call.
+	 * @param index The index to decode.
+	 * @return The state which that index represents.
+	 */
+	public State decode(int index)
+	{
+		return new State(getX(index), getY(index), getVelocityX(index), getVelocityY(index));
+	}
+}
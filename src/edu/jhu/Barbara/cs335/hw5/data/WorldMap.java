@@ -43,6 +43,10 @@ public class WorldMap implements Serializable
 	 * A memorized copy of the output of toString.
 	 */
 	private String toStringOutput;
+	/**
+	 * A memorized state indexer for this world.
+	 */
+	private transient StateIndexer stateIndexer;
 	
 	/**
 	 * General constructor.
@@ -58,6 +62,7 @@ public class WorldMap implements Serializable
 		this.startPositions = new HashSet<Pair<Integer,Integer>>(startPositions);
 		this.finishPositions = new HashSet<Pair<Integer,Integer>>(finishPositions);
 		this.toStringOutput = null;
+		this.stateIndexer = null;
 	}	
 	
 	/**
@@ -77,12 +82,23 @@ public class WorldMap implements Serializable
 	 */
 	public Terrain getTerrain(Pair<Integer,Integer> position)
 	{
-		if (position.getFirst()>=this.size.getFirst() || position.getFirst() < 0 ||
-				position.getSecond()>=this.size.getSecond() || position.getSecond() < 0)
+		return getTerrain(position.getFirst(), position.getSecond());
+	}
+	
+	/**
+	 * Retrieves the terrain in the provided position.  Any terrain outside of the physical boundaries of the map is
+	 * assumed to be wall.
+	 * @param x The x coordinate of the position to check.
+	 * @param y The y coordinate of the position to check.
+	 * @return The terrain at that logical position.
+	 */
+	public Terrain getTerrain(int x, int y)
+	{
+		if (x>=this.size.getFirst() || x < 0 || y>=this.size.getSecond() || y < 0)
 		{
 			return Terrain.WALL;
 		}
-		return data[position.getFirst() + position.getSecond() * this.size.getFirst()];
+		return data[x + y * this.size.getFirst()];
 	}
 
 	public Set<Pair<Integer, Integer>> getStartPositions()
@@ -95,6 +111,20 @@ public class WorldMap implements Serializable
 		return Collections.unmodifiableSet(finishPositions);
 	}
 	
+	/**
+	 * Retrieves the indexer which maps the states of this world to dense integer indices.  The indexer is built the
+	 * first time it is requested and shared thereafter.
+	 * @return The state indexer for this world.
+	 */
+	public synchronized StateIndexer getStateIndexer()
+	{
+		if (this.stateIndexer==null)
+		{
+			this.stateIndexer = new StateIndexer(this);
+		}
+		return this.stateIndexer;
+	}
+	
 	public String toString()
 	{
 		if (toStringOutput==null)
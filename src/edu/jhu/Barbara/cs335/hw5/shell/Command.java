@@ -3,10 +3,10 @@ package edu.jhu.Barbara.cs335.hw5.shell;
 import java.util.Formatter;
 
 import edu.jhu.Barbara.cs335.hw5.algorithm.StepCostRewardFunction;
-import edu.jhu.Barbara.cs335.hw5.algorithm.TerrainBasedTransitionFunction;
 import edu.jhu.Barbara.cs335.hw5.shell.command.CommandFailureException;
 import edu.jhu.Barbara.cs335.hw5.simulator.LoggingSimulatorListener;
 import edu.jhu.Barbara.cs335.hw5.simulator.Simulator;
+import edu.jhu.Barbara.cs335.hw5.util.RandomStreams;
 
 /**
  * This interface is implemented by all shell commands.
@@ -119,15 +119,26 @@ public abstract class Command
 	}
 	
 	/**
-	 * Builds a simulator using the rules of the environment.
+	 * Builds a simulator using the rules of the environment.  It draws from the next random streams of the shell.
 	 * @param shell The shell in which to build the simulator.
 	 */
 	protected Simulator buildSimulator(Shell shell)
+	{
+		return buildSimulator(shell, shell.nextRandomStreams());
+	}
+	
+	/**
+	 * Builds a simulator using the rules of the environment.
+	 * @param shell The shell in which to build the simulator.
+	 * @param streams The random streams from which the simulator draws.
+	 */
+	protected Simulator buildSimulator(Shell shell, RandomStreams streams)
 	{
 		Simulator simulator = new Simulator(
 				shell.getWorld(),
-				new TerrainBasedTransitionFunction(shell.getWorld(), shell.getEnvironment().getHardCrashing()),
-				new StepCostRewardFunction(shell.getWorld()));
+				shell.getTransitionFunction(),
+				new StepCostRewardFunction(shell.getWorld()),
+				streams.random());
 		if (shell.getEnvironment().getVerboseSimulation())
 		{
 			simulator.addSimulatorListener(new LoggingSimulatorListener(
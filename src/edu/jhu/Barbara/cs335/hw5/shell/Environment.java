@@ -41,6 +41,102 @@ public class Environment
 	 * reporting.
 	 */
 	private int progressReportDelay;
+	/**
+	 * Whether or not compiled transition tables store their probabilities in single precision.
+	 */
+	private boolean floatTransitions;
+	/**
+	 * The number of threads used by parallel algorithms.
+	 */
+	private int threads;
+	/**
+	 * The manner in which indexed value iteration sweeps over its states.
+	 */
+	private String sweep;
+	/**
+	 * The order in which indexed value iteration visits states during an in-place sweep.
+	 */
+	private String sweepOrder;
+	/**
+	 * The number of evaluation sweeps modified policy iteration performs per improvement.
+	 */
+	private int evaluationSweeps;
+	/**
+	 * The heuristic which search agents use to estimate the utility of states they have not yet backed up.
+	 */
+	private String heuristic;
+	/**
+	 * The kind of Q-table kept by Q-learning agents.
+	 */
+	private String qTable;
+	/**
+	 * The largest Q-table, in MiB, that Q-learning agents may keep, or 0 for no limit.
+	 */
+	private int qMemoryBudget;
+	/**
+	 * Whether or not Q-learning agents update once per step from inside the simulation instead of replaying it.
+	 */
+	private boolean qStreaming;
+	/**
+	 * The number of actors which Q-learning agents run at once.
+	 */
+	private int qActors;
+	/**
+	 * The way in which the updates of several Q-learning actors are made atomic.
+	 */
+	private String qSync;
+	/**
+	 * The number of transitions Q-learning agents keep for experience replay, or 0 for no replay.
+	 */
+	private int qReplay;
+	/**
+	 * The number of replayed updates Q-learning agents make for each step.
+	 */
+	private double qReplayRatio;
+	/**
+	 * The way in which Q-learning agents sample transitions for replay.
+	 */
+	private String qReplaySampling;
+	/**
+	 * Whether or not Q-learning agents keep their replayed transitions off of the heap.
+	 */
+	private boolean qReplayDirect;
+	/**
+	 * The number of Dyna-Q planning updates Q-learning agents make after each step.
+	 */
+	private int qPlanningSteps;
+	/**
+	 * The decay of the eligibility traces of Q(lambda) agents, or 0 for no traces.
+	 */
+	private double qLambda;
+	/**
+	 * The number of rewards in each return of n-step Q-learning agents.
+	 */
+	private int qNSteps;
+	/**
+	 * The number of simulations the sim command runs in lockstep, or 0 to run them one at a time.
+	 */
+	private int simBatch;
+	/**
+	 * The number of threads across which the sim command spreads its simulations, or 0 to run them on the shell's own.
+	 */
+	private int simThreads;
+	/**
+	 * The half-width of the 95% confidence interval of the mean score at which the sim command stops, or 0.
+	 */
+	private double simHalfWidth;
+	/**
+	 * The seed from which every random number is derived, or 0 for a seed chosen anew for each session.
+	 */
+	private long seed;
+	/**
+	 * Whether or not every sim command draws the same random numbers, so that policies may be compared on them.
+	 */
+	private boolean simCommonRandom;
+	/**
+	 * The number of state-action pairs whose outcomes are cached for the transition functions of the shell, or 0.
+	 */
+	private int transitionCache;
 	
 	/**
 	 * General constructor.  Builds a default environment.
@@ -55,6 +151,30 @@ public class Environment
 		this.verboseSimulation = false;
 		this.verboseSimulationDelay = 500;
 		this.progressReportDelay = 0;
+		this.floatTransitions = false;
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.sweep = "gauss-seidel";
+		this.sweepOrder = "row";
+		this.evaluationSweeps = 5;
+		this.heuristic = "zero";
+		this.qTable = "auto";
+		this.qMemoryBudget = 0;
+		this.qStreaming = false;
+		this.qActors = 1;
+		this.qSync = "cas";
+		this.qReplay = 0;
+		this.qReplayRatio = 1.0;
+		this.qReplaySampling = "uniform";
+		this.qReplayDirect = false;
+		this.qPlanningSteps = 0;
+		this.qLambda = 0.0;
+		this.qNSteps = 1;
+		this.simBatch = 0;
+		this.simThreads = 0;
+		this.simHalfWidth = 0.0;
+		this.seed = 0;
+		this.simCommonRandom = false;
+		this.transitionCache = 0;
 	}
 
 	public double getEpsilon()
@@ -136,4 +256,244 @@ public class Environment
 	{
 		this.progressReportDelay = progressReportDelay;
 	}
+
+	public boolean getFloatTransitions()
+	{
+		return floatTransitions;
+	}
+
+	public void setFloatTransitions(boolean floatTransitions)
+	{
+		this.floatTransitions = floatTransitions;
+	}
+
+	public int getThreads()
+	{
+		return threads;
+	}
+
+	public void setThreads(int threads)
+	{
+		this.threads = threads;
+	}
+
+	public String getSweep()
+	{
+		return sweep;
+	}
+
+	public void setSweep(String sweep)
+	{
+		this.sweep = sweep;
+	}
+
+	public String getSweepOrder()
+	{
+		return sweepOrder;
+	}
+
+	public void setSweepOrder(String sweepOrder)
+	{
+		this.sweepOrder = sweepOrder;
+	}
+
+	public int getEvaluationSweeps()
+	{
+		return evaluationSweeps;
+	}
+
+	public void setEvaluationSweeps(int evaluationSweeps)
+	{
+		this.evaluationSweeps = evaluationSweeps;
+	}
+
+	public String getHeuristic()
+	{
+		return heuristic;
+	}
+
+	public void setHeuristic(String heuristic)
+	{
+		this.heuristic = heuristic;
+	}
+
+	public String getQTable()
+	{
+		return qTable;
+	}
+
+	public void setQTable(String qTable)
+	{
+		this.qTable = qTable;
+	}
+
+	public int getQMemoryBudget()
+	{
+		return qMemoryBudget;
+	}
+
+	public void setQMemoryBudget(int qMemoryBudget)
+	{
+		this.qMemoryBudget = qMemoryBudget;
+	}
+
+	public boolean getQStreaming()
+	{
+		return qStreaming;
+	}
+
+	public void setQStreaming(boolean qStreaming)
+	{
+		this.qStreaming = qStreaming;
+	}
+
+	public int getQActors()
+	{
+		return qActors;
+	}
+
+	public void setQActors(int qActors)
+	{
+		this.qActors = qActors;
+	}
+
+	public String getQSync()
+	{
+		return qSync;
+	}
+
+	public void setQSync(String qSync)
+	{
+		this.qSync = qSync;
+	}
+
+	public int getQReplay()
+	{
+		return qReplay;
+	}
+
+	public void setQReplay(int qReplay)
+	{
+		this.qReplay = qReplay;
+	}
+
+	public double getQReplayRatio()
+	{
+		return qReplayRatio;
+	}
+
+	public void setQReplayRatio(double qReplayRatio)
+	{
+		this.qReplayRatio = qReplayRatio;
+	}
+
+	public String getQReplaySampling()
+	{
+		return qReplaySampling;
+	}
+
+	public void setQReplaySampling(String qReplaySampling)
+	{
+		this.qReplaySampling = qReplaySampling;
+	}
+
+	public boolean getQReplayDirect()
+	{
+		return qReplayDirect;
+	}
+
+	public void setQReplayDirect(boolean qReplayDirect)
+	{
+		this.qReplayDirect = qReplayDirect;
+	}
+
+	public int getQPlanningSteps()
+	{
+		return qPlanningSteps;
+	}
+
+	public void setQPlanningSteps(int qPlanningSteps)
+	{
+		this.qPlanningSteps = qPlanningSteps;
+	}
+
+	public double getQLambda()
+	{
+		return qLambda;
+	}
+
+	public void setQLambda(double qLambda)
+	{
+		this.qLambda = qLambda;
+	}
+
+	public int getQNSteps()
+	{
+		return qNSteps;
+	}
+
+	public void setQNSteps(int qNSteps)
+	{
+		this.qNSteps = qNSteps;
+	}
+
+	public int getSimBatch()
+	{
+		return simBatch;
+	}
+
+	public void setSimBatch(int simBatch)
+	{
+		this.simBatch = simBatch;
+	}
+
+	public int getSimThreads()
+	{
+		return simThreads;
+	}
+
+	public void setSimThreads(int simThreads)
+	{
+		this.simThreads = simThreads;
+	}
+
+	public double getSimHalfWidth()
+	{
+		return simHalfWidth;
+	}
+
+	public void setSimHalfWidth(double simHalfWidth)
+	{
+		this.simHalfWidth = simHalfWidth;
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+
+	public boolean getSimCommonRandom()
+	{
+		return simCommonRandom;
+	}
+
+	public void setSimCommonRandom(boolean simCommonRandom)
+	{
+		this.simCommonRandom = simCommonRandom;
+	}
+
+	public int getTransitionCache()
+	{
+		return transitionCache;
+	}
+
+	public void setTransitionCache(int transitionCache)
+	{
+		this.transitionCache = transitionCache;
+	}
 }
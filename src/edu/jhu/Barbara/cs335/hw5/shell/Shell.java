@@ -10,12 +10,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
 
+import edu.jhu.Barbara.cs335.hw5.algorithm.CachingTransitionFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.CrashRayTransitionFunction;
 import edu.jhu.Barbara.cs335.hw5.algorithm.MetricTrackingAgent;
+import edu.jhu.Barbara.cs335.hw5.algorithm.TransitionFunction;
 import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
 import edu.jhu.Barbara.cs335.hw5.shell.command.CommandFailureException;
 import edu.jhu.Barbara.cs335.hw5.simulator.SimulationStep;
 import edu.jhu.Barbara.cs335.hw5.util.Pair;
+import edu.jhu.Barbara.cs335.hw5.util.RandomStreams;
 
 /**
  * This class represents the Reinforcement Learning Agent Shell (RLASH) which allows a user to issue commands to the
@@ -71,6 +76,22 @@ public class Shell
 	 * The log of the most recently executed simulation.
 	 */
 	private List<SimulationStep> simulation;
+	/**
+	 * The seed used when the environment does not specify one.
+	 */
+	private long sessionSeed;
+	/**
+	 * The root of the random streams for the current seed.
+	 */
+	private RandomStreams randomStreams;
+	/**
+	 * The number of sets of random streams issued from the current root.
+	 */
+	private long randomStreamsIssued;
+	/**
+	 * The cache shared by the transition functions of the shell, or <code>null</code> if none has been made.
+	 */
+	private CachingTransitionFunction transitionCache;
 	
 	/**
 	 * Creates a shell.
@@ -93,6 +114,10 @@ public class Shell
 		this.world = null;
 		this.agent = null;
 		this.simulation = null;
+		this.sessionSeed = new SplittableRandom().nextLong();
+		this.randomStreams = null;
+		this.randomStreamsIssued = 0;
+		this.transitionCache = null;
 	}
 	
 	/**
@@ -238,6 +263,77 @@ public class Shell
 		}
 	}
 	
+	/**
+	 * Issues a set of random streams to a command.  Each call derives a new set from the seed of the environment, so
+	 * that a session which runs the same commands with the same seed draws the same random numbers.  Changing the seed
+	 * starts the issue over.
+	 * @return The random streams.
+	 */
+	public RandomStreams nextRandomStreams()
+	{
+		return getRootRandomStreams().derive(this.randomStreamsIssued++);
+	}
+	
+	/**
+	 * Retrieves the set of random streams shared by every command which uses common random numbers.  It depends only
+	 * on the seed of the environment.
+	 * @return The random streams.
+	 */
+	public RandomStreams getCommonRandomStreams()
+	{
+		return getRootRandomStreams().derive(-1);
+	}
+	
+	/**
+	 * Retrieves the root of the random streams for the seed of the environment.
+	 * @return The root.
+	 */
+	private RandomStreams getRootRandomStreams()
+	{
+		long seed = (this.environment.getSeed()!=0) ? this.environment.getSeed() : this.sessionSeed;
+		if (this.randomStreams==null || this.randomStreams.getSeed()!=seed)
+		{
+			this.randomStreams = new RandomStreams(seed);
+			this.randomStreamsIssued = 0;
+		}
+		return this.randomStreams;
+	}
+	
+	/**
+	 * Builds a transition function for the world under the rules of the environment.  If the environment asks for a
+	 * transition cache, every call returns the same cache until the world, the crash rule or the size of the cache
+	 * changes, so that the agents and simulators of the shell share what it has learned.
+	 * @return The transition function.
+	 */
+	public TransitionFunction getTransitionFunction()
+	{
+		CrashRayTransitionFunction transitionFunction =
+				new CrashRayTransitionFunction(this.world, this.environment.getHardCrashing());
+		if (this.environment.getTransitionCache()<=0)
+		{
+			return transitionFunction;
+		}
+		if (this.transitionCache==null ||
+				this.transitionCache.getCapacity()!=this.environment.getTransitionCache() ||
+				((CrashRayTransitionFunction)this.transitionCache.getDelegate()).getWorld()!=this.world ||
+				((CrashRayTransitionFunction)this.transitionCache.getDelegate()).getHardCrash()!=
+						this.environment.getHardCrashing())
+		{
+			this.transitionCache = new CachingTransitionFunction(transitionFunction,
+					this.environment.getTransitionCache());
+		}
+		return this.transitionCache;
+	}
+	
+	/**
+	 * Retrieves the transition cache most recently made by this shell.
+	 * @return The cache, or <code>null</code> if none has been made.
+	 */
+	public CachingTransitionFunction getTransitionCache()
+	{
+		return this.transitionCache;
+	}
+	
 	public Set<Pair<Command, List<String>>> getRegistrationSet()
 	{
 		return Collections.unmodifiableSet(registrationSet);
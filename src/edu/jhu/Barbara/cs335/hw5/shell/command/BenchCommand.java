@@ -0,0 +1,90 @@
+package edu.jhu.Barbara.cs335.hw5.shell.command;
+
+import edu.jhu.Barbara.cs335.hw5.algorithm.MemoryBudgetExceededException;
+import edu.jhu.Barbara.cs335.hw5.algorithm.QLearningAgent;
+import edu.jhu.Barbara.cs335.hw5.shell.Command;
+import edu.jhu.Barbara.cs335.hw5.shell.Shell;
+
+/**
+ * Measures how the throughput of Q-learning scales with the number of actors.
+ */
+public class BenchCommand extends Command
+{
+	@Override
+	public void execute(Shell shell, String[] args)
+		throws CommandFailureException
+	{
+		checkArgCount(args, 0, 1);
+		checkWorldMap(shell);
+
+		int iterations = 100;
+		if (args.length>0)
+		{
+			iterations = parsePositiveInteger(args[0], "iteration count");
+		}
+		if (shell.getEnvironment().getThreads()<1)
+		{
+			throw new CommandFailureException("Invalid thread count: must be positive");
+		}
+
+		MakeCommand maker = new MakeCommand();
+		double baseline = 0.0;
+		shell.print("Actors  Updates     Updates/sec  Speedup");
+		for (int actors=1;actors<=shell.getEnvironment().getThreads();actors=nextActorCount(actors, shell))
+		{
+			QLearningAgent agent = maker.buildQLearningAgent(shell);
+			agent.setStreaming(true);
+			agent.setActors(actors);
+			agent.setSimulator(buildSimulator(shell));
+
+			long start = System.nanoTime();
+			try
+			{
+				for (int i=0;i<iterations;i++)
+				{
+					agent.iterate();
+				}
+			} catch (MemoryBudgetExceededException e)
+			{
+				throw new CommandFailureException("Benchmark stopped at " + actors + " actors: " + e.getMessage());
+			} finally
+			{
+				agent.releaseActors();
+			}
+			double rate = agent.getUpdates() / ((System.nanoTime() - start) / 1000000000.0);
+			if (actors==1) baseline = rate;
+			shell.print(String.format("%-7d %-11d %-12.0f %.2f", actors, agent.getUpdates(), rate, rate / baseline));
+		}
+	}
+
+	/**
+	 * Determines the next number of actors to measure: each power of two, and then the configured thread count.
+	 * @param actors The number of actors just measured.
+	 * @param shell The shell whose environment should be examined.
+	 * @return The next number of actors.
+	 */
+	private int nextActorCount(int actors, Shell shell)
+	{
+		int threads = shell.getEnvironment().getThreads();
+		if (actors==threads) return threads + 1;
+		return Math.min(actors * 2, threads);
+	}
+
+	@Override
+	public String getLongHelp(String name)
+	{
+		return
+			"Usage: " + name + " [iterations]\n\n" +
+			"Benchmarks streamed Q-learning with the current environment.  A fresh Q-learning agent is iterated with " +
+			"one actor, then with each power of two up to the configured number of threads, and then with that " +
+			"many.  For each, the number of Q-value updates per second of wall time is reported along with its " +
+			"speedup over a single actor.  If a number of iterations is provided, it must be a positive integer; " +
+			"otherwise, 100 are used.  Each iteration runs one episode per actor.";
+	}
+
+	@Override
+	public String getShortHelp()
+	{
+		return "benchmarks Q-learning throughput by actor count";
+	}
+}
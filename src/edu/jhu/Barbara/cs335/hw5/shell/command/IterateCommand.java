@@ -2,6 +2,7 @@ package edu.jhu.Barbara.cs335.hw5.shell.command;
 
 import java.util.Set;
 
+import edu.jhu.Barbara.cs335.hw5.algorithm.MemoryBudgetExceededException;
 import edu.jhu.Barbara.cs335.hw5.shell.Command;
 import edu.jhu.Barbara.cs335.hw5.shell.Shell;
 import edu.jhu.Barbara.cs335.hw5.simulator.Simulator;
@@ -44,7 +45,15 @@ public class IterateCommand extends Command
 		// Iterate until we run out of iterations or we converge
 		for (int i=0; i<iterations; i++)
 		{
-			boolean convergence = shell.getAgent().iterate();
+			boolean convergence;
+			try
+			{
+				convergence = shell.getAgent().iterate();
+			} catch (MemoryBudgetExceededException e)
+			{
+				throw new CommandFailureException("Learning stopped at agent iteration " +
+						shell.getAgent().getIterationCount() + ": " + e.getMessage());
+			}
 			if (convergence)
 			{
 				shell.print("Detected convergence at agent iteration " + shell.getAgent().getIterationCount() + ".");
@@ -1,11 +1,20 @@
 package edu.jhu.Barbara.cs335.hw5.shell.command;
 
+import edu.jhu.Barbara.cs335.hw5.algorithm.ConcurrentQTable;
+import edu.jhu.Barbara.cs335.hw5.algorithm.CrashRayTransitionFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.Heuristic;
+import edu.jhu.Barbara.cs335.hw5.algorithm.IndexedValueIteratingAgent;
+import edu.jhu.Barbara.cs335.hw5.algorithm.LRTDPAgent;
 import edu.jhu.Barbara.cs335.hw5.algorithm.MetricTrackingAgent;
+import edu.jhu.Barbara.cs335.hw5.algorithm.PolicyIteratingAgent;
+import edu.jhu.Barbara.cs335.hw5.algorithm.PrioritizedSweepingAgent;
 import edu.jhu.Barbara.cs335.hw5.algorithm.QLearningAgent;
 import edu.jhu.Barbara.cs335.hw5.algorithm.ReinforcementLearningAgent;
+import edu.jhu.Barbara.cs335.hw5.algorithm.ReplayBuffer;
 import edu.jhu.Barbara.cs335.hw5.algorithm.StepCostRewardFunction;
-import edu.jhu.Barbara.cs335.hw5.algorithm.TerrainBasedTransitionFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.StepsToFinishHeuristic;
 import edu.jhu.Barbara.cs335.hw5.algorithm.ValueIteratingAgent;
+import edu.jhu.Barbara.cs335.hw5.algorithm.ZeroHeuristic;
 import edu.jhu.Barbara.cs335.hw5.shell.Command;
 import edu.jhu.Barbara.cs335.hw5.shell.Shell;
 
@@ -31,24 +40,224 @@ public class MakeCommand extends Command
 			agent.setConvergenceTolerance(shell.getEnvironment().getEpsilon());
 			agent.setDiscountFactor(shell.getEnvironment().getGamma());
 			agent.setRewardFunction(new StepCostRewardFunction(shell.getWorld()));
-			agent.setTransitionFunction(new TerrainBasedTransitionFunction(
-					shell.getWorld(), shell.getEnvironment().getHardCrashing()));
+			agent.setTransitionFunction(shell.getTransitionFunction());
+			agent.setHeuristic(buildHeuristic(shell));
 			learningAgent = agent;
-		} else if (agentType.equals("q"))
+		} else if (agentType.equals("ivi"))
+		{
+			IndexedValueIteratingAgent agent = new IndexedValueIteratingAgent();
+			agent.setWorld(shell.getWorld());
+			agent.setConvergenceTolerance(shell.getEnvironment().getEpsilon());
+			agent.setDiscountFactor(shell.getEnvironment().getGamma());
+			agent.setRewardFunction(new StepCostRewardFunction(shell.getWorld()));
+			agent.setTransitionFunction(shell.getTransitionFunction());
+			agent.setHeuristic(buildHeuristic(shell));
+			agent.setSinglePrecisionTransitions(shell.getEnvironment().getFloatTransitions());
+			agent.setThreads(checkThreads(shell));
+			IndexedValueIteratingAgent.SweepMode sweepMode =
+					IndexedValueIteratingAgent.SweepMode.forName(shell.getEnvironment().getSweep());
+			if (sweepMode==null)
+			{
+				throw new CommandFailureException("Unrecognized sweep: " + shell.getEnvironment().getSweep());
+			}
+			agent.setSweepMode(sweepMode);
+			IndexedValueIteratingAgent.SweepOrder sweepOrder =
+					IndexedValueIteratingAgent.SweepOrder.forName(shell.getEnvironment().getSweepOrder());
+			if (sweepOrder==null)
+			{
+				throw new CommandFailureException("Unrecognized sweep order: " +
+						shell.getEnvironment().getSweepOrder());
+			}
+			agent.setSweepOrder(sweepOrder);
+			learningAgent = agent;
+		} else if (agentType.equals("ps"))
 		{
-			QLearningAgent agent = new QLearningAgent();
-			agent.setLearningFactor(shell.getEnvironment().getAlpha());
+			PrioritizedSweepingAgent agent = new PrioritizedSweepingAgent();
+			agent.setWorld(shell.getWorld());
 			agent.setConvergenceTolerance(shell.getEnvironment().getEpsilon());
 			agent.setDiscountFactor(shell.getEnvironment().getGamma());
-			agent.setMinimumExplorationCount(shell.getEnvironment().getMinExplorations());
+			agent.setRewardFunction(new StepCostRewardFunction(shell.getWorld()));
+			agent.setTransitionFunction(shell.getTransitionFunction());
+			agent.setHeuristic(buildHeuristic(shell));
+			agent.setThreads(checkThreads(shell));
 			learningAgent = agent;
+		} else if (agentType.equals("pi") || agentType.equals("mpi"))
+		{
+			PolicyIteratingAgent agent = new PolicyIteratingAgent();
+			agent.setWorld(shell.getWorld());
+			agent.setConvergenceTolerance(shell.getEnvironment().getEpsilon());
+			agent.setDiscountFactor(shell.getEnvironment().getGamma());
+			agent.setRewardFunction(new StepCostRewardFunction(shell.getWorld()));
+			agent.setTransitionFunction(shell.getTransitionFunction());
+			agent.setHeuristic(buildHeuristic(shell));
+			agent.setThreads(checkThreads(shell));
+			if (agentType.equals("mpi"))
+			{
+				if (shell.getEnvironment().getEvaluationSweeps()<1)
+				{
+					throw new CommandFailureException("Invalid evaluation sweep count: must be positive");
+				}
+				agent.setEvaluationSweeps(shell.getEnvironment().getEvaluationSweeps());
+			}
+			learningAgent = agent;
+		} else if (agentType.equals("lrtdp"))
+		{
+			LRTDPAgent agent = new LRTDPAgent();
+			agent.setWorld(shell.getWorld());
+			agent.setConvergenceTolerance(shell.getEnvironment().getEpsilon());
+			agent.setDiscountFactor(shell.getEnvironment().getGamma());
+			agent.setRewardFunction(new StepCostRewardFunction(shell.getWorld()));
+			agent.setTransitionFunction(shell.getTransitionFunction());
+			agent.setHeuristic(buildHeuristic(shell));
+			learningAgent = agent;
+		} else if (agentType.equals("q"))
+		{
+			learningAgent = buildQLearningAgent(shell);
 		} else
 		{
 			throw new CommandFailureException("Unrecognized agent type: " + agentType);
 		}
 
 		shell.setAgent(new MetricTrackingAgent(learningAgent));
-}
+	}
+	
+	/**
+	 * Creates a Q-learning agent using the environment.
+	 * @param shell The shell whose environment should be used.
+	 * @return The agent.
+	 * @throws CommandFailureException If the environment is not valid for Q-learning.
+	 */
+	QLearningAgent buildQLearningAgent(Shell shell)
+		throws CommandFailureException
+	{
+		QLearningAgent agent = new QLearningAgent();
+		agent.setWorld(shell.getWorld());
+		QLearningAgent.TableType tableType = QLearningAgent.TableType.forName(shell.getEnvironment().getQTable());
+		if (tableType==null)
+		{
+			throw new CommandFailureException("Unrecognized Q-table: " + shell.getEnvironment().getQTable());
+		}
+		agent.setTableType(tableType);
+		if (shell.getEnvironment().getQMemoryBudget()<0)
+		{
+			throw new CommandFailureException("Invalid Q memory budget: must not be negative");
+		}
+		agent.setMemoryBudget(shell.getEnvironment().getQMemoryBudget() * 1024L * 1024L);
+		agent.setStreaming(shell.getEnvironment().getQStreaming());
+		if (shell.getEnvironment().getQActors()<1)
+		{
+			throw new CommandFailureException("Invalid Q actor count: must be positive");
+		}
+		agent.setActors(shell.getEnvironment().getQActors());
+		ConcurrentQTable.Synchronization synchronization =
+				ConcurrentQTable.Synchronization.forName(shell.getEnvironment().getQSync());
+		if (synchronization==null)
+		{
+			throw new CommandFailureException("Unrecognized Q synchronization: " + shell.getEnvironment().getQSync());
+		}
+		agent.setSynchronization(synchronization);
+		if (shell.getEnvironment().getQReplay()<0)
+		{
+			throw new CommandFailureException("Invalid replay capacity: must not be negative");
+		}
+		if (shell.getEnvironment().getQReplay()>0 && shell.getEnvironment().getQActors()>1)
+		{
+			throw new CommandFailureException("Experience replay requires a single Q actor");
+		}
+		agent.setReplayCapacity(shell.getEnvironment().getQReplay());
+		if (shell.getEnvironment().getQReplayRatio()<0)
+		{
+			throw new CommandFailureException("Invalid replay ratio: must not be negative");
+		}
+		agent.setReplayRatio(shell.getEnvironment().getQReplayRatio());
+		ReplayBuffer.Sampling sampling = ReplayBuffer.Sampling.forName(shell.getEnvironment().getQReplaySampling());
+		if (sampling==null)
+		{
+			throw new CommandFailureException("Unrecognized replay sampling: " +
+					shell.getEnvironment().getQReplaySampling());
+		}
+		agent.setReplaySampling(sampling);
+		agent.setReplayDirect(shell.getEnvironment().getQReplayDirect());
+		if (shell.getEnvironment().getQPlanningSteps()<0)
+		{
+			throw new CommandFailureException("Invalid planning step count: must not be negative");
+		}
+		if (shell.getEnvironment().getQPlanningSteps()>0 && shell.getEnvironment().getQActors()>1)
+		{
+			throw new CommandFailureException("Dyna-Q planning requires a single Q actor");
+		}
+		agent.setPlanningSteps(shell.getEnvironment().getQPlanningSteps());
+		if (shell.getEnvironment().getQLambda()<0 || shell.getEnvironment().getQLambda()>1)
+		{
+			throw new CommandFailureException("Invalid lambda: must be between 0 and 1");
+		}
+		if (shell.getEnvironment().getQNSteps()<1)
+		{
+			throw new CommandFailureException("Invalid n-step count: must be positive");
+		}
+		if (shell.getEnvironment().getQLambda()>0 && shell.getEnvironment().getQNSteps()>1)
+		{
+			throw new CommandFailureException("Q(lambda) and n-step Q-learning cannot be combined");
+		}
+		if ((shell.getEnvironment().getQLambda()>0 || shell.getEnvironment().getQNSteps()>1) &&
+				shell.getEnvironment().getQActors()>1)
+		{
+			throw new CommandFailureException("Q(lambda) and n-step Q-learning require a single Q actor");
+		}
+		agent.setLambda(shell.getEnvironment().getQLambda());
+		agent.setNSteps(shell.getEnvironment().getQNSteps());
+		agent.setLearningFactor(shell.getEnvironment().getAlpha());
+		agent.setConvergenceTolerance(shell.getEnvironment().getEpsilon());
+		agent.setDiscountFactor(shell.getEnvironment().getGamma());
+		agent.setMinimumExplorationCount(shell.getEnvironment().getMinExplorations());
+		// The zero heuristic leaves the agent's original optimistic estimate in place
+		Heuristic heuristic = buildHeuristic(shell);
+		if (heuristic instanceof StepsToFinishHeuristic)
+		{
+			agent.setHeuristic((StepsToFinishHeuristic)heuristic);
+		}
+		return agent;
+	}
+
+	/**
+	 * Retrieves the number of threads configured in the environment.
+	 * @param shell The shell whose environment should be examined.
+	 * @return The configured number of threads.
+	 * @throws CommandFailureException If the configured number of threads is not positive.
+	 */
+	private int checkThreads(Shell shell)
+		throws CommandFailureException
+	{
+		if (shell.getEnvironment().getThreads()<1)
+		{
+			throw new CommandFailureException("Invalid thread count: must be positive");
+		}
+		return shell.getEnvironment().getThreads();
+	}
+
+	/**
+	 * Creates the heuristic named in the environment.
+	 * @param shell The shell whose environment should be examined.
+	 * @return The heuristic.
+	 * @throws CommandFailureException If the environment names an unknown heuristic.
+	 */
+	private Heuristic buildHeuristic(Shell shell)
+		throws CommandFailureException
+	{
+		String name = shell.getEnvironment().getHeuristic();
+		if (name.equals("zero"))
+		{
+			return new ZeroHeuristic();
+		} else if (name.equals("steps"))
+		{
+			return new StepsToFinishHeuristic(shell.getWorld(), new CrashRayTransitionFunction(
+					shell.getWorld(), shell.getEnvironment().getHardCrashing()), shell.getEnvironment().getGamma(),
+					checkThreads(shell));
+		} else
+		{
+			throw new CommandFailureException("Unrecognized heuristic: " + name);
+		}
+	}
 
 	@Override
 	public String getLongHelp(String name)
@@ -56,7 +265,9 @@ public class MakeCommand extends Command
 		return
 			"Usage: " + name + " <type>\n\n" +
 			"Creates a reinforcement learning agent using the defined environment variables.  Type may be one of " +
-			"\"vi\" for value-iterating or \"q\" for Q-learning.\n\n"+
+			"\"vi\" for value-iterating, \"ivi\" for value-iterating over indexed state arrays, \"ps\" for " +
+			"prioritized sweeping, \"pi\" for policy iteration with exact evaluation, \"mpi\" for modified " +
+			"policy iteration, \"lrtdp\" for labeled real-time dynamic programming, or \"q\" for Q-learning.\n\n"+
 			"NOTE: the agent will be configured with values from the environment WHEN IT IS CREATED.  Further " +
 			"changes to environment values after the agent has been created will have no effect unless the " + name +
 			" command is invoked again.";
@@ -1,7 +1,12 @@
 package edu.jhu.Barbara.cs335.hw5.shell.command;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.jhu.Barbara.cs335.hw5.algorithm.CachingTransitionFunction;
 import edu.jhu.Barbara.cs335.hw5.shell.Command;
 import edu.jhu.Barbara.cs335.hw5.shell.Shell;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
 
 /**
  * This command displays human-readable metrics data to the user.
@@ -19,6 +24,26 @@ public class MetricsCommand extends Command
 		shell.print("Iterations: " + shell.getAgent().getIterationCount());
 		shell.print("Time:       " + shell.getAgent().getTime() + " ms");
 		shell.print("Converged?  " + (shell.getAgent().isConvergenceDetected() ? "yes" : "no"));
+		List<Pair<String,String>> metrics = new ArrayList<Pair<String,String>>(shell.getAgent().getAgentMetrics());
+		CachingTransitionFunction cache = shell.getTransitionCache();
+		if (cache!=null)
+		{
+			long lookups = cache.getHits() + cache.getMisses();
+			metrics.add(new Pair<String,String>("Cache hits", cache.getHits() + ((lookups==0) ? "" :
+					String.format(" (%.2f%%)", 100.0 * cache.getHits() / lookups))));
+			metrics.add(new Pair<String,String>("Cache misses", String.valueOf(cache.getMisses())));
+			metrics.add(new Pair<String,String>("Cache evictions", String.valueOf(cache.getEvictions())));
+			metrics.add(new Pair<String,String>("Cache entries", cache.size() + " of " + cache.getCapacity()));
+		}
+		for (Pair<String,String> metric : metrics)
+		{
+			StringBuffer sb = new StringBuffer(metric.getFirst());
+			sb.append(":");
+			while (sb.length()<12) sb.append(" ");
+			if (sb.length()>12) sb.append(" ");
+			sb.append(metric.getSecond());
+			shell.print(sb.toString());
+		}
 	}
 
 	@Override
@@ -31,7 +56,9 @@ public class MetricsCommand extends Command
 			"usually between 10ms and 15ms.\n\n" +
 			"Note that the \"time\" metric refers to wall time, not CPU time.  Thus, this value becomes " +
 			"uninteresting if the agent is iterated when verboseSimulation is set or any other factor separates wall " +
-			"and CPU time significantly.";
+			"and CPU time significantly.\n\n" +
+			"If the shell has made a transition cache (see the transitionCache variable), its hits, misses and " +
+			"evictions are also displayed.";
 			
 	}
 
@@ -66,6 +66,15 @@ public class SetCommand extends Command
 			{
 				throw new CommandFailureException("Invalid value: " + nfe.getMessage());
 			}
+		} else if ((Long.class.isAssignableFrom(paramClass)) || (long.class.isAssignableFrom(paramClass)))
+		{
+			try
+			{
+				parsedValue = Long.parseLong(value);
+			} catch (NumberFormatException nfe)
+			{
+				throw new CommandFailureException("Invalid value: " + nfe.getMessage());
+			}
 		} else if ((Double.class.isAssignableFrom(paramClass)) || (double.class.isAssignableFrom(paramClass)))
 		{
 			try
@@ -4,13 +4,24 @@ import java.util.Formatter;
 import java.util.List;
 import java.util.Set;
 
+import edu.jhu.Barbara.cs335.hw5.algorithm.MemoryBudgetExceededException;
 import edu.jhu.Barbara.cs335.hw5.algorithm.MetricTrackingAgent;
 import edu.jhu.Barbara.cs335.hw5.algorithm.Policy;
+import edu.jhu.Barbara.cs335.hw5.algorithm.PolicySnapshot;
+import edu.jhu.Barbara.cs335.hw5.algorithm.ReachableStates;
+import edu.jhu.Barbara.cs335.hw5.algorithm.StepCostRewardFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.TransitionFunction;
+import edu.jhu.Barbara.cs335.hw5.data.State;
 import edu.jhu.Barbara.cs335.hw5.shell.Command;
 import edu.jhu.Barbara.cs335.hw5.shell.Shell;
+import edu.jhu.Barbara.cs335.hw5.simulator.BatchSimulator;
+import edu.jhu.Barbara.cs335.hw5.simulator.MonteCarloEvaluator;
+import edu.jhu.Barbara.cs335.hw5.simulator.ScoreCallback;
+import edu.jhu.Barbara.cs335.hw5.simulator.ScoreStatistics;
 import edu.jhu.Barbara.cs335.hw5.simulator.SimulationStep;
 import edu.jhu.Barbara.cs335.hw5.simulator.Simulator;
 import edu.jhu.Barbara.cs335.hw5.simulator.SimulatorListener;
+import edu.jhu.Barbara.cs335.hw5.util.RandomStreams;
 
 /**
  * Runs a simulation using the policy of the current agent.
@@ -18,6 +29,13 @@ import edu.jhu.Barbara.cs335.hw5.simulator.SimulatorListener;
  */
 public class SimulateCommand extends Command
 {
+	/** The number of scores printed on each line of a list of scores. */
+	private static final int SCORES_PER_LINE = 8;
+	/** The number of standard errors spanned by the half-width of a 95% confidence interval. */
+	private static final double Z_95 = 1.959963984540054;
+	/** The percentiles of the scores reported after a number of simulations, as listed in the report. */
+	private static final int[] PERCENTILES = {5, 25, 50, 75, 95};
+
 	@Override
 	public void execute(Shell shell, String[] args)
 		throws CommandFailureException
@@ -31,11 +49,42 @@ public class SimulateCommand extends Command
 		{
 			simulationCount = parsePositiveInteger(args[0], "simulation count");
 		}
+		int lanes = shell.getEnvironment().getSimBatch();
+		if (lanes<0)
+		{
+			throw new CommandFailureException("Invalid simBatch: must not be negative");
+		}
+		int threads = shell.getEnvironment().getSimThreads();
+		if (threads<0)
+		{
+			throw new CommandFailureException("Invalid simThreads: must not be negative");
+		}
+		double halfWidth = shell.getEnvironment().getSimHalfWidth();
+		if (halfWidth<0)
+		{
+			throw new CommandFailureException("Invalid simHalfWidth: must not be negative");
+		}
+		if (halfWidth>0 && (threads==0 || shell.getEnvironment().getVerboseSimulation()))
+		{
+			throw new CommandFailureException("simHalfWidth requires simThreads and quiet simulation");
+		}
+		RandomStreams streams = shell.getEnvironment().getSimCommonRandom() ?
+				shell.getCommonRandomStreams() : shell.nextRandomStreams();
+		if (threads>0 && !shell.getEnvironment().getVerboseSimulation())
+		{
+			simulateParallel(shell, streams, simulationCount, threads, halfWidth);
+			return;
+		}
+		if (lanes>0 && !shell.getEnvironment().getVerboseSimulation())
+		{
+			simulateBatch(shell, streams, simulationCount, lanes);
+			return;
+		}
 		
-		Simulator simulator = buildSimulator(shell);		
-		double totalScore = 0.0;
+		Simulator simulator = buildSimulator(shell, streams);
+		ScoreStatistics statistics = new ScoreStatistics(simulationCount>1);
+		ScorePrinter printer = (simulationCount>1) ? new ScorePrinter(shell) : null;
 		
-		Formatter formatter = new Formatter();
 		for (int i=0;i<simulationCount;i++)
 		{
 			MetricTrackingAgent agent = shell.getAgent().duplicate();
@@ -44,10 +93,18 @@ public class SimulateCommand extends Command
 			agent.setSimulator(simulator);
 			Policy policy = agent.getPolicy();			
 			
-			List<SimulationStep> simulation = simulator.simulate(policy);
+			List<SimulationStep> simulation;
+			simulator.setRandom(streams.derive(i).random());
+			try
+			{
+				simulation = simulator.simulate(policy);
+			} catch (MemoryBudgetExceededException e)
+			{
+				throw new CommandFailureException("Simulation stopped: " + e.getMessage());
+			}
 			double score = simulation.get(simulation.size()-1).getAfterScore();
-			totalScore += score;
-			formatter.format(" %.2f", score);
+			statistics.add(score);
+			if (printer!=null) printer.print(score);
 			shell.setSimulation(simulation);
 			
 			for (SimulatorListener listener : listeners) simulator.removeSimulatorListener(listener);
@@ -59,13 +116,200 @@ public class SimulateCommand extends Command
 			}
 		}
 		
+		if (printer!=null) printer.flush();
+		printStatistics(shell, statistics);
+	}
+	
+	/**
+	 * Runs simulations in lockstep with a {@link BatchSimulator}.  The agent is duplicated once and its policy is
+	 * recorded in a snapshot before any simulation begins.
+	 * @param shell The shell in which to simulate.
+	 * @param streams The random streams of the simulations.
+	 * @param simulationCount The number of simulations to run.
+	 * @param lanes The number of simulations to run at once.
+	 * @throws CommandFailureException If the policy cannot be recorded or a simulation of it could never end.
+	 */
+	private void simulateBatch(Shell shell, RandomStreams streams, int simulationCount, int lanes)
+		throws CommandFailureException
+	{
+		MetricTrackingAgent agent = shell.getAgent().duplicate();
+		agent.setSimulator(buildSimulator(shell, streams));
+		TransitionFunction transitionFunction = shell.getTransitionFunction();
+		BatchSimulator simulator = new BatchSimulator(
+				shell.getWorld(),
+				transitionFunction,
+				new StepCostRewardFunction(shell.getWorld()),
+				lanes, Math.max(1, shell.getEnvironment().getThreads()));
+		
+		double[] scores = new double[simulationCount];
+		try
+		{
+			PolicySnapshot policy = simulator.snapshot(agent.getPolicy());
+			checkTrap(shell, policy, transitionFunction);
+			simulator.run(policy, streams, simulationCount, scores);
+		} catch (MemoryBudgetExceededException e)
+		{
+			throw new CommandFailureException("Simulation stopped: " + e.getMessage());
+		}
+		
+		ScoreStatistics statistics = new ScoreStatistics(simulationCount>1);
+		for (double score : scores) statistics.add(score);
 		if (simulationCount>1)
 		{
-			shell.print("Simulation scores:" + formatter.toString());
-			shell.print("Average simulation score: " + (totalScore / simulationCount));
+			ScorePrinter printer = new ScorePrinter(shell);
+			printer.scored(scores, simulationCount);
+			printer.flush();
+		}
+		printStatistics(shell, statistics);
+	}
+	
+	/**
+	 * Runs simulations across a pool of threads with a {@link MonteCarloEvaluator}.  The agent is duplicated once and
+	 * its policy is recorded in a snapshot which all of the threads share.
+	 * @param shell The shell in which to simulate.
+	 * @param streams The random streams of the simulations.
+	 * @param simulationCount The largest number of simulations to run.
+	 * @param threads The number of threads to use.
+	 * @param halfWidth The half-width of the 95% confidence interval at which to stop, or 0 to run every simulation.
+	 * @throws CommandFailureException If the policy cannot be recorded or a simulation of it could never end.
+	 */
+	private void simulateParallel(Shell shell, RandomStreams streams, int simulationCount, int threads,
+			double halfWidth)
+		throws CommandFailureException
+	{
+		MetricTrackingAgent agent = shell.getAgent().duplicate();
+		Simulator simulator = buildSimulator(shell, streams);
+		agent.setSimulator(simulator);
+		TransitionFunction transitionFunction = shell.getTransitionFunction();
+		
+		ScoreStatistics statistics;
+		ScorePrinter printer = (simulationCount>1) ? new ScorePrinter(shell) : null;
+		try
+		{
+			PolicySnapshot policy = PolicySnapshot.take(agent.getPolicy(),
+					ReachableStates.forWorld(shell.getWorld(), transitionFunction));
+			checkTrap(shell, policy, transitionFunction);
+			MonteCarloEvaluator evaluator = new MonteCarloEvaluator(simulator, threads);
+			statistics = evaluator.evaluate(policy, streams, simulationCount, Z_95, halfWidth, printer);
+		} catch (MemoryBudgetExceededException e)
+		{
+			throw new CommandFailureException("Simulation stopped: " + e.getMessage());
+		}
+		
+		if (printer!=null) printer.flush();
+		if (statistics.getCount()<simulationCount)
+		{
+			shell.print("Stopped early after " + statistics.getCount() + " simulations.");
+		}
+		printStatistics(shell, statistics);
+	}
+	
+	/**
+	 * Ensures that every simulation of a snapshot of a policy ends.
+	 * @param shell The shell in which to simulate.
+	 * @param policy The snapshot.
+	 * @param transitionFunction The transition function of the world.
+	 * @throws CommandFailureException If the snapshot can become trapped.
+	 */
+	private void checkTrap(Shell shell, PolicySnapshot policy, TransitionFunction transitionFunction)
+		throws CommandFailureException
+	{
+		State trap = policy.findTrap(transitionFunction, shell.getWorld());
+		if (trap!=null)
+		{
+			throw new CommandFailureException("The snapshot of the policy can never finish from " + trap +
+					"; set simBatch and simThreads to 0 to simulate the policy as it learns");
+		}
+	}
+	
+	/**
+	 * Prints the statistics of the scores of a number of simulations.  The score of a single simulation is printed
+	 * alone; otherwise the scores themselves are expected to have been printed already.
+	 * @param shell The shell to which to print.
+	 * @param statistics The statistics, which must keep their scores if there is more than one.
+	 */
+	private void printStatistics(Shell shell, ScoreStatistics statistics)
+	{
+		if (statistics.getCount()>1)
+		{
+			shell.print("Average simulation score: " + statistics.getMean());
+			Formatter formatter = new Formatter();
+			formatter.format("Standard deviation: %.4f", statistics.getStandardDeviation());
+			shell.print(formatter.toString());
+			formatter = new Formatter();
+			double halfWidth = statistics.getHalfWidth(Z_95);
+			formatter.format("95%% confidence interval: [%.4f, %.4f] (half-width %.4f)",
+					statistics.getMean() - halfWidth, statistics.getMean() + halfWidth, halfWidth);
+			shell.print(formatter.toString());
+			formatter = new Formatter();
+			formatter.format("Score range: %.2f to %.2f", statistics.getMinimum(), statistics.getMaximum());
+			shell.print(formatter.toString());
+			formatter = new Formatter();
+			formatter.format("Percentiles (5/25/50/75/95):");
+			for (int percentile : PERCENTILES)
+			{
+				formatter.format(" %.2f", statistics.getPercentile(percentile));
+			}
+			shell.print(formatter.toString());
 		} else
 		{
-			shell.print("Simulation score:" + formatter.toString());
+			Formatter formatter = new Formatter();
+			formatter.format("Simulation score: %.2f", statistics.getMean());
+			shell.print(formatter.toString());
+		}
+	}
+	
+	/**
+	 * Prints a list of scores as they are produced, a line at a time, so that the whole list is never held as text.
+	 */
+	private static class ScorePrinter implements ScoreCallback
+	{
+		/** The shell to which to print. */
+		private Shell shell;
+		/** The line being built. */
+		private Formatter line;
+		/** The number of scores on the line being built. */
+		private int scoresOnLine;
+		
+		/**
+		 * General constructor.  Prints the heading of the list.
+		 * @param shell The shell to which to print.
+		 */
+		public ScorePrinter(Shell shell)
+		{
+			super();
+			this.shell = shell;
+			this.line = new Formatter();
+			this.scoresOnLine = 0;
+			shell.print("Simulation scores:");
+		}
+		
+		public void scored(double[] scores, int count)
+		{
+			for (int i=0;i<count;i++) print(scores[i]);
+		}
+		
+		/**
+		 * Adds a score to the list, printing the line it completes.
+		 * @param score The score.
+		 */
+		public void print(double score)
+		{
+			this.line.format(" %.2f", score);
+			if (++this.scoresOnLine==SCORES_PER_LINE) flush();
+		}
+		
+		/**
+		 * Prints the line being built, if it holds any scores.
+		 */
+		public void flush()
+		{
+			if (this.scoresOnLine>0)
+			{
+				this.shell.print(this.line.toString());
+				this.line = new Formatter();
+				this.scoresOnLine = 0;
+			}
 		}
 	}
 
@@ -75,7 +319,12 @@ public class SimulateCommand extends Command
 		return
 			"Usage: " + name + " [count]\n\n" +
 			"Runs a simulation of the policy that the current agent is using.  If a count is specified, more than " +
-			"one simulation is executed.";
+			"one simulation is executed.  If simBatch is positive, that many simulations are run at once in " +
+			"lockstep against a snapshot of the policy; such simulations keep no history.  If simThreads is " +
+			"positive, the simulations are instead spread across that many threads, and if simHalfWidth is also " +
+			"positive, they stop once the 95% confidence interval of the mean score is that narrow.  After more " +
+			"than one simulation, the mean, standard deviation, confidence interval and percentiles of the scores " +
+			"are reported.";
 	}
 
 	@Override
@@ -29,7 +29,67 @@ public class VarHelpCommand extends Command
 		shell.print("verboseSimulationDelay - The duration between displays of the simulation state in milliseconds. " +
 				"This value has no impact unless verboseSimulation is set.", WRAP);
 		shell.print("progressReportDelay    - The minimum duration between progress reports provided by some shell " +
-				"commands (in milliseconds).");
+				"commands (in milliseconds).", WRAP);
+		shell.print("floatTransitions       - If true, compiled transition tables store probabilities as floats " +
+				"rather than doubles, halving their probability storage.", WRAP);
+		shell.print("threads                - The number of threads used by parallel algorithms.", WRAP);
+		shell.print("sweep                  - The sweep performed by indexed value iteration: \"gauss-seidel\" updates " +
+				"utilities in place; \"jacobi\" computes each sweep from the previous one across all threads.", WRAP);
+		shell.print("sweepOrder             - The order of a gauss-seidel sweep: \"row\" (index order), \"reverse\", " +
+				"\"finish\" (nearest the finish line first) or \"alternating\" (forward, then reverse).", WRAP);
+		shell.print("evaluationSweeps       - The number of policy evaluation sweeps modified policy iteration " +
+				"performs before each improvement step.", WRAP);
+		shell.print("heuristic              - The utility estimate used by search agents for states they have not yet " +
+				"backed up: \"zero\" estimates every state to be worth 0; \"steps\" bounds each state by the fewest " +
+				"steps in which it could reach the finish line.  Value iteration and Q-learning agents start from " +
+				"these estimates.", WRAP);
+		shell.print("qTable                 - The Q-table kept by Q-learning: \"dense\" gives every state-action pair " +
+				"a slot, \"hash\" stores only visited pairs, and \"auto\" picks dense unless the world is very " +
+				"large.  Both address states by their dense index, so neither reaches beyond the world's grid.", WRAP);
+		shell.print("qMemoryBudget          - The most memory, in MiB, that Q-learning may use for its Q-table, " +
+				"replay buffer and planning model together, or 0 for no limit.  With a budget, simulations are " +
+				"streamed into the Q-table without keeping their histories, and learning stops with an error if " +
+				"those structures would outgrow the budget.", WRAP);
+		shell.print("qStreaming             - Whether or not Q-learning makes a single update per step from inside " +
+				"each simulation, rather than updating both during the simulation and again from its history " +
+				"afterward.", WRAP);
+		shell.print("qActors                - The number of actors Q-learning runs at once.  Each actor runs its own " +
+				"episode on its own thread, and one iteration runs one episode per actor; all actors learn into a " +
+				"single shared Q-table.", WRAP);
+		shell.print("qSync                  - How the updates of several Q-learning actors are made atomic: \"cas\" " +
+				"retries a compare-and-set of each Q-value, and \"lock\" holds one of a set of striped locks.", WRAP);
+		shell.print("qReplay                - The number of past transitions Q-learning keeps for experience replay, " +
+				"or 0 for no replay.  Replay requires a single actor.", WRAP);
+		shell.print("qReplayRatio           - The number of replayed updates Q-learning makes for each step taken.", WRAP);
+		shell.print("qReplaySampling        - How Q-learning chooses transitions to replay: \"uniform\" or " +
+				"\"prioritized\" (in proportion to the size of each transition's last error).", WRAP);
+		shell.print("qReplayDirect          - If true, replayed transitions are kept off of the Java heap.", WRAP);
+		shell.print("qPlanningSteps         - The number of Dyna-Q planning updates Q-learning makes after each step, " +
+				"from a model of the transitions it has observed, or 0 for no planning.  Planning requires a " +
+				"single actor.", WRAP);
+		shell.print("qLambda                - The decay of the eligibility traces of Watkins's Q(lambda), from 0 (no " +
+				"traces; one-step Q-learning) to 1.  Cannot be combined with qNSteps.", WRAP);
+		shell.print("qNSteps                - The number of rewards in each return of n-step Q-learning; 1 is " +
+				"one-step Q-learning.", WRAP);
+		shell.print("simBatch               - The number of simulations the sim command runs in lockstep over a " +
+				"compiled transition table and a snapshot of the policy, or 0 to run them one at a time.  Batched " +
+				"simulations keep no history and are not shown verbosely.", WRAP);
+		shell.print("simThreads             - The number of threads across which the sim command spreads its " +
+				"simulations, each thread running its own simulator against a snapshot of the policy, or 0 to run " +
+				"them on the shell's thread.  Such simulations keep no history and are not shown verbosely.", WRAP);
+		shell.print("simHalfWidth           - If positive, the sim command stops as soon as the 95% confidence interval " +
+				"of the mean score is no wider than this on either side, running at most the requested number of " +
+				"simulations.  Requires simThreads.", WRAP);
+		shell.print("seed                   - The seed from which all random numbers are derived, or 0 for a seed " +
+				"chosen anew for each session.  Each command which draws random numbers derives its own streams " +
+				"from it, so a session of the same commands with the same seed behaves the same way.", WRAP);
+		shell.print("simCommonRandom        - If true, every sim command draws the same random numbers (the nth " +
+				"simulation of each starts in the same place and draws the same noise), so that policies may be " +
+				"compared on common random numbers.", WRAP);
+		shell.print("transitionCache        - If positive, the outcomes of this many state-action pairs are cached for " +
+				"the transition functions of the agents and simulators made by the shell, evicting entries by the " +
+				"CLOCK policy (approximately least recently used) as needed.  The cache is shared by every thread; the metrics command reports its " +
+				"hits, misses and evictions.", WRAP);
 	}
 
 	@Override
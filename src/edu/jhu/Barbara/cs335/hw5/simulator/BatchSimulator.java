@@ -0,0 +1,205 @@
+package edu.jhu.Barbara.cs335.hw5.simulator;
+
+import java.util.SplittableRandom;
+
+import edu.jhu.Barbara.cs335.hw5.algorithm.Policy;
+import edu.jhu.Barbara.cs335.hw5.algorithm.PolicySnapshot;
+import edu.jhu.Barbara.cs335.hw5.algorithm.ReachableStates;
+import edu.jhu.Barbara.cs335.hw5.algorithm.RewardFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.TransitionFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.TransitionTable;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Hashing;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+import edu.jhu.Barbara.cs335.hw5.util.RandomStreams;
+
+/**
+ * A simulator which runs many episodes of a fixed policy in lockstep.  Where {@link Simulator} builds a
+ * {@link edu.jhu.Barbara.cs335.hw5.data.State} and an outcome set for every step of one episode at a time, this
+ * simulator compiles the transition function into a {@link TransitionTable} once and then advances a number of lanes,
+ * each running one episode, over primitive arrays: the state index of each lane (which encodes its position and
+ * velocity), its score and whether it is done.  The policy is consulted through a {@link PolicySnapshot}, and the
+ * random numbers for a whole step of every lane are drawn at once from counter-based generators, one per lane.
+ * Whenever a lane's episode ends, its score is folded into the statistics and the lane starts the next episode.
+ *
+ * The nth episode chooses its starting state and the counter of its generator from the nth stream of a set of
+ * {@link RandomStreams}, so a run with the same streams gives the same scores however many lanes it uses.
+ *
+ * The steps of an episode are drawn from the same distribution as those of {@link Simulator}, but no listeners are
+ * informed and no history is kept.
+ */
+public class BatchSimulator
+{
+	/** The increment of the counter of the random number generator (the golden ratio in 64-bit fixed point). */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/** The world in which to simulate. */
+	private WorldMap world;
+	/** The states reachable from the starting line, over which the table was compiled. */
+	private ReachableStates reachable;
+	/** The compiled transition model. */
+	private TransitionTable table;
+	/** The reward for entering each reachable state, addressed by state index. */
+	private double[] rewards;
+	/** Whether each position, addressed by position index, is on the finish line. */
+	private boolean[] finishing;
+	/** The state index of each starting state. */
+	private int[] starts;
+	/** The number of episodes run in lockstep. */
+	private int lanes;
+
+	/**
+	 * General constructor.  Compiles the transition model of the reachable states of the world.
+	 * @param world The world in which to simulate.
+	 * @param transitionFunction The transition function for the world.
+	 * @param rewardFunction The reward function for the world.
+	 * @param lanes The number of episodes to run in lockstep.
+	 * @param threads The number of threads to use while compiling.
+	 */
+	public BatchSimulator(WorldMap world, TransitionFunction transitionFunction, RewardFunction rewardFunction,
+			int lanes, int threads)
+	{
+		super();
+		if (lanes<1)
+		{
+			throw new IllegalArgumentException("Invalid lane count: " + lanes);
+		}
+		this.world = world;
+		this.lanes = lanes;
+
+		StateIndexer indexer = world.getStateIndexer();
+		this.reachable = ReachableStates.forWorld(world, transitionFunction);
+		this.table = TransitionTable.build(transitionFunction, indexer, this.reachable, false, threads);
+		this.rewards = this.reachable.rewards(rewardFunction);
+		this.finishing = new boolean[indexer.getPositionCount()];
+		for (Pair<Integer,Integer> position : world.getFinishPositions())
+		{
+			int p = indexer.positionIndexOf(position.getFirst(), position.getSecond());
+			if (p>=0) this.finishing[p] = true;
+		}
+		this.starts = new int[world.getStartPositions().size()];
+		int i = 0;
+		for (Pair<Integer,Integer> position : world.getStartPositions())
+		{
+			this.starts[i++] = indexer.indexOf(position.getFirst(), position.getSecond(), 0, 0);
+		}
+	}
+
+	/**
+	 * Records the decisions of a policy in every state this simulator can reach.
+	 * @param policy The policy to record.
+	 * @return The snapshot of the policy.
+	 */
+	public PolicySnapshot snapshot(Policy policy)
+	{
+		return PolicySnapshot.take(policy, this.reachable);
+	}
+
+	/**
+	 * Runs a number of episodes of a policy.
+	 * @param policy The policy to follow.
+	 * @param streams The random streams of the episodes.
+	 * @param episodes The number of episodes to run.
+	 * @param scores An array into which the score of each episode is written in the order in which the episodes were
+	 *               started, or <code>null</code> to keep only the statistics.
+	 * @return The statistics of the scores of the episodes.
+	 */
+	public ScoreStatistics run(PolicySnapshot policy, RandomStreams streams, int episodes, double[] scores)
+	{
+		ScoreStatistics statistics = new ScoreStatistics();
+		int width = Math.min(this.lanes, episodes);
+		int[] states = new int[width];
+		double[] laneScores = new double[width];
+		int[] laneEpisodes = new int[width];
+		boolean[] done = new boolean[width];
+		long[] counters = new long[width];
+		double[] uniforms = new double[width];
+		StateIndexer indexer = this.world.getStateIndexer();
+
+		int started = 0;
+		for (int lane=0;lane<width;lane++)
+		{
+			laneEpisodes[lane] = started;
+			states[lane] = start(streams.derive(started++), counters, lane);
+		}
+
+		int active = width;
+		while (active>0)
+		{
+			fill(counters, uniforms, width);
+			for (int lane=0;lane<width;lane++)
+			{
+				if (done[lane]) continue;
+
+				int s = states[lane];
+				int a = policy.action(s);
+				int end = this.table.getRowEnd(s, a);
+				int entry = this.table.getRowStart(s, a);
+				double u = uniforms[lane];
+				while (entry<end - 1 && u>=this.table.getProbability(entry))
+				{
+					u -= this.table.getProbability(entry);
+					entry++;
+				}
+				int successor = this.table.getSuccessor(entry);
+				laneScores[lane] += this.rewards[successor];
+				states[lane] = successor;
+
+				if (this.finishing[indexer.getPositionIndex(successor)])
+				{
+					statistics.add(laneScores[lane]);
+					if (scores!=null) scores[laneEpisodes[lane]] = laneScores[lane];
+					if (started<episodes)
+					{
+						laneScores[lane] = 0.0;
+						laneEpisodes[lane] = started;
+						states[lane] = start(streams.derive(started++), counters, lane);
+					} else
+					{
+						done[lane] = true;
+						active--;
+					}
+				}
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * Begins an episode in a lane, choosing its starting state uniformly at random and seeding the lane's generator.
+	 * @param stream The random stream of the episode.
+	 * @param counters The counter of the generator of each lane.
+	 * @param lane The lane.
+	 * @return The index of the starting state.
+	 */
+	private int start(RandomStreams stream, long[] counters, int lane)
+	{
+		SplittableRandom random = stream.random();
+		int start = this.starts[random.nextInt(this.starts.length)];
+		counters[lane] = random.nextLong();
+		return start;
+	}
+
+	/**
+	 * Draws a uniform random number in [0, 1) for each lane.  Each number is a mix of its lane's counter, which is
+	 * then advanced, so the numbers do not depend on each other and the loop can be unrolled or vectorized freely.
+	 * Lanes which are done draw numbers which are never used.
+	 * @param counters The counter of the generator of each lane.
+	 * @param uniforms The array to fill.
+	 * @param count The number of lanes.
+	 */
+	private static void fill(long[] counters, double[] uniforms, int count)
+	{
+		for (int i=0;i<count;i++)
+		{
+			counters[i] += GOLDEN_GAMMA;
+			uniforms[i] = (Hashing.mix(counters[i]) >>> 11) * 0x1.0p-53;
+		}
+	}
+
+	public int getLanes()
+	{
+		return lanes;
+	}
+}
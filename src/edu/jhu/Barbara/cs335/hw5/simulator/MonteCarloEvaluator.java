@@ -0,0 +1,158 @@
+package edu.jhu.Barbara.cs335.hw5.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import edu.jhu.Barbara.cs335.hw5.algorithm.PolicySnapshot;
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.util.RandomStreams;
+
+/**
+ * Estimates the expected score of a policy by running simulations of it across a pool of threads.  Every worker has
+ * its own {@link Simulator}, and all of them follow the same {@link PolicySnapshot}, which never changes and so needs
+ * no synchronization.  The nth simulation draws from the nth stream of a set of {@link RandomStreams}, whichever
+ * worker runs it, so an evaluation with the same streams gives the same scores however many threads it uses.
+ *
+ * The simulations are run in rounds, each worker running a chunk of them per round.  After each round the scores of
+ * the chunks are passed on in worker order and folded into the statistics; an evaluation may therefore stop early, as
+ * soon as the confidence interval around the mean score is narrow enough.
+ */
+public class MonteCarloEvaluator
+{
+	/** The number of simulations each worker runs per round. */
+	private static final int CHUNK_SIZE = 256;
+
+	/** The simulator of each worker. */
+	private Simulator[] simulators;
+
+	/**
+	 * General constructor.
+	 * @param simulator The simulator from which to duplicate the simulator of each worker.
+	 * @param threads The number of workers.
+	 */
+	public MonteCarloEvaluator(Simulator simulator, int threads)
+	{
+		super();
+		if (threads<1)
+		{
+			throw new IllegalArgumentException("Invalid thread count: " + threads);
+		}
+		this.simulators = new Simulator[threads];
+		for (int i=0;i<threads;i++)
+		{
+			this.simulators[i] = simulator.duplicate();
+		}
+	}
+
+	/**
+	 * Evaluates a policy.
+	 * @param policy The policy to evaluate.
+	 * @param streams The random streams of the simulations.
+	 * @param maximum The largest number of simulations to run.
+	 * @param z The number of standard errors spanned by the half-width of the confidence interval.
+	 * @param targetHalfWidth The half-width of the confidence interval at which to stop early, or 0 to run every
+	 *                        simulation.
+	 * @param callback The callback to inform of the scores of each chunk of simulations, or <code>null</code>.
+	 * @return The statistics of the scores, which keep the scores.
+	 */
+	public ScoreStatistics evaluate(final PolicySnapshot policy, final RandomStreams streams, int maximum, double z,
+			double targetHalfWidth, ScoreCallback callback)
+	{
+		ScoreStatistics statistics = new ScoreStatistics(true);
+		ExecutorService executor = Executors.newFixedThreadPool(this.simulators.length, new ThreadFactory()
+				{
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "simulation-worker");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try
+		{
+			int started = 0;
+			while (started<maximum)
+			{
+				List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+				for (int i=0;i<this.simulators.length && started<maximum;i++)
+				{
+					final Simulator simulator = this.simulators[i];
+					final int first = started;
+					final int count = Math.min(CHUNK_SIZE, maximum - started);
+					started += count;
+					tasks.add(new Callable<double[]>()
+							{
+								public double[] call()
+								{
+									return simulate(simulator, policy, streams, first, count);
+								}
+							});
+				}
+
+				for (Future<double[]> future : executor.invokeAll(tasks))
+				{
+					double[] scores = future.get();
+					for (double score : scores) statistics.add(score);
+					if (callback!=null) callback.scored(scores, scores.length);
+				}
+
+				if (targetHalfWidth>0 && statistics.getHalfWidth(z)<=targetHalfWidth) break;
+			}
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating policy", e);
+		} catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			throw new IllegalStateException("Failed to evaluate policy", e.getCause());
+		} finally
+		{
+			executor.shutdown();
+		}
+		return statistics;
+	}
+
+	/**
+	 * Runs a chunk of simulations on one worker.
+	 * @param simulator The simulator of the worker.
+	 * @param policy The policy to follow.
+	 * @param streams The random streams of the simulations.
+	 * @param first The number of the first simulation to run.
+	 * @param count The number of simulations to run.
+	 * @return The score of each simulation.
+	 */
+	private static double[] simulate(Simulator simulator, PolicySnapshot policy, RandomStreams streams, int first,
+			int count)
+	{
+		StepCallback ignore = new StepCallback()
+				{
+					public void step(State state, Action action, State resultState, double reward)
+					{
+					}
+				};
+		double[] scores = new double[count];
+		for (int i=0;i<count;i++)
+		{
+			simulator.setRandom(streams.derive(first + i).random());
+			scores[i] = simulator.run(policy, ignore);
+		}
+		return scores;
+	}
+
+	/**
+	 * Retrieves the number of workers.
+	 * @return The number of workers.
+	 */
+	public int getThreads()
+	{
+		return this.simulators.length;
+	}
+}
@@ -0,0 +1,241 @@
+package edu.jhu.Barbara.cs335.hw5.simulator;
+
+import java.util.Set;
+
+import edu.jhu.Barbara.cs335.hw5.algorithm.IndexedTransitionAdapter;
+import edu.jhu.Barbara.cs335.hw5.algorithm.IndexedTransitionFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.OutcomeBuffer;
+import edu.jhu.Barbara.cs335.hw5.algorithm.RewardFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.StationaryTransitionFunction;
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
+import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
+import edu.jhu.Barbara.cs335.hw5.util.Pair;
+
+/**
+ * Samples the outcomes of a stationary transition function in constant time.  The first time a state and action are
+ * sampled, their outcomes are compiled into a Walker alias table along with the reward for reaching each; the table
+ * is kept, and every later sample of the same state and action draws from it without consulting the transition
+ * function or allocating.  Tables are compiled from the transition function's indexed outcomes (through an
+ * {@link IndexedTransitionAdapter} if it offers none of its own), and the reward of each successor is found once.
+ *
+ * An alias table of n outcomes splits the unit interval into n equal columns.  Column i holds outcome i up to its
+ * threshold and the outcome named by its alias above it, so one uniform number picks a column and a side at once.
+ *
+ * The tables never change once built, so a sampler may be shared by simulators on different threads.  Two threads
+ * which sample a new state and action at once may both build its table; either table is correct, and one is kept.
+ */
+public class OutcomeSampler
+{
+	/** The transition function to sample. */
+	private StationaryTransitionFunction transitionFunction;
+	/** The reward function for the world. */
+	private RewardFunction rewardFunction;
+	/** The transition function to sample, by state and action index. */
+	private IndexedTransitionFunction indexedTransitionFunction;
+	/** The indexer which addresses the states of the world. */
+	private StateIndexer indexer;
+	/** The tables of each state, addressed by state index and then action index, built when first needed. */
+	private Outcomes[][] tables;
+
+	/**
+	 * General constructor.
+	 * @param world The world in which to sample.
+	 * @param transitionFunction The transition function to sample.
+	 * @param rewardFunction The reward function for the world.
+	 */
+	public OutcomeSampler(WorldMap world, StationaryTransitionFunction transitionFunction,
+			RewardFunction rewardFunction)
+	{
+		super();
+		this.transitionFunction = transitionFunction;
+		this.rewardFunction = rewardFunction;
+		this.indexer = world.getStateIndexer();
+		this.indexedTransitionFunction = IndexedTransitionAdapter.forFunction(transitionFunction, this.indexer);
+		this.tables = new Outcomes[this.indexer.size()][];
+	}
+
+	/**
+	 * Retrieves the outcomes of taking an action in a state, compiling them if this has not yet been done.
+	 * @param state The state.
+	 * @param action The action.
+	 * @return The outcomes.
+	 */
+	public Outcomes getOutcomes(State state, Action action)
+	{
+		int s = this.indexer.indexOf(state);
+		int a = action.ordinal();
+		if (s<0 || a<0)
+		{
+			return new Outcomes(this.transitionFunction.transition(state, action), this.rewardFunction);
+		}
+
+		Outcomes[] row = this.tables[s];
+		if (row==null)
+		{
+			row = new Outcomes[Action.COUNT];
+			this.tables[s] = row;
+		}
+		Outcomes outcomes = row[a];
+		if (outcomes==null)
+		{
+			OutcomeBuffer buffer = new OutcomeBuffer();
+			buffer.load(this.indexedTransitionFunction, s, a);
+			outcomes = new Outcomes(buffer, this.indexer, this.rewardFunction);
+			row[a] = outcomes;
+		}
+		return outcomes;
+	}
+
+	/**
+	 * The outcomes of one state and action, compiled into an alias table.
+	 */
+	public static class Outcomes
+	{
+		/** Each outcome: the state reached and the reward for reaching it. */
+		private final Pair<State,Double>[] results;
+		/** The fraction of each column which belongs to its own outcome. */
+		private final double[] thresholds;
+		/** The outcome which holds the rest of each column. */
+		private final int[] aliases;
+
+		/**
+		 * General constructor.  Builds the alias table by Vose's method.
+		 * @param outcomes The outcomes, paired with their probabilities.
+		 * @param rewardFunction The reward function for the world.
+		 * @throws IllegalStateException If the outcomes have no probability.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public Outcomes(Set<Pair<State,Double>> outcomes, RewardFunction rewardFunction)
+		{
+			super();
+			int n = outcomes.size();
+			this.results = new Pair[n];
+			this.thresholds = new double[n];
+			this.aliases = new int[n];
+
+			double[] probabilities = new double[n];
+			int i = 0;
+			for (Pair<State,Double> outcome : outcomes)
+			{
+				this.results[i] = new Pair<State,Double>(outcome.getFirst(),
+						rewardFunction.reward(outcome.getFirst()));
+				probabilities[i] = outcome.getSecond();
+				i++;
+			}
+			buildAliases(probabilities);
+		}
+
+		/**
+		 * General constructor.  Builds the alias table by Vose's method.
+		 * @param outcomes The buffer holding the indexed outcomes.
+		 * @param indexer The indexer which addresses the states of the world.
+		 * @param rewardFunction The reward function for the world.
+		 * @throws IllegalStateException If the outcomes have no probability.
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		public Outcomes(OutcomeBuffer outcomes, StateIndexer indexer, RewardFunction rewardFunction)
+		{
+			super();
+			int n = outcomes.size();
+			this.results = new Pair[n];
+			this.thresholds = new double[n];
+			this.aliases = new int[n];
+
+			double[] probabilities = new double[n];
+			for (int i=0;i<n;i++)
+			{
+				State successor = indexer.decode(outcomes.getSuccessor(i));
+				this.results[i] = new Pair<State,Double>(successor, rewardFunction.reward(successor));
+				probabilities[i] = outcomes.getProbability(i);
+			}
+			buildAliases(probabilities);
+		}
+
+		/**
+		 * Fills the thresholds and aliases of the columns.
+		 * @param scaled The probability of each outcome, which is overwritten.
+		 * @throws IllegalStateException If the outcomes have no probability.
+		 */
+		private void buildAliases(double[] scaled)
+		{
+			int n = scaled.length;
+			double total = 0.0;
+			for (double probability : scaled)
+			{
+				total += probability;
+			}
+			if (!(total>0))
+			{
+				throw new IllegalStateException("Malformed probability model provided by transition function!");
+			}
+
+			// Sort the columns into those below and above the average, then fill each small column from a large one
+			int[] small = new int[n];
+			int[] large = new int[n];
+			int smallCount = 0;
+			int largeCount = 0;
+			for (int i=0;i<n;i++)
+			{
+				scaled[i] = scaled[i] * n / total;
+				if (scaled[i]<1.0)
+				{
+					small[smallCount++] = i;
+				} else
+				{
+					large[largeCount++] = i;
+				}
+			}
+			while (smallCount>0 && largeCount>0)
+			{
+				int less = small[--smallCount];
+				int more = large[--largeCount];
+				this.thresholds[less] = scaled[less];
+				this.aliases[less] = more;
+				scaled[more] -= 1.0 - scaled[less];
+				if (scaled[more]<1.0)
+				{
+					small[smallCount++] = more;
+				} else
+				{
+					large[largeCount++] = more;
+				}
+			}
+			// Whatever remains is full to within rounding
+			while (largeCount>0)
+			{
+				int more = large[--largeCount];
+				this.thresholds[more] = 1.0;
+				this.aliases[more] = more;
+			}
+			while (smallCount>0)
+			{
+				int less = small[--smallCount];
+				this.thresholds[less] = 1.0;
+				this.aliases[less] = less;
+			}
+		}
+
+		/**
+		 * Chooses an outcome.
+		 * @param uniform A uniform random number in [0, 1).
+		 * @return The outcome: the state reached and the reward for reaching it.
+		 */
+		public Pair<State,Double> sample(double uniform)
+		{
+			double column = uniform * this.thresholds.length;
+			int i = Math.min((int)column, this.thresholds.length - 1);
+			return (column - i < this.thresholds[i]) ? this.results[i] : this.results[this.aliases[i]];
+		}
+
+		/**
+		 * Retrieves the number of outcomes.
+		 * @return The number of outcomes.
+		 */
+		public int size()
+		{
+			return this.results.length;
+		}
+	}
+}
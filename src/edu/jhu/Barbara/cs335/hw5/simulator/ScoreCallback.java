@@ -0,0 +1,15 @@
+package edu.jhu.Barbara.cs335.hw5.simulator;
+
+/**
+ * A receiver of the scores of simulations as they are completed, so that the scores of a long run of simulations can
+ * be reported without being gathered first.
+ */
+public interface ScoreCallback
+{
+	/**
+	 * Indicates that a number of simulations have been completed.
+	 * @param scores The array holding the scores of the simulations, in order.
+	 * @param count The number of scores in the array, starting from the first.
+	 */
+	public void scored(double[] scores, int count);
+}
@@ -0,0 +1,155 @@
+package edu.jhu.Barbara.cs335.hw5.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics of the scores of a number of simulations.  Scores are folded in one at a time; the variance is
+ * kept by Welford's method, so that the variance does not suffer from cancellation.  The scores themselves are only
+ * stored if percentiles are wanted.
+ */
+public class ScoreStatistics
+{
+	/** The number of scores folded in. */
+	private long count;
+	/** The sum of the scores. */
+	private double sum;
+	/** The running mean of the scores, as updated by Welford's method. */
+	private double mean;
+	/** The sum of the squared differences of the scores from their mean. */
+	private double squaredDeviations;
+	/** The lowest score. */
+	private double minimum;
+	/** The highest score. */
+	private double maximum;
+	/** The scores folded in, or <code>null</code> if they are not kept.  Only the first {@link #count} are used. */
+	private double[] scores;
+	/** Whether or not the kept scores are known to be in ascending order. */
+	private boolean sorted;
+
+	/**
+	 * General constructor.  Creates statistics of no scores which do not keep the scores.
+	 */
+	public ScoreStatistics()
+	{
+		this(false);
+	}
+
+	/**
+	 * General constructor.  Creates statistics of no scores.
+	 * @param keepScores Whether or not to keep the scores, which is required for {@link #getPercentile(double)}.
+	 */
+	public ScoreStatistics(boolean keepScores)
+	{
+		super();
+		this.count = 0;
+		this.sum = 0.0;
+		this.mean = 0.0;
+		this.squaredDeviations = 0.0;
+		this.minimum = Double.POSITIVE_INFINITY;
+		this.maximum = Double.NEGATIVE_INFINITY;
+		this.scores = keepScores ? new double[16] : null;
+		this.sorted = true;
+	}
+
+	/**
+	 * Folds a score into these statistics.
+	 * @param score The score of one simulation.
+	 */
+	public void add(double score)
+	{
+		this.count++;
+		this.sum += score;
+		double difference = score - this.mean;
+		this.mean += difference / this.count;
+		this.squaredDeviations += difference * (score - this.mean);
+		if (score<this.minimum) this.minimum = score;
+		if (score>this.maximum) this.maximum = score;
+		if (this.scores!=null)
+		{
+			keep(score);
+		}
+	}
+
+	/**
+	 * Stores a score which has already been counted.
+	 * @param score The score.
+	 */
+	private void keep(double score)
+	{
+		int n = (int)this.count - 1;
+		if (n==this.scores.length)
+		{
+			this.scores = Arrays.copyOf(this.scores, this.scores.length * 2);
+		}
+		if (n>0 && score<this.scores[n - 1]) this.sorted = false;
+		this.scores[n] = score;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Retrieves the mean of the scores.  It is the sum of the scores divided by their number, which is exact for the
+	 * integral scores of the racetrack.
+	 * @return The mean, or NaN if no scores have been folded in.
+	 */
+	public double getMean()
+	{
+		return this.sum / this.count;
+	}
+
+	/**
+	 * Retrieves the sample standard deviation of the scores.
+	 * @return The standard deviation, or 0 if fewer than two scores have been folded in.
+	 */
+	public double getStandardDeviation()
+	{
+		return (this.count<2) ? 0.0 : Math.sqrt(this.squaredDeviations / (this.count - 1));
+	}
+
+	/**
+	 * Retrieves the half-width of a normal confidence interval around the mean.
+	 * @param z The number of standard errors spanned by the half-width, such as 1.96 for a 95% interval.
+	 * @return The half-width, or infinity if fewer than two scores have been folded in.
+	 */
+	public double getHalfWidth(double z)
+	{
+		return (this.count<2) ? Double.POSITIVE_INFINITY : z * getStandardDeviation() / Math.sqrt(this.count);
+	}
+
+	/**
+	 * Retrieves a percentile of the scores, interpolating linearly between the two nearest ranks.
+	 * @param percent The percentile, from 0 (the minimum) to 100 (the maximum).
+	 * @return The percentile, or NaN if no scores have been folded in.
+	 * @throws IllegalStateException If these statistics do not keep their scores.
+	 */
+	public double getPercentile(double percent)
+	{
+		if (this.scores==null)
+		{
+			throw new IllegalStateException("Percentiles require the scores to be kept");
+		}
+		if (this.count==0) return Double.NaN;
+		if (!this.sorted)
+		{
+			Arrays.sort(this.scores, 0, (int)this.count);
+			this.sorted = true;
+		}
+		double rank = percent / 100.0 * (this.count - 1);
+		int lower = (int)Math.floor(rank);
+		int upper = (int)Math.ceil(rank);
+		return this.scores[lower] + (rank - lower) * (this.scores[upper] - this.scores[lower]);
+	}
+
+	public double getMinimum()
+	{
+		return minimum;
+	}
+
+	public double getMaximum()
+	{
+		return maximum;
+	}
+}
@@ -3,14 +3,16 @@ package edu.jhu.Barbara.cs335.hw5.simulator;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import edu.jhu.Barbara.cs335.hw5.algorithm.Policy;
 import edu.jhu.Barbara.cs335.hw5.algorithm.RewardFunction;
+import edu.jhu.Barbara.cs335.hw5.algorithm.StationaryTransitionFunction;
 import edu.jhu.Barbara.cs335.hw5.algorithm.TransitionFunction;
 import edu.jhu.Barbara.cs335.hw5.data.Action;
 import edu.jhu.Barbara.cs335.hw5.data.State;
+import edu.jhu.Barbara.cs335.hw5.data.StateIndexer;
 import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
 import edu.jhu.Barbara.cs335.hw5.util.Pair;
 import edu.jhu.Barbara.cs335.hw5.util.ReinforcementLearningUtilities;
@@ -34,6 +36,21 @@ public class Simulator
 	 */
 	private WorldMap world;
 	
+	/**
+	 * The sampler of the outcomes of the transition function, or <code>null</code> if the transition function is not
+	 * stationary.
+	 */
+	private OutcomeSampler sampler;
+	
+	/**
+	 * The indexer of the states of the world.
+	 */
+	private StateIndexer indexer;
+	/**
+	 * Whether each position, addressed by position index, is on the finish line.
+	 */
+	private boolean[] finishing;
+	
 	/**
 	 * The simulator listeners listening to events that occur in this simulator.
 	 */
@@ -42,7 +59,7 @@ public class Simulator
 	/**
 	 * A random number generator.
 	 */
-	private Random random;
+	private SplittableRandom random;
 	
 	/**
 	 * General constructor.
@@ -52,6 +69,37 @@ public class Simulator
 	 * @param output The PrintStream to which to log output.  If <code>null</code>, no output is logged.
 	 */
 	public Simulator(WorldMap world, TransitionFunction transitionFunction, RewardFunction rewardFunction)
+	{
+		this(world, transitionFunction, rewardFunction, new SplittableRandom());
+	}
+	
+	/**
+	 * General constructor.
+	 * @param world The world in which to simulate.
+	 * @param transitionFunction The transition function for the world.
+	 * @param rewardFunction The reward function for the world.
+	 * @param random The random number generator from which the simulator draws its starting states and outcomes.
+	 */
+	public Simulator(WorldMap world, TransitionFunction transitionFunction, RewardFunction rewardFunction,
+			SplittableRandom random)
+	{
+		this(world, transitionFunction, rewardFunction, random,
+				(transitionFunction instanceof StationaryTransitionFunction) ?
+						new OutcomeSampler(world, (StationaryTransitionFunction)transitionFunction, rewardFunction) :
+						null);
+	}
+	
+	/**
+	 * General constructor.
+	 * @param world The world in which to simulate.
+	 * @param transitionFunction The transition function for the world.
+	 * @param rewardFunction The reward function for the world.
+	 * @param random The random number generator from which the simulator draws its starting states and outcomes.
+	 * @param sampler The sampler of the outcomes of the transition function, or <code>null</code> to consult the
+	 *                transition function at every step.
+	 */
+	private Simulator(WorldMap world, TransitionFunction transitionFunction, RewardFunction rewardFunction,
+			SplittableRandom random, OutcomeSampler sampler)
 	{
 		super();
 		this.world = world;
@@ -59,7 +107,58 @@ public class Simulator
 		this.rewardFunction = rewardFunction;
 		this.listeners = new HashSet<SimulatorListener>();
 		
-		this.random = new Random();
+		this.random = random;
+		this.sampler = sampler;
+		
+		this.indexer = world.getStateIndexer();
+		this.finishing = new boolean[this.indexer.getPositionCount()];
+		for (Pair<Integer,Integer> position : world.getFinishPositions())
+		{
+			int p = this.indexer.positionIndexOf(position.getFirst(), position.getSecond());
+			if (p>=0) this.finishing[p] = true;
+		}
+	}
+	
+	/**
+	 * Creates a simulator of the same world with the same transition and reward functions.  The new simulator has its
+	 * own random number generator and no listeners, so that it may run alongside this one on another thread; it
+	 * shares this simulator's outcome sampler.
+	 * @return The new simulator.
+	 */
+	public Simulator duplicate()
+	{
+		return duplicate(this.random.split());
+	}
+	
+	/**
+	 * Creates a simulator of the same world with the same transition and reward functions which draws from a given
+	 * random number generator.  The new simulator has no listeners and shares this simulator's outcome sampler.
+	 * @param random The random number generator of the new simulator.
+	 * @return The new simulator.
+	 */
+	public Simulator duplicate(SplittableRandom random)
+	{
+		return new Simulator(this.world, this.transitionFunction, this.rewardFunction, random, this.sampler);
+	}
+	
+	/**
+	 * Splits a new random number generator off of this simulator's, for randomness which belongs to the same run as
+	 * the simulations, such as that of an agent learning from them.
+	 * @return The new generator.
+	 */
+	public SplittableRandom splitRandom()
+	{
+		return this.random.split();
+	}
+	
+	/**
+	 * Changes the random number generator from which this simulator draws, such as to give each simulation a stream
+	 * of its own.
+	 * @param random The new generator.
+	 */
+	public void setRandom(SplittableRandom random)
+	{
+		this.random = random;
 	}
 	
 	/**
@@ -68,18 +167,72 @@ public class Simulator
 	 * @return The simulation steps that occurred.
 	 */
 	public List<SimulationStep> simulate(Policy policy)
+	{
+		List<SimulationStep> history = new ArrayList<SimulationStep>();
+		simulate(policy, history);
+		return history;
+	}
+	
+	/**
+	 * Runs a simulation without keeping its history.  Listeners are informed of each step as usual, but the steps are
+	 * discarded afterward, so the memory used by a simulation does not grow with its length.
+	 * @param policy The policy to use.
+	 * @return The final simulation step, which holds the score of the simulation.
+	 */
+	public SimulationStep run(Policy policy)
+	{
+		return simulate(policy, null);
+	}
+	
+	/**
+	 * Runs a simulation which reports each step only to a callback.  No steps are kept and no listeners are informed,
+	 * so nothing is allocated on behalf of the simulation beyond what the policy and transition function require.
+	 * @param policy The policy to use.
+	 * @param callback The callback to inform of each step the agent takes.
+	 * @return The score of the simulation.
+	 */
+	public double run(Policy policy, StepCallback callback)
+	{
+		double score = 0;
+		State state = ReinforcementLearningUtilities.getRandomStartingState(this.world, this.random);
+		while (!isFinished(state))
+		{
+			Action action = policy.decide(state);
+			Pair<State,Double> outcome = executeTransition(state, action);
+			callback.step(state, action, outcome.getFirst(), outcome.getSecond());
+			score += outcome.getSecond();
+			state = outcome.getFirst();
+		}
+		return score;
+	}
+	
+	/**
+	 * Determines whether a state is on the finish line.
+	 * @param state The state to examine.
+	 * @return <code>true</code> if the position of the state is a finish position; <code>false</code> otherwise.
+	 */
+	private boolean isFinished(State state)
+	{
+		int p = this.indexer.positionIndexOf(state.getX(), state.getY());
+		return p>=0 && this.finishing[p];
+	}
+	
+	/**
+	 * Runs a simulation.
+	 * @param policy The policy to use.
+	 * @param history The list to which to add the simulation steps that occur, or <code>null</code> to discard them.
+	 * @return The final simulation step.
+	 */
+	private SimulationStep simulate(Policy policy, List<SimulationStep> history)
 	{
 		State state;
 		double score = 0;
 		
 		// Select a random starting state.
-		state = ReinforcementLearningUtilities.getRandomStartingState(this.world);
-		
-		// Set up history
-		List<SimulationStep> history = new ArrayList<SimulationStep>();
+		state = ReinforcementLearningUtilities.getRandomStartingState(this.world, this.random);
 		
 		// Simulate until we reach a finish state
-		while (!(world.getFinishPositions().contains(state.getPosition())))
+		while (!isFinished(state))
 		{
 			Action action = policy.decide(state);
 			Pair<State,Double> outcome = executeTransition(state, action);
@@ -87,7 +240,7 @@ public class Simulator
 			double newScore = score + outcome.getSecond();
 			
 			SimulationStep step = new SimulationStep(state, action, newState, score, newScore);
-			history.add(step);
+			if (history!=null) history.add(step);
 			fireSimulatorEvent(new SimulatorEvent(this, step));
 			
 			score = newScore;
@@ -95,20 +248,26 @@ public class Simulator
 		}
 		
 		SimulationStep step = new SimulationStep(state, null, null, score, score);
-		history.add(step);
+		if (history!=null) history.add(step);
 		fireSimulatorEvent(new SimulatorEvent(this, step));
 		
-		return history;
+		return step;
 	}
 	
 	/**
-	 * Performs a transition using the transition function in this simulator.
+	 * Performs a transition using the transition function in this simulator.  If the transition function is
+	 * stationary, the outcome is drawn from the outcome sampler instead.
 	 * @param state The current state.
 	 * @param action The action being taken in that state.
 	 * @return A pairing between the resulting state and the reward that was incurred for entering that state.
 	 */
 	private Pair<State,Double> executeTransition(State state, Action action)
 	{
+		if (this.sampler!=null)
+		{
+			return this.sampler.getOutcomes(state, action).sample(this.random.nextDouble());
+		}
+		
 		Set<Pair<State,Double>> outcomes = this.transitionFunction.transition(state, action);
 		double prob = random.nextDouble();
 		State resultingState = null;
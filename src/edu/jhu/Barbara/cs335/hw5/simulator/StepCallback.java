@@ -0,0 +1,20 @@
+package edu.jhu.Barbara.cs335.hw5.simulator;
+
+import edu.jhu.Barbara.cs335.hw5.data.Action;
+import edu.jhu.Barbara.cs335.hw5.data.State;
+
+/**
+ * A lightweight receiver of simulation steps.  Unlike a {@link SimulatorListener}, a callback is handed the parts of
+ * each step directly; no {@link SimulationStep} or {@link SimulatorEvent} is created for it.
+ */
+public interface StepCallback
+{
+	/**
+	 * Indicates that the agent has taken a step.
+	 * @param state The state the agent was in.
+	 * @param action The action the agent took.
+	 * @param resultState The state the agent reached as a result of the action.
+	 * @param reward The reward incurred for entering the result state.
+	 */
+	public void step(State state, Action action, State resultState, double reward);
+}
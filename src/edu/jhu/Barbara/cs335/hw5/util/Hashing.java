@@ -0,0 +1,70 @@
+package edu.jhu.Barbara.cs335.hw5.util;
+
+/**
+ * Functionality shared by the structures which hash long keys.  It includes the SplitMix64 finalizer and the lookup
+ * and deletion routines of an open-addressing index with linear probing.  Such an index is a pair of arrays, whose
+ * length is a power of two: the key stored in each slot, or {@link #EMPTY}, and the position of the entry of that key
+ * in whatever dense storage the index serves.  The home slot of a key is found from the low bits of its mix.
+ */
+public class Hashing
+{
+	/** The key which marks an empty slot of an index. */
+	public static final long EMPTY = -1L;
+
+	/**
+	 * The finalizer of the SplitMix64 generator, which scrambles a value so that every bit of the result depends on
+	 * every bit of the value.
+	 * @param z The value.
+	 * @return The scrambled value.
+	 */
+	public static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Finds the slot of an index which holds a key, or the empty slot at which its search ends.
+	 * @param slotKeys The key stored in each slot of the index.
+	 * @param key The key.
+	 * @param hash The mix of the key.
+	 * @return The slot.
+	 */
+	public static int find(long[] slotKeys, long key, long hash)
+	{
+		int mask = slotKeys.length - 1;
+		int slot = (int)hash & mask;
+		while (slotKeys[slot]!=EMPTY && slotKeys[slot]!=key)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Empties a slot of an index, shifting back any key whose search passed through it.
+	 * @param slotKeys The key stored in each slot of the index.
+	 * @param slotPositions The position of the entry of the key stored in each slot of the index.
+	 * @param hole The slot to empty.
+	 */
+	public static void remove(long[] slotKeys, int[] slotPositions, int hole)
+	{
+		int mask = slotKeys.length - 1;
+		slotKeys[hole] = EMPTY;
+		int slot = (hole + 1) & mask;
+		while (slotKeys[slot]!=EMPTY)
+		{
+			int home = (int)mix(slotKeys[slot]) & mask;
+			// Move the key into the hole unless its home lies cyclically after the hole and at or before its slot
+			if (((slot - home) & mask) >= ((slot - hole) & mask))
+			{
+				slotKeys[hole] = slotKeys[slot];
+				slotPositions[hole] = slotPositions[slot];
+				slotKeys[slot] = EMPTY;
+				hole = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+}
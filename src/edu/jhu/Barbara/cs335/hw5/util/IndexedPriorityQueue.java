@@ -0,0 +1,171 @@
+package edu.jhu.Barbara.cs335.hw5.util;
+
+import java.util.Arrays;
+
+/**
+ * A binary max-heap over the integers <code>0</code> to <code>capacity-1</code>.  Each integer appears in the queue
+ * at most once; its priority may be raised, lowered or removed in logarithmic time because the heap position of each
+ * integer is tracked.
+ */
+public class IndexedPriorityQueue
+{
+	/** The items in heap order. */
+	private int[] heap;
+	/** The heap position of each item, or -1 if the item is not in the queue. */
+	private int[] positions;
+	/** The priority of each item. */
+	private double[] priorities;
+	/** The number of items in the queue. */
+	private int size;
+
+	/**
+	 * General constructor.
+	 * @param capacity The number of distinct items which may be stored in this queue.
+	 */
+	public IndexedPriorityQueue(int capacity)
+	{
+		super();
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.priorities = new double[capacity];
+		this.size = 0;
+		Arrays.fill(this.positions, -1);
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.size==0;
+	}
+
+	/**
+	 * Determines whether an item is in this queue.
+	 * @param item The item to check.
+	 * @return <code>true</code> if the item is in the queue; <code>false</code> otherwise.
+	 */
+	public boolean contains(int item)
+	{
+		return this.positions[item]>=0;
+	}
+
+	/**
+	 * Inserts an item or changes its priority if it is already in the queue.
+	 * @param item The item.
+	 * @param priority The item's priority.
+	 */
+	public void set(int item, double priority)
+	{
+		int position = this.positions[item];
+		if (position<0)
+		{
+			position = this.size++;
+			this.heap[position] = item;
+			this.positions[item] = position;
+			this.priorities[item] = priority;
+			siftUp(position);
+		} else
+		{
+			double old = this.priorities[item];
+			this.priorities[item] = priority;
+			if (priority > old)
+			{
+				siftUp(position);
+			} else
+			{
+				siftDown(position);
+			}
+		}
+	}
+
+	/**
+	 * Removes an item from the queue if it is present.
+	 * @param item The item to remove.
+	 */
+	public void remove(int item)
+	{
+		int position = this.positions[item];
+		if (position<0) return;
+		int last = this.heap[--this.size];
+		this.positions[item] = -1;
+		if (position==this.size) return;
+		this.heap[position] = last;
+		this.positions[last] = position;
+		siftUp(position);
+		siftDown(this.positions[last]);
+	}
+
+	/**
+	 * Retrieves the item with the highest priority.
+	 * @return The item with the highest priority.
+	 * @throws IllegalStateException If the queue is empty.
+	 */
+	public int peek()
+	{
+		if (this.size==0) throw new IllegalStateException("Queue is empty");
+		return this.heap[0];
+	}
+
+	/**
+	 * Retrieves the highest priority in the queue.
+	 * @return The highest priority, or negative infinity if the queue is empty.
+	 */
+	public double peekPriority()
+	{
+		return (this.size==0) ? Double.NEGATIVE_INFINITY : this.priorities[this.heap[0]];
+	}
+
+	/**
+	 * Removes and returns the item with the highest priority.
+	 * @return The item with the highest priority.
+	 * @throws IllegalStateException If the queue is empty.
+	 */
+	public int poll()
+	{
+		int item = peek();
+		remove(item);
+		return item;
+	}
+
+	private void siftUp(int position)
+	{
+		int item = this.heap[position];
+		double priority = this.priorities[item];
+		while (position>0)
+		{
+			int parent = (position - 1) >>> 1;
+			int parentItem = this.heap[parent];
+			if (this.priorities[parentItem] >= priority) break;
+			this.heap[position] = parentItem;
+			this.positions[parentItem] = position;
+			position = parent;
+		}
+		this.heap[position] = item;
+		this.positions[item] = position;
+	}
+
+	private void siftDown(int position)
+	{
+		int item = this.heap[position];
+		double priority = this.priorities[item];
+		while (true)
+		{
+			int child = 2 * position + 1;
+			if (child>=this.size) break;
+			if (child + 1 < this.size && this.priorities[this.heap[child + 1]] > this.priorities[this.heap[child]])
+			{
+				child++;
+			}
+			int childItem = this.heap[child];
+			if (this.priorities[childItem] <= priority) break;
+			this.heap[position] = childItem;
+			this.positions[childItem] = position;
+			position = child;
+		}
+		this.heap[position] = item;
+		this.positions[item] = position;
+	}
+}
@@ -0,0 +1,56 @@
+package edu.jhu.Barbara.cs335.hw5.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * A tree of random number streams derived from a single seed.  Each node of the tree is identified by a seed, and
+ * its children are derived by scrambling that seed with the index of the child, so that a stream depends only on the
+ * path that leads to it and never on how many numbers were drawn from other streams.  A simulation can therefore give
+ * every simulator, worker and episode a stream of its own, and a run with the same seed draws the same numbers no
+ * matter how its work is divided among threads or in what order the threads run.
+ *
+ * A set of streams never changes, so it may be shared by any number of threads without synchronization.
+ */
+public class RandomStreams
+{
+	/** The increment of the SplitMix64 generator (the golden ratio in 64-bit fixed point). */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/** The seed of this node of the tree. */
+	private long seed;
+
+	/**
+	 * General constructor.
+	 * @param seed The seed from which all streams are derived.
+	 */
+	public RandomStreams(long seed)
+	{
+		super();
+		this.seed = seed;
+	}
+
+	/**
+	 * Derives a child of these streams.  Different indices give unrelated children.
+	 * @param index The index of the child.
+	 * @return The child.
+	 */
+	public RandomStreams derive(long index)
+	{
+		return new RandomStreams(Hashing.mix(this.seed + Hashing.mix(index + GOLDEN_GAMMA)));
+	}
+
+	/**
+	 * Creates a generator which draws the stream of this node.  Every generator created from the same node draws the
+	 * same numbers.
+	 * @return The generator.
+	 */
+	public SplittableRandom random()
+	{
+		return new SplittableRandom(this.seed);
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+}
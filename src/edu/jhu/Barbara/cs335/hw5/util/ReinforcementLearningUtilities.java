@@ -1,7 +1,7 @@
 package edu.jhu.Barbara.cs335.hw5.util;
 
 import java.util.Iterator;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import edu.jhu.Barbara.cs335.hw5.data.State;
 import edu.jhu.Barbara.cs335.hw5.data.WorldMap;
@@ -14,21 +14,19 @@ import edu.jhu.Barbara.cs335.hw5.simulator.SimulationStep;
 public class ReinforcementLearningUtilities
 {
 	/**
-	 * A random number generator.
-	 */
-	private static Random random = new Random();
-	
-	/**
-	 * Generates a random starting state for the provided world.  This function is not included in the WorldMap class
-	 * to prevent it from being coupled with the concept of a state.
+	 * Generates a random starting state for the provided world, choosing uniformly among its starting positions.  This
+	 * function is not included in the WorldMap class to prevent it from being coupled with the concept of a state.
 	 * @param world The world for which a random starting state is desired.
+	 * @param random The random number generator with which to choose the state.
 	 * @return A random starting state for that world.
 	 */
-	public static State getRandomStartingState(WorldMap world)
+	public static State getRandomStartingState(WorldMap world, SplittableRandom random)
 	{
 		Iterator<Pair<Integer,Integer>> iterator = world.getStartPositions().iterator();
-		for (int i=0;i<random.nextInt(world.getStartPositions().size());i++) iterator.next();
-		return new State(iterator.next(), new Pair<Integer,Integer>(0,0));
+		int skip = random.nextInt(world.getStartPositions().size());
+		for (int i=0;i<skip;i++) iterator.next();
+		Pair<Integer,Integer> position = iterator.next();
+		return new State(position.getFirst(), position.getSecond(), 0, 0);
 	}
 	
 	/**